@@ -1,5 +1,6 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -8,9 +9,16 @@ import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import ru.yandex.practicum.filmorate.model.CacheStats;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.validation.ReleaseDateValidator;
 import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.index.FilmRecommender;
+import ru.yandex.practicum.filmorate.service.index.FilmSearchIndex;
 
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.Positive;
 import java.util.List;
 
@@ -24,8 +32,8 @@ public class FilmController extends ItemController<Film> {
     public static final String DEFAULT_FILMS_TO_DISPLAY = "10";
     private final FilmService filmService;
 
-    protected FilmController(FilmService filmService) {
-        super(filmService);
+    protected FilmController(FilmService filmService, ObjectMapper objectMapper) {
+        super(filmService, objectMapper);
         this.filmService = filmService;
     }
 
@@ -40,7 +48,28 @@ public class FilmController extends ItemController<Film> {
     }
 
     @GetMapping(value = "/popular", produces = "application/json;charset=UTF-8")
-    public List<Film> getPopularFilms(@RequestParam(defaultValue = DEFAULT_FILMS_TO_DISPLAY) @Positive int count) {
-        return filmService.getPopularFilms(count);
+    public List<Film> getPopularFilms(@RequestParam(defaultValue = DEFAULT_FILMS_TO_DISPLAY) @Positive int count,
+                                      @RequestParam(required = false) Integer genreId,
+                                      @RequestParam(required = false) @Min(ReleaseDateValidator.FIRST_FILM_YEAR) Integer year) {
+        return filmService.getPopularFilms(count, genreId, year);
+    }
+
+    @GetMapping(value = "/cache", produces = "application/json;charset=UTF-8")
+    public CacheStats getCacheStats() {
+        return filmService.getCacheStats();
+    }
+
+    @GetMapping(value = "/search", produces = "application/json;charset=UTF-8")
+    public List<Film> searchFilms(@RequestParam("q") @NotBlank String query,
+                                  @RequestParam(defaultValue = DEFAULT_FILMS_TO_DISPLAY) @Positive
+                                  @Max(FilmSearchIndex.MAX_RESULTS) int limit) {
+        return filmService.searchFilms(query, limit);
+    }
+
+    @GetMapping(value = "/{id}/similar", produces = "application/json;charset=UTF-8")
+    public List<Film> getSimilarFilms(@PathVariable("id") long filmId,
+                                      @RequestParam(defaultValue = DEFAULT_FILMS_TO_DISPLAY) @Positive
+                                      @Max(FilmRecommender.MAX_RESULTS) int count) {
+        return filmService.getSimilarFilms(filmId, count);
     }
 }
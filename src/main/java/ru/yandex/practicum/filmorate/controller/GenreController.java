@@ -1,14 +1,14 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.service.GenreService;
 
-import java.util.Collection;
-
 import static ru.yandex.practicum.filmorate.controller.GenreController.BASE_PATH;
 
 @RestController
@@ -22,12 +22,25 @@ public class GenreController {
     }
 
     @GetMapping(value = "/{id}", produces = "application/json;charset=UTF-8")
-    public Genre get(@PathVariable("id") int genreId) {
-        return genreService.get(genreId);
+    public ResponseEntity<Genre> get(@PathVariable("id") int genreId, WebRequest webRequest) {
+        Genre genre = genreService.get(genreId);
+        String eTag = genreService.getETag();
+
+        if (webRequest.checkNotModified(eTag)) {
+            return null; //304
+        }
+
+        return ResponseEntity.ok().eTag(eTag).body(genre);
     }
 
     @GetMapping(produces = "application/json;charset=UTF-8")
-    public Collection<Genre> getAll() {
-        return genreService.getAll();
+    public ResponseEntity<byte[]> getAll(WebRequest webRequest) {
+        String eTag = genreService.getETag();
+
+        if (webRequest.checkNotModified(eTag)) {
+            return null; //304
+        }
+
+        return ResponseEntity.ok().eTag(eTag).body(genreService.getAllJson()); //список отдаётся уже сериализованным
     }
 }
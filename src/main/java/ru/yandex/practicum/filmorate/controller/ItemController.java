@@ -1,32 +1,112 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.core.GenericTypeResolver;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.model.BatchItemResult;
+import ru.yandex.practicum.filmorate.model.ExistenceIndexStats;
 import ru.yandex.practicum.filmorate.model.Identifiable;
+import ru.yandex.practicum.filmorate.model.PatchResult;
 import ru.yandex.practicum.filmorate.service.ItemService;
+import ru.yandex.practicum.filmorate.service.index.PrefixIndex;
 
 import javax.validation.Valid;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.Positive;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.Collection;
+import java.util.List;
 
 public abstract class ItemController<T extends Identifiable<T>> {
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    public static final String ITEM_MODIFIED_HEADER = "X-Item-Modified";
+    public static final int DEFAULT_PAGE_SIZE = 100;
+    public static final int MAX_PAGE_SIZE = 1000;
+    public static final String DEFAULT_AUTOCOMPLETE_LIMIT = "10";
     ItemService<T> itemService;
+    ObjectMapper objectMapper;
+    Class<?> itemClass;
 
-    protected ItemController(ItemService<T> itemService) {
+    protected ItemController(ItemService<T> itemService, ObjectMapper objectMapper) {
         this.itemService = itemService;
+        this.objectMapper = objectMapper;
+        this.itemClass = GenericTypeResolver.resolveTypeArgument(getClass(), ItemController.class);
+    }
+
+    private void writeLine(OutputStream outputStream, T item) {
+        try {
+            outputStream.write(objectMapper.writeValueAsBytes(item));
+            outputStream.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @GetMapping(value = "/autocomplete", produces = "application/json;charset=UTF-8")
+    public List<T> autocomplete(@RequestParam @NotBlank String prefix,
+                                @RequestParam(defaultValue = DEFAULT_AUTOCOMPLETE_LIMIT) @Positive
+                                @Max(PrefixIndex.MAX_RESULTS) int limit) {
+        return itemService.autocomplete(prefix, limit);
+    }
+
+    @GetMapping(value = "/existence-index", produces = "application/json;charset=UTF-8")
+    public ExistenceIndexStats getExistenceIndexStats() {
+        return itemService.getExistenceIndexStats();
     }
 
     @GetMapping(value = "/{id}", produces = "application/json;charset=UTF-8")
-    public T get(@PathVariable("id") long itemId) {
-        return itemService.get(itemId);
+    public ResponseEntity<T> get(@PathVariable("id") long itemId, WebRequest webRequest) {
+        String eTag = itemService.getETag(itemId); //одна короткая выборка версии
+
+        if (webRequest.checkNotModified(eTag)) {
+            return null; //304 - элемент не читаем и не сериализуем
+        }
+
+        return ResponseEntity.ok().eTag(eTag).body(itemService.get(itemId));
     }
 
     @GetMapping(produces = "application/json;charset=UTF-8")
-    public Collection<T> getAll() {
-        return itemService.getAll();
+    public ResponseEntity<Collection<T>> getAll(@RequestParam(required = false) @Positive @Max(MAX_PAGE_SIZE) Integer limit,
+                                                @RequestParam(required = false) String after) {
+        if (limit == null && after == null) {
+            return ResponseEntity.ok(itemService.getAll()); //без параметров постраничного вывода отдаём весь список
+        }
+
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : limit;
+        List<T> items = itemService.getPage(PageCursor.decode(after), pageSize + 1); //лишний элемент - признак следующей страницы
+
+        if (items.size() <= pageSize) {
+            return ResponseEntity.ok(items); //это последняя страница
+        }
+
+        List<T> page = items.subList(0, pageSize);
+
+        return ResponseEntity
+                .ok()
+                .header(NEXT_CURSOR_HEADER, PageCursor.encode(page.get(pageSize - 1).getId()))
+                .body(page);
+    }
+
+    @GetMapping(value = "/export", produces = "application/x-ndjson;charset=UTF-8")
+    public StreamingResponseBody export() {
+        return outputStream -> itemService.streamAll(item -> writeLine(outputStream, item)); //каждая строка пишется сразу
     }
 
     @PostMapping
@@ -34,11 +114,35 @@ public abstract class ItemController<T extends Identifiable<T>> {
         return itemService.add(item);
     }
 
+    @PostMapping(value = "/batch", consumes = {"application/json", "application/x-ndjson"},
+            produces = "application/json;charset=UTF-8")
+    public List<BatchItemResult> addAll(InputStream inputStream) throws IOException {
+        try (MappingIterator<T> items = objectMapper.readerFor(itemClass).readValues(inputStream)) {
+            return itemService.addAll(items); //массив или поток объектов читается по одному, без загрузки целиком
+        }
+    }
+
     @PutMapping
     public T update(@Valid @RequestBody T item) {
         return itemService.update(item);
     }
 
+    @PatchMapping(value = "/{id}", produces = "application/json;charset=UTF-8")
+    public ResponseEntity<T> patch(@PathVariable("id") long itemId, @RequestBody ObjectNode patch)
+            throws JsonProcessingException {
+        T storedItem = itemService.get(itemId);
+        ObjectNode itemNode = objectMapper.valueToTree(storedItem);
+        itemNode.setAll(patch); //поля, которых нет в запросе, остаются прежними
+        @SuppressWarnings("unchecked")
+        T patchedItem = ((T) objectMapper.treeToValue(itemNode, itemClass)).withId(itemId);
+        PatchResult<T> result = itemService.patch(storedItem, patchedItem);
+
+        return ResponseEntity
+                .ok()
+                .header(ITEM_MODIFIED_HEADER, String.valueOf(result.isModified()))
+                .body(result.getItem());
+    }
+
     @DeleteMapping
     public void deleteAll() {
         itemService.deleteAll();
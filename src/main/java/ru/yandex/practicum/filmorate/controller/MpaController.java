@@ -1,14 +1,14 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import ru.yandex.practicum.filmorate.model.Mpa;
 import ru.yandex.practicum.filmorate.service.MpaService;
 
-import java.util.Collection;
-
 import static ru.yandex.practicum.filmorate.controller.MpaController.BASE_PATH;
 
 @RestController
@@ -22,12 +22,25 @@ public class MpaController {
     }
 
     @GetMapping(value = "/{id}", produces = "application/json;charset=UTF-8")
-    public Mpa get(@PathVariable("id") int mpaId) {
-        return mpaService.get(mpaId);
+    public ResponseEntity<Mpa> get(@PathVariable("id") int mpaId, WebRequest webRequest) {
+        Mpa mpa = mpaService.get(mpaId);
+        String eTag = mpaService.getETag();
+
+        if (webRequest.checkNotModified(eTag)) {
+            return null; //304
+        }
+
+        return ResponseEntity.ok().eTag(eTag).body(mpa);
     }
 
     @GetMapping(produces = "application/json;charset=UTF-8")
-    public Collection<Mpa> getAll() {
-        return mpaService.getAll();
+    public ResponseEntity<byte[]> getAll(WebRequest webRequest) {
+        String eTag = mpaService.getETag();
+
+        if (webRequest.checkNotModified(eTag)) {
+            return null; //304
+        }
+
+        return ResponseEntity.ok().eTag(eTag).body(mpaService.getAllJson()); //список отдаётся уже сериализованным
     }
 }
@@ -0,0 +1,31 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import ru.yandex.practicum.filmorate.service.exception.InvalidCursorException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+public class PageCursor {
+    public static final long FIRST_PAGE = Long.MIN_VALUE;
+
+    private PageCursor() {
+    }
+
+    public static String encode(long lastItemId) {
+        return Base64.getUrlEncoder()
+                .withoutPadding()
+                .encodeToString(Long.toString(lastItemId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static long decode(String cursor) {
+        if (cursor == null) {
+            return FIRST_PAGE; //курсор не передан - отдаём первую страницу
+        }
+
+        try {
+            return Long.parseLong(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) { //NumberFormatException тоже IllegalArgumentException
+            throw new InvalidCursorException(cursor);
+        }
+    }
+}
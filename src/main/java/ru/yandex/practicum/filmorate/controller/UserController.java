@@ -1,27 +1,40 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
 import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.service.index.FilmRecommender;
+import ru.yandex.practicum.filmorate.service.index.FriendSuggester;
 
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Positive;
 import java.util.List;
 
 import static ru.yandex.practicum.filmorate.controller.UserController.BASE_PATH;
 
+@Validated
 @RestController
 @RequestMapping(BASE_PATH)
 public class UserController extends ItemController<User> {
     public static final String BASE_PATH = "/users";
+    public static final String DEFAULT_SUGGESTIONS_TO_DISPLAY = "10";
     private final UserService userService;
+    private final FilmService filmService;
 
-    protected UserController(UserService userService) {
-        super(userService);
+    protected UserController(UserService userService, FilmService filmService, ObjectMapper objectMapper) {
+        super(userService, objectMapper);
         this.userService = userService;
+        this.filmService = filmService;
     }
 
     @PutMapping("/{id}/friends/{friendId}")
@@ -39,8 +52,22 @@ public class UserController extends ItemController<User> {
         return userService.getFriends(userId);
     }
 
+    @GetMapping(value = "/{id}/friends/suggestions", produces = "application/json;charset=UTF-8")
+    public List<User> getFriendSuggestions(@PathVariable("id") long userId,
+                                           @RequestParam(defaultValue = DEFAULT_SUGGESTIONS_TO_DISPLAY) @Positive
+                                           @Max(FriendSuggester.MAX_SUGGESTIONS) int limit) {
+        return userService.getFriendSuggestions(userId, limit);
+    }
+
     @GetMapping(value = "/{id}/friends/common/{otherId}", produces = "application/json;charset=UTF-8")
     public List<User> getCommonFriends(@PathVariable("id") long userId, @PathVariable("otherId") long otherUserId) {
         return userService.getCommonFriends(userId, otherUserId);
     }
+
+    @GetMapping(value = "/{id}/recommendations", produces = "application/json;charset=UTF-8")
+    public List<Film> getRecommendedFilms(@PathVariable("id") long userId,
+                                          @RequestParam(defaultValue = FilmController.DEFAULT_FILMS_TO_DISPLAY) @Positive
+                                          @Max(FilmRecommender.MAX_RESULTS) int count) {
+        return filmService.getRecommendedFilms(userId, count);
+    }
 }
@@ -0,0 +1,17 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Value;
+
+@Value
+public class CacheStats {
+    long hits;
+    long misses;
+    long evictions; //вытеснены из-за нехватки памяти
+    long invalidations; //удалены после изменения данных
+    int size;
+    long weight;
+    long maxWeight;
+    long loads; //загрузки из БД после промахов
+    long collapsed; //промахи, дождавшиеся чужой загрузки того же ключа
+    long loadTimeouts;
+}
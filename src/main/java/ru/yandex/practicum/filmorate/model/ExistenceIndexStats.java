@@ -0,0 +1,11 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Value;
+
+@Value
+public class ExistenceIndexStats {
+    long hits; //ответы из битовой карты без обращения к БД
+    long fallbacks; //id не найден в карте - проверка по БД
+    long fallbackMatches; //БД нашла то, чего не было в карте, - элемент добавлен другим экземпляром
+    double hitRate;
+}
@@ -47,6 +47,17 @@ public class Film implements Identifiable<Film> {
         return new LinkedHashSet<>(genres);
     }
 
+    @Override
+    public boolean hasSameFields(Film other) {
+        return id == other.id
+                && Objects.equals(name, other.name)
+                && Objects.equals(description, other.description)
+                && Objects.equals(releaseDate, other.releaseDate)
+                && duration == other.duration
+                && Objects.equals(mpa, other.mpa)
+                && genres.equals(other.genres); //жанры и рейтинг сравниваются по id
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -4,4 +4,6 @@ public interface Identifiable<T> {
     long getId();
 
     T withId(long itemId);
+
+    boolean hasSameFields(T other); //equals сравнивает только id
 }
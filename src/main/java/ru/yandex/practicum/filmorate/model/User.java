@@ -38,6 +38,15 @@ public class User implements Identifiable<User> {
         return StringUtils.hasText(name) ? name : login; //если name не указано, то используем login
     }
 
+    @Override
+    public boolean hasSameFields(User other) {
+        return id == other.id
+                && Objects.equals(email, other.email)
+                && Objects.equals(login, other.login)
+                && Objects.equals(getName(), other.getName())
+                && Objects.equals(birthday, other.birthday);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -5,7 +5,8 @@ import javax.validation.ConstraintValidatorContext;
 import java.time.LocalDate;
 
 public class ReleaseDateValidator implements ConstraintValidator<ReleaseDate, LocalDate> {
-    public static final LocalDate FIRST_FILM_SHOW = LocalDate.of(1895, 12, 28);
+    public static final int FIRST_FILM_YEAR = 1895;
+    public static final LocalDate FIRST_FILM_SHOW = LocalDate.of(FIRST_FILM_YEAR, 12, 28);
 
     @Override
     public boolean isValid(LocalDate releaseDate, ConstraintValidatorContext context) {
@@ -1,39 +1,265 @@
 package ru.yandex.practicum.filmorate.service;
 
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.model.BatchItemResult;
+import ru.yandex.practicum.filmorate.model.CacheStats;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.service.cache.FilmCache;
+import ru.yandex.practicum.filmorate.service.exception.ItemNotFoundException;
+import ru.yandex.practicum.filmorate.service.index.FilmRecommender;
+import ru.yandex.practicum.filmorate.service.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.service.index.PopularityIndex;
 import ru.yandex.practicum.filmorate.storage.FilmStorage;
 import ru.yandex.practicum.filmorate.storage.LikeStorage;
+import ru.yandex.practicum.filmorate.storage.replica.PrimaryReads;
 
+import javax.validation.Validator;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
+@Slf4j
 @Service
 public class FilmService extends ItemService<Film> {
     private static final String ITEM_NAME = "фильм";
     private final FilmStorage filmStorage;
     private final LikeStorage likeStorage;
     private final UserService userService;
+    private final GenreService genreService;
+    private final MpaService mpaService;
+    private final PopularityIndex popularityIndex;
+    private final FilmRecommender filmRecommender;
+    private final FilmSearchIndex filmSearchIndex;
+    private final FilmCache filmCache;
+    private final PrimaryReads primaryReads;
 
-    protected FilmService(FilmStorage filmStorage, LikeStorage likeStorage, UserService userService) {
-        super(ITEM_NAME, filmStorage);
+    protected FilmService(FilmStorage filmStorage, LikeStorage likeStorage, UserService userService,
+                          GenreService genreService, MpaService mpaService, PopularityIndex popularityIndex,
+                          FilmRecommender filmRecommender, FilmSearchIndex filmSearchIndex, FilmCache filmCache,
+                          PrimaryReads primaryReads, Validator validator) {
+        super(ITEM_NAME, filmStorage, validator);
         this.filmStorage = filmStorage;
         this.likeStorage = likeStorage;
         this.userService = userService;
+        this.genreService = genreService;
+        this.mpaService = mpaService;
+        this.popularityIndex = popularityIndex;
+        this.filmRecommender = filmRecommender;
+        this.filmSearchIndex = filmSearchIndex;
+        this.filmCache = filmCache;
+        this.primaryReads = primaryReads;
+        IndexRepairs repairs = new IndexRepairs("likes");
+        likeStorage.setLostWriteListener((filmId, userId) -> repairs.schedule(() -> repairLike(filmId, userId)));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initIndexes() {
+        reconcileLikeCounts();
+        rebuildPopularityIndex();
+        rebuildRecommendations();
+        rebuildSearchIndex();
+    }
+
+    public void rebuildSearchIndex() {
+        log.info("rebuildSearchIndex");
+        filmSearchIndex.rebuild(filmStorage::streamAll); //один проход по таблице, без загрузки всех фильмов в память
+        log.info("rebuildSearchIndex: " + filmSearchIndex.getTermsCount() + " слов");
+    }
+
+    public void rebuildRecommendations() {
+        log.info("rebuildRecommendations");
+        filmRecommender.rebuild(likeStorage.getLikedFilmIds()); //похожие фильмы досчитываются в фоне
+    }
+
+    private List<Film> getFilms(long[] filmIds) {
+        return filmStorage.getByIds(Arrays.stream(filmIds).boxed().collect(Collectors.toList())); //один запрос
+    }
+
+    public void reconcileLikeCounts() {
+        int reconciled = likeStorage.reconcileLikeCounts(); //после сбоя или массовой загрузки лайков
+        log.info("reconcileLikeCounts: " + reconciled);
+    }
+
+    public void rebuildPopularityIndex() {
+        log.info("rebuildPopularityIndex");
+        popularityIndex.rebuild(likeStorage::getLikeCounts);
+        filmCache.invalidatePopularFilms();
+    }
+
+    public Set<Long> checkPopularityIndex() {
+        Set<Long> mismatches = popularityIndex.findMismatches(likeStorage::getLikeCounts);
+
+        if (!mismatches.isEmpty()) {
+            log.warn("checkPopularityIndex: " + mismatches);
+        }
+
+        return mismatches;
+    }
+
+    @Override
+    protected void checkReferences(Film film) {
+        mpaService.checkIfItemNotFound(film.getMpa().getId()); //справочники в памяти, запросов к БД нет
+        film.getGenres().forEach(genre -> genreService.checkIfItemNotFound(genre.getId()));
+    }
+
+    @Override
+    protected String getAutocompleteKey(Film film) {
+        return film.getName();
+    }
+
+    @Override
+    protected int getAutocompleteRank(long filmId) {
+        return popularityIndex.getLikeCount(filmId);
+    }
+
+    @Override
+    protected void onAdded(Film film) {
+        popularityIndex.addFilm(film.getId());
+        filmSearchIndex.put(film);
+        filmCache.filmAdded(film.getId());
+    }
+
+    @Override
+    protected void onUpdated(Film film) {
+        filmSearchIndex.put(film); //старые слова фильма индекс помнит сам
+        filmCache.filmUpdated(film.getId());
+    }
+
+    private FilmCache.VersionedFilm loadFilm(long filmId) {
+        return primaryReads.get(() -> {
+            //версия читается первой: если между выборками фильм обновят, ETag окажется старше тела, а не наоборот
+            long version = filmStorage
+                    .getVersion(filmId)
+                    .orElseThrow(() -> new ItemNotFoundException(filmId, ITEM_NAME));
+            return new FilmCache.VersionedFilm(filmStorage.get(filmId), version);
+        });
+    }
+
+    @Override
+    public Film get(long filmId) {
+        checkIfItemNotFound(filmId);
+        return filmCache.getFilm(filmId, () -> loadFilm(filmId));
+    }
+
+    @Override
+    public String getETag(long filmId) {
+        checkIfItemNotFound(filmId);
+        return toETag(filmCache.getFilmVersion(filmId, () -> loadFilm(filmId))); //версия из той же записи кэша, что и тело
+    }
+
+    @Override
+    public Film add(Film film) {
+        return popularityIndex.update(() -> super.add(film));
+    }
+
+    @Override
+    public List<BatchItemResult> addAll(Iterator<Film> films) {
+        return popularityIndex.update(() -> super.addAll(films));
+    }
+
+    @Override
+    public void deleteAll() {
+        popularityIndex.update(() -> {
+            likeStorage.flush(); //иначе отложенные лайки удалённых фильмов останутся в буфере как подтверждённые
+            super.deleteAll();
+            popularityIndex.clear();
+            filmRecommender.clear(); //лайки удалены каскадно
+            filmSearchIndex.clear();
+            filmCache.clear();
+        });
     }
 
     public void addLike(long filmId, long userId) {
         this.checkIfItemNotFound(filmId);
         userService.checkIfItemNotFound(userId);
-        likeStorage.add(filmId, userId);
+
+        popularityIndex.update(() -> {
+            filmRecommender.update(userId, () -> {
+                if (likeStorage.add(filmId, userId)) {
+                    popularityIndex.changeLikeCount(filmId, 1);
+                    filmCache.likeCountChanged(filmId, popularityIndex.getLikeCount(filmId));
+                    filmRecommender.addLike(filmId, userId);
+                }
+            });
+        });
     }
 
     public void deleteLike(long filmId, long userId) {
         this.checkIfItemNotFound(filmId);
         userService.checkIfItemNotFound(userId);
-        likeStorage.delete(filmId, userId);
+
+        popularityIndex.update(() -> {
+            filmRecommender.update(userId, () -> {
+                if (likeStorage.delete(filmId, userId)) {
+                    popularityIndex.changeLikeCount(filmId, -1);
+                    filmCache.likeCountChanged(filmId, popularityIndex.getLikeCount(filmId));
+                    filmRecommender.deleteLike(filmId, userId);
+                }
+            });
+        });
+    }
+
+    //индексы учли лайк до записи в БД, а запись не прошла - приводим их к тому, что в БД на самом деле
+    void repairLike(long filmId, long userId) {
+        popularityIndex.update(() -> {
+            filmRecommender.update(userId, () -> {
+                boolean isLiked = likeStorage.isLiked(filmId, userId);
+
+                if (isLiked != filmRecommender.isLiked(filmId, userId)) {
+                    log.warn("repairLike: filmId={}, userId={}, isLiked={}", filmId, userId, isLiked);
+                    popularityIndex.changeLikeCount(filmId, isLiked ? 1 : -1);
+                    filmCache.likeCountChanged(filmId, popularityIndex.getLikeCount(filmId));
+
+                    if (isLiked) {
+                        filmRecommender.addLike(filmId, userId);
+                    } else {
+                        filmRecommender.deleteLike(filmId, userId);
+                    }
+                }
+            });
+        });
     }
 
     public List<Film> getPopularFilms(int count) {
-        return filmStorage.getPopularFilms(count);
+        return filmCache.getPopularFilms(count,
+                //рейтинг в памяти, из БД - только сами фильмы, и не с реплики: список останется в кэше
+                () -> primaryReads.get(() -> filmStorage.getByIds(popularityIndex.getTopFilmIds(count))),
+                popularityIndex::getLikeCount);
+    }
+
+    public CacheStats getCacheStats() {
+        return filmCache.getStats();
+    }
+
+    public List<Film> getPopularFilms(int count, Integer genreId, Integer year) {
+        if (genreId == null && year == null) {
+            return getPopularFilms(count);
+        }
+
+        if (genreId != null) {
+            genreService.checkIfItemNotFound(genreId);
+        }
+
+        likeStorage.flush(); //счётчики лайков в БД должны учитывать уже подтверждённые лайки
+        return filmStorage.getPopularFilms(count, genreId, year); //по составным индексам читается только count строк
+    }
+
+    public List<Film> searchFilms(String query, int limit) {
+        return getFilms(filmSearchIndex.search(query, limit));
+    }
+
+    public List<Film> getSimilarFilms(long filmId, int count) {
+        checkIfItemNotFound(filmId);
+        return getFilms(filmRecommender.getSimilarFilmIds(filmId, count));
+    }
+
+    public List<Film> getRecommendedFilms(long userId, int count) {
+        userService.checkIfItemNotFound(userId);
+        return getFilms(filmRecommender.getRecommendedFilmIds(userId, count));
     }
 }
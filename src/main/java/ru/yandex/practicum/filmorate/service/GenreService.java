@@ -1,35 +1,51 @@
 package ru.yandex.practicum.filmorate.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.service.cache.ReferenceCache;
 import ru.yandex.practicum.filmorate.service.exception.ItemNotFoundException;
 import ru.yandex.practicum.filmorate.storage.impl.GenreStorageImpl;
 
+import javax.annotation.PostConstruct;
 import java.util.Collection;
 
 @Service
 public class GenreService {
     protected final String itemName;
     private static final String ITEM_NAME = "жанр";
-    private final GenreStorageImpl genreStorage;
+    private final ReferenceCache<Genre> genreCache;
 
-    protected GenreService(GenreStorageImpl genreStorage) {
+    protected GenreService(GenreStorageImpl genreStorage, ObjectMapper objectMapper) {
         this.itemName = ITEM_NAME;
-        this.genreStorage = genreStorage;
+        this.genreCache = new ReferenceCache<>(genreStorage::getAll, Genre::getId, objectMapper);
     }
 
-    protected void checkIfItemNotFound(int genreId) {
-        if (genreId == 0 || !genreStorage.isExists(genreId)) {
+    @PostConstruct
+    public void refresh() {
+        genreCache.refresh(); //справочник меняется только вместе с data.sql - читаем его один раз
+    }
+
+    public void checkIfItemNotFound(int genreId) {
+        if (genreId == 0 || !genreCache.isExists(genreId)) {
             throw new ItemNotFoundException(genreId, itemName);
         }
     }
 
     public Genre get(int genreId) {
         checkIfItemNotFound(genreId);
-        return genreStorage.get(genreId);
+        return genreCache.get(genreId);
     }
 
     public Collection<Genre> getAll() {
-        return genreStorage.getAll();
+        return genreCache.getAll();
+    }
+
+    public byte[] getAllJson() {
+        return genreCache.getAllJson();
+    }
+
+    public String getETag() {
+        return genreCache.getETag();
     }
 }
@@ -0,0 +1,53 @@
+package ru.yandex.practicum.filmorate.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+
+public class IdAllocator {
+    private final LongSupplier blockReserver;
+    private final IntSupplier blockSizeSupplier;
+    private volatile Block block = new Block(0, 0);
+    private int blockSize;
+
+    public IdAllocator(LongSupplier blockReserver, IntSupplier blockSizeSupplier) {
+        this.blockReserver = blockReserver;
+        this.blockSizeSupplier = blockSizeSupplier;
+    }
+
+    public long nextId() {
+        while (true) {
+            Block current = block;
+            long id = current.next.getAndIncrement(); //без блокировок, пока в блоке есть свободные id
+
+            if (id < current.end) {
+                return id;
+            }
+
+            refill(current);
+        }
+    }
+
+    private synchronized void refill(Block exhausted) {
+        if (block != exhausted) {
+            return; //блок уже заменил другой поток
+        }
+
+        if (blockSize == 0) {
+            blockSize = blockSizeSupplier.getAsInt(); //шаг последовательности в БД и есть размер блока
+        }
+
+        long blockStart = blockReserver.getAsLong();
+        block = new Block(blockStart, blockStart + blockSize);
+    }
+
+    private static class Block {
+        private final AtomicLong next;
+        private final long end;
+
+        private Block(long start, long end) {
+            this.next = new AtomicLong(start);
+            this.end = end;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+//сверка индексов с БД после потерянной записи буфера: поток записи, сообщающий о потере,
+//не может сам ждать блокировок индексов - их держат потоки, которые ждут места в его очереди
+@Slf4j
+class IndexRepairs {
+    private final String name;
+    private final ExecutorService executor;
+
+    IndexRepairs(String name) {
+        this.name = name;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name + "-index-repair");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    void schedule(Runnable repair) {
+        executor.execute(() -> {
+            try {
+                repair.run();
+            } catch (RuntimeException e) {
+                log.error("{}: index repair failed", name, e);
+            }
+        });
+    }
+}
@@ -1,67 +1,314 @@
 package ru.yandex.practicum.filmorate.service;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import ru.yandex.practicum.filmorate.model.BatchItemResult;
+import ru.yandex.practicum.filmorate.model.ExistenceIndexStats;
 import ru.yandex.practicum.filmorate.model.Identifiable;
+import ru.yandex.practicum.filmorate.model.PatchResult;
 import ru.yandex.practicum.filmorate.service.exception.ItemAlreadyExistsException;
 import ru.yandex.practicum.filmorate.service.exception.ItemNotFoundException;
+import ru.yandex.practicum.filmorate.service.index.ExistenceIndex;
+import ru.yandex.practicum.filmorate.service.index.PrefixIndex;
 import ru.yandex.practicum.filmorate.storage.ItemStorage;
 
+import javax.validation.ConstraintViolation;
+import javax.validation.ConstraintViolationException;
+import javax.validation.Validator;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Slf4j
 public abstract class ItemService<T extends Identifiable<T>> {
+    public static final int BATCH_CHUNK_SIZE = 500;
     protected final String itemName;
     protected final ItemStorage<T> itemStorage;
+    protected final Validator validator;
+    protected final IdAllocator idAllocator;
+    protected final ExistenceIndex existenceIndex;
+    protected final PrefixIndex prefixIndex;
 
-    protected ItemService(String itemName, ItemStorage<T> itemStorage) {
+    protected ItemService(String itemName, ItemStorage<T> itemStorage, Validator validator) {
         this.itemName = itemName;
         this.itemStorage = itemStorage;
+        this.validator = validator;
+        this.idAllocator = new IdAllocator(itemStorage::reserveIdBlock, itemStorage::getIdBlockSize);
+        this.existenceIndex = new ExistenceIndex(itemStorage::isExists);
+        this.prefixIndex = new PrefixIndex(this::getAutocompleteRank);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initExistenceIndex() {
+        itemStorage.streamIds(existenceIndex::add);
+        log.info("initExistenceIndex: " + itemName);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initPrefixIndex() {
+        prefixIndex.rebuild(consumer -> itemStorage.streamAll(item -> consumer.accept(getAutocompleteKey(item), item.getId())));
+        log.info("initPrefixIndex: " + itemName + " x " + prefixIndex.size());
+    }
+
+    public ExistenceIndex getExistenceIndex() {
+        return existenceIndex;
+    }
+
+    public ExistenceIndexStats getExistenceIndexStats() {
+        return existenceIndex.getStats();
+    }
+
+    protected abstract String getAutocompleteKey(T item);
+
+    protected abstract int getAutocompleteRank(long itemId);
+
+    protected void checkReferences(T item) {
+    }
+
+    protected void onAdded(T item) {
+    }
+
+    protected void onUpdated(T item) {
+    }
+
+    private void itemAdded(T item) {
+        existenceIndex.add(item.getId());
+        prefixIndex.put(item.getId(), getAutocompleteKey(item));
+        onAdded(item);
     }
 
     protected T setItemIdIfMissing(T item) {
         long itemId = item.getId();
         boolean isIdMissing = itemId == 0;
-        return isIdMissing ? item.withId(itemStorage.getNextId()) : item; //если id не задано извне, то задаём сами
+        return isIdMissing ? item.withId(idAllocator.nextId()) : item; //если id не задано извне, то задаём сами
     }
 
     protected void checkIfItemNotFound(long itemId) {
-        if (itemId == 0 || !itemStorage.isExists(itemId)) {
+        if (itemId == 0 || !existenceIndex.isExists(itemId)) { //большинство проверок не доходит до БД
             throw new ItemNotFoundException(itemId, itemName);
         }
     }
 
-    protected void checkIfItemAlreadyExists(long itemId) {
-        if (itemStorage.isExists(itemId)) {
-            throw new ItemAlreadyExistsException(itemId, itemName);
-        }
-    }
-
     public T get(long itemId) {
         checkIfItemNotFound(itemId);
         return itemStorage.get(itemId);
     }
 
+    protected static String toETag(long version) {
+        return "\"" + version + "\""; //версии уникальны и не повторяются после удаления
+    }
+
+    public String getETag(long itemId) {
+        checkIfItemNotFound(itemId);
+        return itemStorage
+                .getVersion(itemId)
+                .map(ItemService::toETag)
+                .orElseThrow(() -> new ItemNotFoundException(itemId, itemName));
+    }
+
     public Collection<T> getAll() {
         return itemStorage.getAll();
     }
 
+    public List<T> getPage(long afterId, int limit) {
+        return itemStorage.getPage(afterId, limit);
+    }
+
+    public void streamAll(Consumer<T> consumer) {
+        itemStorage.streamAll(consumer);
+    }
+
     public T add(T item) {
+        checkReferences(item);
         T itemToAdd = setItemIdIfMissing(item);
-        long itemToAddId = itemToAdd.getId();
-        checkIfItemAlreadyExists(itemToAddId);
         log.info("add: " + itemToAdd);
-        return itemStorage.add(itemToAdd);
+        T addedItem;
+
+        try {
+            addedItem = itemStorage.add(itemToAdd);
+        } catch (DuplicateKeyException e) {
+            throw new ItemAlreadyExistsException(itemToAdd.getId(), itemName); //конфликт определяет сама вставка
+        }
+
+        itemAdded(addedItem);
+        return addedItem;
+    }
+
+    public List<BatchItemResult> addAll(Iterator<T> items) {
+        List<BatchItemResult> results = new ArrayList<>();
+        List<T> chunk = new ArrayList<>(BATCH_CHUNK_SIZE);
+        List<Integer> chunkIndexes = new ArrayList<>(BATCH_CHUNK_SIZE);
+
+        for (int index = 0; ; index++) {
+            T item;
+
+            try {
+                if (!items.hasNext()) {
+                    break;
+                }
+
+                item = items.next();
+            } catch (RuntimeException e) {
+                results.add(BatchItemResult.failed(index, null, "некорректный JSON: " + e.getMessage()));
+                break; //после ошибки разбора продолжить чтение потока нельзя
+            }
+
+            String violations = getViolations(item);
+
+            if (violations != null) {
+                results.add(BatchItemResult.failed(index, item.getId(), violations));
+                continue;
+            }
+
+            try {
+                checkReferences(item);
+            } catch (ItemNotFoundException e) {
+                results.add(BatchItemResult.failed(index, item.getId(), e.getMessage()));
+                continue;
+            }
+
+            chunk.add(item);
+            chunkIndexes.add(index);
+
+            if (chunk.size() == BATCH_CHUNK_SIZE) {
+                addChunk(chunk, chunkIndexes, results);
+                chunk.clear();
+                chunkIndexes.clear();
+            }
+        }
+
+        if (!chunk.isEmpty()) {
+            addChunk(chunk, chunkIndexes, results);
+        }
+
+        results.sort(Comparator.comparingInt(BatchItemResult::getIndex));
+        return results;
+    }
+
+    private String getViolations(T item) {
+        Set<ConstraintViolation<T>> violations = validator.validate(item);
+
+        if (violations.isEmpty()) {
+            return null;
+        }
+
+        return violations
+                .stream()
+                .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                .sorted()
+                .collect(Collectors.joining("; "));
+    }
+
+    private void addChunk(List<T> chunk, List<Integer> chunkIndexes, List<BatchItemResult> results) {
+        List<Long> givenIds = chunk
+                .stream()
+                .map(Identifiable::getId)
+                .filter(itemId -> itemId != 0)
+                .collect(Collectors.toList());
+        Set<Long> existingIds = givenIds.isEmpty() ? Set.of() : itemStorage.getExistingIds(givenIds);
+        Set<Long> chunkIds = new HashSet<>();
+        List<T> itemsToAdd = new ArrayList<>(chunk.size());
+        List<Integer> indexesToAdd = new ArrayList<>(chunk.size());
+
+        for (int i = 0; i < chunk.size(); i++) {
+            T item = chunk.get(i);
+            long itemId = item.getId();
+
+            if (itemId == 0) {
+                item = item.withId(idAllocator.nextId());
+            } else if (existingIds.contains(itemId) || !chunkIds.add(itemId)) {
+                String error = new ItemAlreadyExistsException(itemId, itemName).getMessage();
+                results.add(BatchItemResult.failed(chunkIndexes.get(i), itemId, error));
+                continue;
+            }
+
+            itemsToAdd.add(item);
+            indexesToAdd.add(chunkIndexes.get(i));
+        }
+
+        if (itemsToAdd.isEmpty()) {
+            return;
+        }
+
+        log.info("addAll: " + itemName + " x " + itemsToAdd.size());
+
+        try {
+            itemStorage.addAll(itemsToAdd);
+        } catch (DataAccessException e) {
+            log.warn("addAll: " + itemName + " - пачка отклонена, добавляем по одному", e);
+            addOneByOne(itemsToAdd, indexesToAdd, results);
+            return;
+        }
+
+        for (int i = 0; i < itemsToAdd.size(); i++) {
+            T addedItem = itemsToAdd.get(i);
+            itemAdded(addedItem);
+            results.add(BatchItemResult.added(indexesToAdd.get(i), addedItem.getId()));
+        }
+    }
+
+    private void addOneByOne(List<T> itemsToAdd, List<Integer> indexesToAdd, List<BatchItemResult> results) {
+        for (int i = 0; i < itemsToAdd.size(); i++) {
+            T item = itemsToAdd.get(i);
+            int index = indexesToAdd.get(i);
+
+            try {
+                itemStorage.addAll(List.of(item)); //та же транзакция, что и у пачки, но на один элемент
+            } catch (DataAccessException e) {
+                results.add(BatchItemResult.failed(index, item.getId(), e.getMostSpecificCause().getMessage()));
+                continue;
+            }
+
+            itemAdded(item);
+            results.add(BatchItemResult.added(index, item.getId()));
+        }
     }
 
     public T update(T item) {
-        long itemId = item.getId();
-        checkIfItemNotFound(itemId);
+        checkReferences(item);
         log.info("update: " + item);
-        return itemStorage.update(item);
+        T updatedItem = itemStorage
+                .update(item)
+                .orElseThrow(() -> new ItemNotFoundException(item.getId(), itemName)); //ни одна строка не обновлена
+        prefixIndex.put(updatedItem.getId(), getAutocompleteKey(updatedItem));
+        onUpdated(updatedItem);
+        return updatedItem;
+    }
+
+    public PatchResult<T> patch(T storedItem, T patchedItem) {
+        Set<ConstraintViolation<T>> violations = validator.validate(patchedItem);
+
+        if (!violations.isEmpty()) {
+            throw new ConstraintViolationException(violations);
+        }
+
+        if (patchedItem.hasSameFields(storedItem)) {
+            log.info("patch: " + itemName + " не изменился, id = " + storedItem.getId());
+            return new PatchResult<>(storedItem, false); //ничего не пишем в БД
+        }
+
+        return new PatchResult<>(update(patchedItem), true);
     }
 
     public void deleteAll() {
         log.info("deleteAll: " + itemName);
         itemStorage.deleteAll();
+        existenceIndex.clear();
+        prefixIndex.clear();
+    }
+
+    public List<T> autocomplete(String prefix, int limit) {
+        long[] itemIds = prefixIndex.lookup(prefix, limit); //из БД - только найденные элементы, одним запросом
+        return itemStorage.getByIds(Arrays.stream(itemIds).boxed().collect(Collectors.toList()));
     }
 }
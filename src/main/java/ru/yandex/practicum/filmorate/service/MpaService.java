@@ -1,35 +1,51 @@
 package ru.yandex.practicum.filmorate.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.service.cache.ReferenceCache;
 import ru.yandex.practicum.filmorate.service.exception.ItemNotFoundException;
 import ru.yandex.practicum.filmorate.storage.impl.MpaStorageImpl;
 
+import javax.annotation.PostConstruct;
 import java.util.Collection;
 
 @Service
 public class MpaService {
     protected final String itemName;
     private static final String ITEM_NAME = "рейтинг MPA";
-    private final MpaStorageImpl mpaStorage;
+    private final ReferenceCache<Mpa> mpaCache;
 
-    protected MpaService(MpaStorageImpl mpaStorage) {
+    protected MpaService(MpaStorageImpl mpaStorage, ObjectMapper objectMapper) {
         this.itemName = ITEM_NAME;
-        this.mpaStorage = mpaStorage;
+        this.mpaCache = new ReferenceCache<>(mpaStorage::getAll, Mpa::getId, objectMapper);
     }
 
-    protected void checkIfItemNotFound(int mpaId) {
-        if (mpaId == 0 || !mpaStorage.isExists(mpaId)) {
+    @PostConstruct
+    public void refresh() {
+        mpaCache.refresh(); //справочник меняется только вместе с data.sql - читаем его один раз
+    }
+
+    public void checkIfItemNotFound(int mpaId) {
+        if (mpaId == 0 || !mpaCache.isExists(mpaId)) {
             throw new ItemNotFoundException(mpaId, itemName);
         }
     }
 
     public Mpa get(int mpaId) {
         checkIfItemNotFound(mpaId);
-        return mpaStorage.get(mpaId);
+        return mpaCache.get(mpaId);
     }
 
     public Collection<Mpa> getAll() {
-        return mpaStorage.getAll();
+        return mpaCache.getAll();
+    }
+
+    public byte[] getAllJson() {
+        return mpaCache.getAllJson();
+    }
+
+    public String getETag() {
+        return mpaCache.getETag();
     }
 }
@@ -1,41 +1,138 @@
 package ru.yandex.practicum.filmorate.service;
 
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.cache.FilmCache;
+import ru.yandex.practicum.filmorate.service.index.FilmRecommender;
+import ru.yandex.practicum.filmorate.service.index.FriendGraph;
+import ru.yandex.practicum.filmorate.service.index.FriendSuggester;
+import ru.yandex.practicum.filmorate.service.index.PopularityIndex;
 import ru.yandex.practicum.filmorate.storage.FriendStorage;
+import ru.yandex.practicum.filmorate.storage.LikeStorage;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
 
+import javax.validation.Validator;
+import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Collectors;
 
+@Slf4j
 @Service
 public class UserService extends ItemService<User> {
     public static final String ITEM_NAME = "пользователь";
     private final UserStorage userStorage;
     private final FriendStorage friendStorage;
+    private final LikeStorage likeStorage;
+    private final PopularityIndex popularityIndex;
+    private final FriendGraph friendGraph;
+    private final FriendSuggester friendSuggester;
+    private final FilmRecommender filmRecommender;
+    private final FilmCache filmCache;
 
-    protected UserService(UserStorage userStorage, FriendStorage friendStorage) {
-        super(ITEM_NAME, userStorage);
+    protected UserService(UserStorage userStorage, FriendStorage friendStorage, LikeStorage likeStorage,
+                          PopularityIndex popularityIndex, FriendGraph friendGraph, FriendSuggester friendSuggester,
+                          FilmRecommender filmRecommender, FilmCache filmCache, Validator validator) {
+        super(ITEM_NAME, userStorage, validator);
         this.userStorage = userStorage;
         this.friendStorage = friendStorage;
+        this.likeStorage = likeStorage;
+        this.popularityIndex = popularityIndex;
+        this.friendGraph = friendGraph;
+        this.friendSuggester = friendSuggester;
+        this.filmRecommender = filmRecommender;
+        this.filmCache = filmCache;
+        IndexRepairs repairs = new IndexRepairs("user_friends");
+        friendStorage.setLostWriteListener((userId, friendId) -> repairs.schedule(() -> repairFriend(userId, friendId)));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initFriendGraph() {
+        log.info("initFriendGraph");
+        friendGraph.rebuild(friendStorage.getFriendIds());
+        friendSuggester.clear();
+    }
+
+    private List<User> getUsers(long[] userIds) {
+        return userStorage.getByIds(Arrays.stream(userIds).boxed().collect(Collectors.toList())); //один запрос
+    }
+
+    @Override
+    protected String getAutocompleteKey(User user) {
+        return user.getLogin();
+    }
+
+    @Override
+    protected int getAutocompleteRank(long userId) {
+        return friendGraph.getFriendIds(userId).length;
+    }
+
+    @Override
+    public void deleteAll() {
+        popularityIndex.update(() -> {
+            friendStorage.flush(); //иначе отложенные операции удалённых пользователей останутся в буфере как подтверждённые
+            likeStorage.flush();
+            super.deleteAll();
+            friendGraph.clear(); //дружба удалена каскадно
+            friendSuggester.clear();
+            popularityIndex.resetLikeCounts(); //лайки пользователей удалены каскадно
+            filmCache.invalidatePopularFilms();
+            filmRecommender.clear();
+        });
     }
 
     public void addFriend(long userId, long friendId) {
         checkIfItemNotFound(userId);
         checkIfItemNotFound(friendId);
-        friendStorage.add(userId, friendId);
+        friendGraph.update(userId, () -> {
+            if (friendStorage.add(userId, friendId)) {
+                friendGraph.addFriend(userId, friendId);
+                friendSuggester.onFriendsChanged(userId);
+            }
+        });
     }
 
     public void deleteFriend(long userId, long friendId) {
         checkIfItemNotFound(userId);
         checkIfItemNotFound(friendId);
-        friendStorage.delete(userId, friendId);
+        friendGraph.update(userId, () -> {
+            if (friendStorage.delete(userId, friendId)) {
+                friendGraph.deleteFriend(userId, friendId);
+                friendSuggester.onFriendsChanged(userId);
+            }
+        });
+    }
+
+    //граф учёл изменение до записи в БД, а запись не прошла - приводим его к тому, что в БД на самом деле
+    void repairFriend(long userId, long friendId) {
+        friendGraph.update(userId, () -> {
+            boolean isFriend = friendStorage.isFriend(userId, friendId);
+
+            if (isFriend != friendGraph.isFriend(userId, friendId)) {
+                log.warn("repairFriend: userId={}, friendId={}, isFriend={}", userId, friendId, isFriend);
+
+                if (isFriend) {
+                    friendGraph.addFriend(userId, friendId);
+                } else {
+                    friendGraph.deleteFriend(userId, friendId);
+                }
+                friendSuggester.onFriendsChanged(userId);
+            }
+        });
     }
 
     public List<User> getFriends(long userId) {
-        return userStorage.getFriends(userId);
+        return getUsers(friendGraph.getFriendIds(userId));
     }
 
     public List<User> getCommonFriends(long userId, long otherUserId) {
-        return userStorage.getCommonFriends(userId, otherUserId);
+        return getUsers(friendGraph.getCommonFriendIds(userId, otherUserId)); //пересечение id в памяти
+    }
+
+    public List<User> getFriendSuggestions(long userId, int limit) {
+        checkIfItemNotFound(userId);
+        return getUsers(friendSuggester.suggest(userId, limit)); //по убыванию числа общих друзей
     }
 }
@@ -0,0 +1,298 @@
+package ru.yandex.practicum.filmorate.service.cache;
+
+import lombok.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.CacheStats;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+@Component
+public class FilmCache {
+    static final long ENTRY_OVERHEAD = 128; //ключ, узел ConcurrentHashMap и обёртка значения
+    static final long FILM_OVERHEAD = 256; //объект фильма, даты, рейтинг и пустое множество жанров
+    static final long GENRE_WEIGHT = 48;
+    private final long maxWeight;
+    private final Map<Object, Entry> entries = new ConcurrentHashMap<>(); //попадания читают без блокировки
+    private final Deque<EvictionCandidate> evictionOrder = new ArrayDeque<>(); //снимок записей от давних к свежим
+    private final Map<PopularKey, PopularEntry> popularEntries = new HashMap<>(); //обходим их без обхода фильмов
+    private final Map<Object, Object> loadings = new HashMap<>(); //ключ -> метка последней начатой загрузки
+    private final SingleFlight<Object, Entry> singleFlight;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private long weight;
+
+    @Value
+    private static class PopularKey {
+        int count;
+    }
+
+    @Value
+    public static class VersionedFilm {
+        Film film;
+        long version; //кэшируется вместе с фильмом - ETag всегда соответствует отданному телу
+    }
+
+    private static class Entry {
+        private final Object value;
+        private final long weight;
+        private volatile long lastAccess = System.nanoTime(); //порядок доступа для LRU без общей блокировки
+
+        private Entry(Object value, long weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    private static class EvictionCandidate {
+        private final Object key;
+        private final Entry entry;
+        private final long lastAccess; //если с момента снимка к записи обращались, она уже не давняя
+
+        private EvictionCandidate(Object key, Entry entry) {
+            this.key = key;
+            this.entry = entry;
+            this.lastAccess = entry.lastAccess;
+        }
+    }
+
+    private static class PopularEntry extends Entry {
+        private final Set<Long> filmIds;
+        private final int minLikeCount; //лайков у последнего фильма в списке
+        private final boolean isFull; //в списке ровно count фильмов, иначе в нём все фильмы
+
+        private PopularEntry(List<Film> films, long weight, Set<Long> filmIds, int minLikeCount, boolean isFull) {
+            super(films, weight);
+            this.filmIds = filmIds;
+            this.minLikeCount = minLikeCount;
+            this.isFull = isFull;
+        }
+
+        private boolean isAffected(long filmId, int likeCount) {
+            return filmIds.contains(filmId) || !isFull || likeCount >= minLikeCount; //фильм в списке или может в него войти
+        }
+    }
+
+    public FilmCache(FilmCacheProperties properties) {
+        this.maxWeight = properties.getMaxMemory().toBytes();
+        this.singleFlight = new SingleFlight<>(properties.getLoadTimeout().toMillis());
+    }
+
+    static long weigh(Film film) {
+        return FILM_OVERHEAD
+                + 2L * (length(film.getName()) + length(film.getDescription())) //строки в UTF-16
+                + GENRE_WEIGHT * film.getGenres().size();
+    }
+
+    private static int length(String text) {
+        return text == null ? 0 : text.length();
+    }
+
+    public Film getFilm(long filmId, Supplier<VersionedFilm> loader) {
+        return getVersionedFilm(filmId, loader).getFilm();
+    }
+
+    public long getFilmVersion(long filmId, Supplier<VersionedFilm> loader) {
+        return getVersionedFilm(filmId, loader).getVersion();
+    }
+
+    private VersionedFilm getVersionedFilm(long filmId, Supplier<VersionedFilm> loader) {
+        return (VersionedFilm) get(filmId, () -> {
+            VersionedFilm versionedFilm = loader.get();
+            return new Entry(versionedFilm, ENTRY_OVERHEAD + weigh(versionedFilm.getFilm()));
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<Film> getPopularFilms(int count, Supplier<List<Film>> loader, ToIntFunction<Long> likeCounts) {
+        return (List<Film>) get(new PopularKey(count), () -> {
+            List<Film> films = List.copyOf(loader.get());
+            Set<Long> filmIds = new HashSet<>();
+            long filmsWeight = ENTRY_OVERHEAD;
+
+            for (Film film : films) {
+                filmIds.add(film.getId());
+                filmsWeight += ENTRY_OVERHEAD + weigh(film);
+            }
+
+            int minLikeCount = films.isEmpty() ? 0 : likeCounts.applyAsInt(films.get(films.size() - 1).getId());
+            return new PopularEntry(films, filmsWeight, filmIds, minLikeCount, films.size() == count);
+        });
+    }
+
+    private Object get(Object key, Supplier<Entry> loader) {
+        Entry entry = entries.get(key);
+
+        if (entry != null) {
+            entry.lastAccess = System.nanoTime();
+            hits.increment();
+            return entry.value;
+        }
+
+        misses.increment();
+        return singleFlight.load(key, () -> load(key, loader)).value; //одинаковые промахи ждут одну загрузку
+    }
+
+    private Entry load(Object key, Supplier<Entry> loader) {
+        Object loading = new Object();
+
+        synchronized (this) {
+            loadings.put(key, loading);
+        }
+
+        Entry entry = null;
+
+        try {
+            entry = loader.get(); //читаем из БД без блокировки
+            return entry;
+        } finally {
+            synchronized (this) {
+                //если за время загрузки ключ инвалидировали, прочитанное могло устареть
+                if (loadings.get(key) == loading) {
+                    loadings.remove(key);
+
+                    if (entry != null) {
+                        put(key, entry);
+                    }
+                }
+            }
+        }
+    }
+
+    private void put(Object key, Entry entry) {
+        if (entry.weight > maxWeight) {
+            return; //такое значение вытеснило бы весь кэш
+        }
+
+        remove(entries.put(key, entry));
+        weight += entry.weight;
+
+        if (key instanceof PopularKey) {
+            popularEntries.put((PopularKey) key, (PopularEntry) entry);
+        }
+
+        while (weight > maxWeight) {
+            evictEldest();
+        }
+    }
+
+    //приближённый LRU: записи сортируются по времени доступа один раз на много вытеснений,
+    //а кандидаты, к которым обращались после сортировки или которые уже удалены, пропускаются
+    private void evictEldest() {
+        while (true) {
+            if (evictionOrder.isEmpty()) {
+                List<EvictionCandidate> candidates = new ArrayList<>(entries.size());
+                entries.forEach((key, entry) -> candidates.add(new EvictionCandidate(key, entry)));
+                candidates.sort(Comparator.comparingLong(candidate -> candidate.lastAccess));
+                evictionOrder.addAll(candidates);
+            }
+
+            EvictionCandidate candidate = evictionOrder.poll();
+
+            if (candidate.entry.lastAccess == candidate.lastAccess && entries.remove(candidate.key, candidate.entry)) {
+                remove(candidate.key, candidate.entry);
+                evictions.increment();
+                return;
+            }
+        }
+    }
+
+    private void remove(Entry entry) {
+        if (entry != null) {
+            weight -= entry.weight;
+        }
+    }
+
+    private void remove(Object key, Entry entry) {
+        remove(entry);
+
+        if (key instanceof PopularKey) {
+            popularEntries.remove(key);
+        }
+    }
+
+    private void invalidate(Object key) {
+        loadings.remove(key);
+        singleFlight.forget(key);
+        Entry entry = entries.remove(key);
+
+        if (entry != null) {
+            remove(key, entry);
+            invalidations.increment();
+        }
+    }
+
+    private void invalidatePopularFilms(long filmId, int likeCount) {
+        forgetPopularLoadings(); //порог загружаемых списков ещё неизвестен
+        List<PopularKey> affectedKeys = new ArrayList<>();
+
+        popularEntries.forEach((key, entry) -> {
+            if (entry.isAffected(filmId, likeCount)) {
+                affectedKeys.add(key);
+            }
+        });
+
+        affectedKeys.forEach(this::invalidate);
+    }
+
+    private void forgetPopularLoadings() {
+        loadings.keySet().removeIf(key -> key instanceof PopularKey);
+        singleFlight.forgetIf(key -> key instanceof PopularKey);
+    }
+
+    public synchronized void filmAdded(long filmId) {
+        invalidatePopularFilms(filmId, 0); //новый фильм без лайков входит в неполные списки и в списки с нулевым порогом
+    }
+
+    public synchronized void filmUpdated(long filmId) {
+        invalidate(filmId);
+        forgetPopularLoadings(); //загружаемый список может содержать прежнюю версию
+        List<PopularKey> affectedKeys = new ArrayList<>();
+
+        popularEntries.forEach((key, entry) -> {
+            if (entry.filmIds.contains(filmId)) {
+                affectedKeys.add(key); //в списке прежняя версия фильма
+            }
+        });
+
+        affectedKeys.forEach(this::invalidate);
+    }
+
+    public synchronized void likeCountChanged(long filmId, int likeCount) {
+        invalidatePopularFilms(filmId, likeCount); //сам фильм лайков не содержит и остаётся в кэше
+    }
+
+    public synchronized void invalidatePopularFilms() {
+        forgetPopularLoadings();
+        new ArrayList<>(popularEntries.keySet()).forEach(this::invalidate);
+    }
+
+    public synchronized void clear() {
+        loadings.clear();
+        singleFlight.forgetIf(key -> true);
+        invalidations.add(entries.size());
+        entries.clear();
+        evictionOrder.clear();
+        popularEntries.clear();
+        weight = 0;
+    }
+
+    public synchronized CacheStats getStats() {
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), invalidations.sum(), entries.size(), weight,
+                maxWeight, singleFlight.getLoads(), singleFlight.getCollapsed(), singleFlight.getTimeouts());
+    }
+}
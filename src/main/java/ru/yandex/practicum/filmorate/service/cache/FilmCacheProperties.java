@@ -0,0 +1,16 @@
+package ru.yandex.practicum.filmorate.service.cache;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "filmorate.film-cache")
+public class FilmCacheProperties {
+    private DataSize maxMemory = DataSize.ofMegabytes(32); //0 - кэш выключен, одинаковые загрузки всё равно объединяются
+    private Duration loadTimeout = Duration.ofSeconds(5); //сколько ждать чужую загрузку того же ключа
+}
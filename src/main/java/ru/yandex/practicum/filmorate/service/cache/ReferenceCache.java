@@ -0,0 +1,76 @@
+package ru.yandex.practicum.filmorate.service.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.util.DigestUtils;
+
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+public class ReferenceCache<T> {
+    private final Supplier<Collection<T>> loader;
+    private final ToIntFunction<T> idGetter;
+    private final ObjectMapper objectMapper;
+    private volatile Snapshot<T> snapshot = new Snapshot<>(new Object[0], List.of(), new byte[0]);
+
+    public ReferenceCache(Supplier<Collection<T>> loader, ToIntFunction<T> idGetter, ObjectMapper objectMapper) {
+        this.loader = loader;
+        this.idGetter = idGetter;
+        this.objectMapper = objectMapper;
+    }
+
+    public void refresh() {
+        List<T> items = List.copyOf(loader.get());
+        int maxId = items.stream().mapToInt(idGetter).max().orElse(0);
+        Object[] itemsById = new Object[maxId + 1]; //id справочников небольшие и идут подряд
+
+        for (T item : items) {
+            itemsById[idGetter.applyAsInt(item)] = item;
+        }
+
+        try {
+            snapshot = new Snapshot<>(itemsById, items, objectMapper.writeValueAsBytes(items));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public T get(int id) {
+        Object[] itemsById = snapshot.itemsById;
+        return id > 0 && id < itemsById.length ? (T) itemsById[id] : null;
+    }
+
+    public boolean isExists(int id) {
+        return get(id) != null;
+    }
+
+    public List<T> getAll() {
+        return snapshot.items;
+    }
+
+    public byte[] getAllJson() {
+        return snapshot.allJson;
+    }
+
+    public String getETag() {
+        return snapshot.eTag;
+    }
+
+    private static class Snapshot<T> {
+        private final Object[] itemsById;
+        private final List<T> items;
+        private final byte[] allJson;
+        private final String eTag; //один на весь справочник - он меняется только целиком
+
+        private Snapshot(Object[] itemsById, List<T> items, byte[] allJson) {
+            this.itemsById = itemsById;
+            this.items = items;
+            this.allJson = allJson;
+            this.eTag = "\"" + DigestUtils.md5DigestAsHex(allJson) + "\"";
+        }
+    }
+}
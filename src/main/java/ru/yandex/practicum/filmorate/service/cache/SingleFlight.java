@@ -0,0 +1,88 @@
+package ru.yandex.practicum.filmorate.service.cache;
+
+import ru.yandex.practicum.filmorate.service.exception.LoadTimeoutException;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+public class SingleFlight<K, V> {
+    private final long timeoutMs;
+    private final Map<K, CompletableFuture<V>> flights = new ConcurrentHashMap<>();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder collapsed = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+
+    public SingleFlight(long timeoutMs) {
+        this.timeoutMs = timeoutMs;
+    }
+
+    public V load(K key, Supplier<V> loader) {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> currentFlight = flights.putIfAbsent(key, flight);
+
+        if (currentFlight != null) {
+            collapsed.increment();
+            return await(key, currentFlight);
+        }
+
+        loads.increment();
+
+        try {
+            V value = loader.get(); //загружает первый из одновременных запросов, в своём потоке
+            flight.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e); //ожидающие получат ту же ошибку
+            throw e;
+        } finally {
+            flights.remove(key, flight);
+        }
+    }
+
+    private V await(K key, CompletableFuture<V> flight) {
+        try {
+            return flight.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            timeouts.increment();
+            throw new LoadTimeoutException(key, timeoutMs); //загрузка продолжается и достанется следующим запросам
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LoadTimeoutException(key, timeoutMs);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+
+            throw (Error) cause;
+        }
+    }
+
+    public void forget(K key) {
+        flights.remove(key); //следующие запросы не присоединятся к загрузке, начатой до изменения данных
+    }
+
+    public void forgetIf(Predicate<K> condition) {
+        flights.keySet().removeIf(condition);
+    }
+
+    public long getLoads() {
+        return loads.sum();
+    }
+
+    public long getCollapsed() {
+        return collapsed.sum();
+    }
+
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+}
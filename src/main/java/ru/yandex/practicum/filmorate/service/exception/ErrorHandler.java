@@ -1,6 +1,8 @@
 package ru.yandex.practicum.filmorate.service.exception;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.TransientDataAccessException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -22,6 +24,11 @@ public class ErrorHandler {
         return sendError(e, HttpStatus.NOT_FOUND);
     }
 
+    @ExceptionHandler
+    public ResponseEntity<String> handleInvalidCursorException(InvalidCursorException e) {
+        return sendError(e, HttpStatus.BAD_REQUEST);
+    }
+
     @ExceptionHandler
     public ResponseEntity<String> handleMethodArgumentNotValidException(MethodArgumentNotValidException e) {
         return sendError(e, HttpStatus.BAD_REQUEST);
@@ -32,6 +39,21 @@ public class ErrorHandler {
         return sendError(e, HttpStatus.BAD_REQUEST);
     }
 
+    @ExceptionHandler
+    public ResponseEntity<String> handleJsonProcessingException(JsonProcessingException e) {
+        return sendError(e, HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler
+    public ResponseEntity<String> handleTransientDataAccessException(TransientDataAccessException e) {
+        return sendError(e, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    @ExceptionHandler
+    public ResponseEntity<String> handleLoadTimeoutException(LoadTimeoutException e) {
+        return sendError(e, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
     @ExceptionHandler
     public ResponseEntity<String> handleThrowable(Throwable e) {
         return sendError(e, HttpStatus.INTERNAL_SERVER_ERROR);
@@ -0,0 +1,7 @@
+package ru.yandex.practicum.filmorate.service.exception;
+
+public class InvalidCursorException extends RuntimeException {
+    public InvalidCursorException(String cursor) {
+        super(String.format("курсор %s некорректен", cursor));
+    }
+}
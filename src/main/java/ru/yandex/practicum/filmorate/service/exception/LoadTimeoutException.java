@@ -0,0 +1,7 @@
+package ru.yandex.practicum.filmorate.service.exception;
+
+public class LoadTimeoutException extends RuntimeException {
+    public LoadTimeoutException(Object key, long timeoutMs) {
+        super(String.format("загрузка %s не завершилась за %d мс", key, timeoutMs));
+    }
+}
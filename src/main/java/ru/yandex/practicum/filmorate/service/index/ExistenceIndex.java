@@ -0,0 +1,192 @@
+package ru.yandex.practicum.filmorate.service.index;
+
+import ru.yandex.practicum.filmorate.model.ExistenceIndexStats;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongPredicate;
+
+public class ExistenceIndex {
+    private static final int PAGE_BITS = 16; //страница битовой карты покрывает 65536 id
+    private static final int PAGE_MASK = (1 << PAGE_BITS) - 1;
+    private static final int BITMAP_WORDS = 1 << (PAGE_BITS - 6);
+    static final int BITMAP_BYTES = BITMAP_WORDS * Long.BYTES;
+    //как в roaring bitmap: до 4096 id страница - отсортированный char[] (до 8 КБ), дальше битовая карта на 8 КБ;
+    //id выбирает клиент, и разреженные id не должны стоить по 8 КБ каждый
+    static final int SPARSE_LIMIT = BITMAP_BYTES / Character.BYTES;
+    private final Map<Long, Object> pages = new ConcurrentHashMap<>(); //char[] или AtomicLongArray
+    private final AtomicLong generation = new AtomicLong();
+    private final LongPredicate fallback;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+    private final LongAdder fallbackMatches = new LongAdder();
+
+    public ExistenceIndex(LongPredicate fallback) {
+        this.fallback = fallback;
+    }
+
+    public boolean isExists(long id) {
+        if (contains(id)) {
+            hits.increment();
+            return true;
+        }
+
+        fallbacks.increment(); //id может быть добавлен другим экземпляром приложения - спрашиваем БД
+        long fallbackGeneration = generation.get();
+        boolean exists = fallback.test(id);
+
+        if (exists) {
+            fallbackMatches.increment();
+            add(id, fallbackGeneration);
+        }
+
+        return exists;
+    }
+
+    public void add(long id) {
+        add(id, generation.get());
+    }
+
+    private void add(long id, long expectedGeneration) {
+        if (id <= 0) {
+            return; //отрицательные и нулевые id всегда проверяются по БД
+        }
+
+        if (generation.get() != expectedGeneration) {
+            return; //пока читали БД, все элементы были удалены - ответ устарел
+        }
+
+        long pageKey = id >>> PAGE_BITS;
+        char low = (char) (id & PAGE_MASK);
+        Object page = pages.get(pageKey);
+
+        if (page instanceof AtomicLongArray) {
+            setBit((AtomicLongArray) page, low); //плотная страница - без блокировки
+        } else {
+            pages.compute(pageKey, (key, oldPage) -> insert(oldPage, low));
+        }
+
+        if (generation.get() != expectedGeneration) {
+            remove(pageKey, low); //clear прошёл между проверкой и записью - убираем только свой id
+        }
+    }
+
+    private static void setBit(AtomicLongArray bitmap, char low) {
+        bitmap.accumulateAndGet(low >>> 6, 1L << low, (word, mask) -> word | mask);
+    }
+
+    private static Object insert(Object page, char low) {
+        if (page instanceof AtomicLongArray) {
+            setBit((AtomicLongArray) page, low);
+            return page;
+        }
+
+        char[] lows = page == null ? new char[0] : (char[]) page;
+        int position = Arrays.binarySearch(lows, low);
+
+        if (position >= 0) {
+            return lows;
+        }
+
+        if (lows.length == SPARSE_LIMIT) { //дальше битовая карта не больше массива
+            AtomicLongArray bitmap = new AtomicLongArray(BITMAP_WORDS);
+
+            for (char existing : lows) {
+                setBit(bitmap, existing);
+            }
+
+            setBit(bitmap, low);
+            return bitmap;
+        }
+
+        int insertAt = -position - 1;
+        char[] newLows = new char[lows.length + 1]; //массив не меняется на месте - читатели видят целую копию
+        System.arraycopy(lows, 0, newLows, 0, insertAt);
+        newLows[insertAt] = low;
+        System.arraycopy(lows, insertAt, newLows, insertAt + 1, lows.length - insertAt);
+        return newLows;
+    }
+
+    //может стереть и тот же id, добавленный параллельно уже после clear, - тогда он просто проверится по БД
+    private void remove(long pageKey, char low) {
+        pages.computeIfPresent(pageKey, (key, page) -> {
+            if (page instanceof AtomicLongArray) {
+                ((AtomicLongArray) page).accumulateAndGet(low >>> 6, 1L << low, (word, mask) -> word & ~mask);
+                return page;
+            }
+
+            char[] lows = (char[]) page;
+            int position = Arrays.binarySearch(lows, low);
+
+            if (position < 0) {
+                return lows;
+            }
+
+            if (lows.length == 1) {
+                return null;
+            }
+
+            char[] newLows = new char[lows.length - 1];
+            System.arraycopy(lows, 0, newLows, 0, position);
+            System.arraycopy(lows, position + 1, newLows, position, lows.length - position - 1);
+            return newLows;
+        });
+    }
+
+    public void clear() {
+        generation.incrementAndGet();
+        pages.clear();
+    }
+
+    private boolean contains(long id) {
+        if (id <= 0) {
+            return false;
+        }
+
+        Object page = pages.get(id >>> PAGE_BITS);
+        char low = (char) (id & PAGE_MASK);
+
+        if (page instanceof AtomicLongArray) {
+            return (((AtomicLongArray) page).get(low >>> 6) & (1L << low)) != 0;
+        }
+
+        return page != null && Arrays.binarySearch((char[]) page, low) >= 0;
+    }
+
+    //оценка памяти под данные страниц, без заголовков объектов и узлов карты
+    long getPageBytes() {
+        long bytes = 0;
+
+        for (Object page : pages.values()) {
+            bytes += page instanceof AtomicLongArray ? BITMAP_BYTES : ((char[]) page).length * Character.BYTES;
+        }
+
+        return bytes;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getFallbacks() {
+        return fallbacks.sum();
+    }
+
+    public long getFallbackMatches() {
+        return fallbackMatches.sum();
+    }
+
+    public double getHitRate() {
+        long hitCount = getHits();
+        long total = hitCount + getFallbacks();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    public ExistenceIndexStats getStats() {
+        return new ExistenceIndexStats(getHits(), getFallbacks(), getFallbackMatches(), getHitRate());
+    }
+}
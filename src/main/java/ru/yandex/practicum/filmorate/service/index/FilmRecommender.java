@@ -0,0 +1,268 @@
+package ru.yandex.practicum.filmorate.service.index;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Component
+public class FilmRecommender {
+    public static final int MAX_RESULTS = 100;
+    static final int SIMILAR_FILMS_KEPT = 50; //сколько похожих фильмов храним для каждого фильма
+    static final int MAX_LIKERS_VISITED = 200; //сколько лайкнувших фильм пользователей обходим
+    static final int MAX_LIKED_FILMS_VISITED = 200; //сколько лайков одного пользователя просматриваем
+    private static final int BUILD_TASK_SIZE = 256;
+    private static final int LOCK_STRIPES = 64;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private final AtomicLong generation = new AtomicLong(); //меняется при перестроении и очистке
+    private final AtomicLong version = new AtomicLong(); //меняется при любом изменении лайков
+    private volatile Map<Long, long[]> userFilmIds = new ConcurrentHashMap<>(); //отсортированные id лайкнутых фильмов
+    private volatile Map<Long, long[]> filmUserIds = new ConcurrentHashMap<>(); //отсортированные id лайкнувших
+    private volatile Map<Long, SimilarFilms> similarFilms = new ConcurrentHashMap<>();
+
+    private static class SimilarFilms {
+        private final long[] filmIds;
+        private final float[] scores;
+
+        private SimilarFilms(long[] filmIds, float[] scores) {
+            this.filmIds = filmIds;
+            this.scores = scores;
+        }
+    }
+
+    private interface ScoreConsumer {
+        void accept(long filmId, float score);
+    }
+
+    private interface ScoreSource {
+        void forEach(ScoreConsumer consumer);
+    }
+
+    private class BuildTask extends RecursiveAction {
+        private final long[] filmIds;
+        private final int from;
+        private final int to;
+        private final long buildGeneration;
+
+        private BuildTask(long[] filmIds, int from, int to, long buildGeneration) {
+            this.filmIds = filmIds;
+            this.from = from;
+            this.to = to;
+            this.buildGeneration = buildGeneration;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > BUILD_TASK_SIZE) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new BuildTask(filmIds, from, middle, buildGeneration),
+                        new BuildTask(filmIds, middle, to, buildGeneration));
+                return;
+            }
+
+            for (int i = from; i < to && generation.get() == buildGeneration; i++) {
+                getSimilarFilms(filmIds[i]); //посчитанное сразу попадает в общий кэш
+            }
+        }
+    }
+
+    public FilmRecommender() {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    public void update(long userId, Runnable change) {
+        synchronized (locks[(int) (userId & (LOCK_STRIPES - 1))]) {
+            change.run(); //лайки одного пользователя попадают в модель в том же порядке, что и в БД
+        }
+    }
+
+    public ForkJoinTask<Void> rebuild(Map<Long, long[]> likedFilmIds) {
+        Map<Long, long[]> newUserFilmIds = new ConcurrentHashMap<>(likedFilmIds.size());
+        LongIntCounter likeCounts = new LongIntCounter(likedFilmIds.size());
+
+        likedFilmIds.forEach((userId, filmIds) -> {
+            long[] sortedFilmIds = filmIds.clone();
+            Arrays.sort(sortedFilmIds);
+            newUserFilmIds.put(userId, sortedFilmIds);
+
+            for (long filmId : sortedFilmIds) {
+                likeCounts.increment(filmId, 1);
+            }
+        });
+
+        Map<Long, long[]> newFilmUserIds = new ConcurrentHashMap<>(likeCounts.size());
+        LongIntCounter filled = new LongIntCounter(likeCounts.size());
+        likeCounts.forEach((filmId, count) -> newFilmUserIds.put(filmId, new long[count]));
+
+        newUserFilmIds.keySet().stream().sorted().forEach(userId -> { //пользователи по возрастанию - массивы сразу отсортированы
+            for (long filmId : newUserFilmIds.get(userId)) {
+                newFilmUserIds.get(filmId)[filled.increment(filmId, 1) - 1] = userId;
+            }
+        });
+
+        long buildGeneration = generation.incrementAndGet();
+        version.incrementAndGet();
+        userFilmIds = newUserFilmIds;
+        filmUserIds = newFilmUserIds;
+        similarFilms = new ConcurrentHashMap<>();
+        long[] filmIds = newFilmUserIds.keySet().stream().mapToLong(Long::longValue).toArray();
+        return ForkJoinPool.commonPool().submit(new BuildTask(filmIds, 0, filmIds.length, buildGeneration)); //в фоне
+    }
+
+    public void clear() {
+        generation.incrementAndGet();
+        version.incrementAndGet();
+        userFilmIds = new ConcurrentHashMap<>();
+        filmUserIds = new ConcurrentHashMap<>();
+        similarFilms = new ConcurrentHashMap<>();
+    }
+
+    public void addLike(long filmId, long userId) {
+        userFilmIds.compute(userId, (id, filmIds) -> SortedLongArrays.insert(filmIds, filmId));
+        filmUserIds.compute(filmId, (id, userIds) -> SortedLongArrays.insert(userIds, userId));
+        invalidate(filmId, userId);
+    }
+
+    public void deleteLike(long filmId, long userId) {
+        userFilmIds.computeIfPresent(userId, (id, filmIds) -> SortedLongArrays.remove(filmIds, filmId));
+        filmUserIds.computeIfPresent(filmId, (id, userIds) -> SortedLongArrays.remove(userIds, userId));
+        invalidate(filmId, userId);
+    }
+
+    public boolean isLiked(long filmId, long userId) {
+        return SortedLongArrays.contains(userFilmIds.getOrDefault(userId, SortedLongArrays.EMPTY), filmId);
+    }
+
+    private void invalidate(long filmId, long userId) {
+        version.incrementAndGet();
+        //общие лайки изменились только у этого фильма и у фильмов, которые лайкнул пользователь
+        SimilarFilms neighbours = similarFilms.remove(filmId);
+
+        if (neighbours != null) { //у соседей в списках прежнее число лайков фильма, а значит, и прежний косинус
+            for (long neighbourFilmId : neighbours.filmIds) {
+                similarFilms.remove(neighbourFilmId);
+            }
+        }
+
+        for (long likedFilmId : userFilmIds.getOrDefault(userId, SortedLongArrays.EMPTY)) {
+            similarFilms.remove(likedFilmId);
+        }
+    }
+
+    public long[] getSimilarFilmIds(long filmId, int limit) {
+        long[] filmIds = getSimilarFilms(filmId).filmIds;
+        return filmIds.length <= limit ? filmIds : Arrays.copyOf(filmIds, limit);
+    }
+
+    public long[] getRecommendedFilmIds(long userId, int limit) {
+        long[] likedFilmIds = userFilmIds.getOrDefault(userId, SortedLongArrays.EMPTY);
+        int step = Math.max(1, (likedFilmIds.length + MAX_LIKED_FILMS_VISITED - 1) / MAX_LIKED_FILMS_VISITED);
+        LongFloatSums scores = new LongFloatSums(Math.min(likedFilmIds.length, MAX_LIKED_FILMS_VISITED) * 8);
+
+        for (int i = 0; i < likedFilmIds.length; i += step) {
+            SimilarFilms similar = getSimilarFilms(likedFilmIds[i]);
+
+            for (int j = 0; j < similar.filmIds.length; j++) {
+                if (!SortedLongArrays.contains(likedFilmIds, similar.filmIds[j])) { //уже лайкнутые не советуем
+                    scores.add(similar.filmIds[j], similar.scores[j]);
+                }
+            }
+        }
+
+        return getTop(scores.size(), limit, consumer -> scores.forEach(consumer::accept)).filmIds;
+    }
+
+    private SimilarFilms getSimilarFilms(long filmId) {
+        Map<Long, SimilarFilms> currentSimilarFilms = similarFilms;
+        SimilarFilms similar = currentSimilarFilms.get(filmId);
+
+        if (similar == null) {
+            long computedVersion = version.get();
+            similar = computeSimilarFilms(filmId);
+
+            if (computedVersion == version.get() //лайки не менялись, пока считали
+                    && currentSimilarFilms.putIfAbsent(filmId, similar) == null
+                    && computedVersion != version.get()) { //invalidate мог пройти между проверкой и вставкой
+                currentSimilarFilms.remove(filmId, similar);
+            }
+        }
+
+        return similar;
+    }
+
+    private SimilarFilms computeSimilarFilms(long filmId) {
+        long[] userIds = filmUserIds.getOrDefault(filmId, SortedLongArrays.EMPTY);
+        LongIntCounter coLikes = new LongIntCounter(Math.min(userIds.length, MAX_LIKERS_VISITED) * 8);
+        int step = Math.max(1, (userIds.length + MAX_LIKERS_VISITED - 1) / MAX_LIKERS_VISITED);
+        int sampledLikers = (userIds.length + step - 1) / step;
+
+        for (int i = 0; i < userIds.length; i += step) { //равномерная выборка лайкнувших
+            long[] likedFilmIds = userFilmIds.getOrDefault(userIds[i], SortedLongArrays.EMPTY);
+            int likedStep = Math.max(1, (likedFilmIds.length + MAX_LIKED_FILMS_VISITED - 1) / MAX_LIKED_FILMS_VISITED);
+
+            for (int j = 0; j < likedFilmIds.length; j += likedStep) {
+                if (likedFilmIds[j] != filmId) {
+                    coLikes.increment(likedFilmIds[j], likedStep); //каждый просмотренный лайк - за likedStep лайков
+                }
+            }
+        }
+
+        double filmLikes = userIds.length;
+        double likersScale = filmLikes / Math.max(1, sampledLikers); //от выборки лайкнувших - ко всем
+
+        return getTop(coLikes.size(), SIMILAR_FILMS_KEPT, consumer -> coLikes.forEach((otherFilmId, count) -> {
+            int otherFilmLikes = filmUserIds.getOrDefault(otherFilmId, SortedLongArrays.EMPTY).length;
+            //оценка по выборке может превысить число лайков одного из фильмов - тогда косинус был бы больше 1
+            double commonLikes = Math.min(count * likersScale, Math.min(filmLikes, Math.max(1, otherFilmLikes)));
+            //косинус между векторами лайков: общие лайки / sqrt(лайки фильма * лайки другого фильма)
+            consumer.accept(otherFilmId, (float) (commonLikes / Math.sqrt(filmLikes * Math.max(1, otherFilmLikes))));
+        }));
+    }
+
+    private static SimilarFilms getTop(int candidatesCount, int limit, ScoreSource source) {
+        int size = Math.min(candidatesCount, limit);
+        long[] heapFilmIds = new long[size];
+        float[] heapScores = new float[size];
+        PriorityQueue<Integer> heap = new PriorityQueue<>(Math.max(1, size), (a, b) -> heapScores[a] != heapScores[b]
+                ? Float.compare(heapScores[a], heapScores[b])
+                : Long.compare(heapFilmIds[b], heapFilmIds[a])); //сверху худший из отобранных
+        int[] filled = new int[1];
+
+        source.forEach((filmId, score) -> {
+            if (filled[0] < size) {
+                heapFilmIds[filled[0]] = filmId;
+                heapScores[filled[0]] = score;
+                heap.add(filled[0]++);
+                return;
+            }
+
+            int worst = heap.peek();
+
+            if (score > heapScores[worst] || (score == heapScores[worst] && filmId < heapFilmIds[worst])) {
+                heap.poll();
+                heapFilmIds[worst] = filmId;
+                heapScores[worst] = score;
+                heap.add(worst);
+            }
+        });
+
+        long[] filmIds = new long[size];
+        float[] scores = new float[size];
+
+        for (int i = size - 1; i >= 0; i--) {
+            int slot = heap.poll();
+            filmIds[i] = heapFilmIds[slot];
+            scores[i] = heapScores[slot];
+        }
+
+        return new SimilarFilms(filmIds, scores);
+    }
+}
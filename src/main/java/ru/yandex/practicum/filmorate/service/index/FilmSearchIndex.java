@@ -0,0 +1,312 @@
+package ru.yandex.practicum.filmorate.service.index;
+
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+@Component
+public class FilmSearchIndex {
+    public static final int MAX_RESULTS = 100;
+    private static final byte NAME_WEIGHT = 2; //совпадение в названии важнее совпадения в описании
+    private static final byte DESCRIPTION_WEIGHT = 1;
+    private static final Comparator<Match> MATCH_ORDER = Comparator
+            .comparingDouble((Match match) -> match.score)
+            .thenComparingInt(match -> match.likeCount) //при равной релевантности выше популярный
+            .thenComparing(match -> match.filmId, Comparator.reverseOrder());
+    private final PopularityIndex popularityIndex;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Index index = new Index();
+    private List<Consumer<Index>> pendingChanges; //изменения, пришедшие во время перестроения
+
+    private static class Postings {
+        private final String term;
+        private long[] filmIds = new long[4];
+        private byte[] weights = new byte[4];
+        private int size;
+
+        private Postings(String term) {
+            this.term = term;
+        }
+
+        private int indexOf(long filmId) {
+            return Arrays.binarySearch(filmIds, 0, size, filmId);
+        }
+
+        private void put(long filmId, byte weight) {
+            int i = indexOf(filmId);
+
+            if (i >= 0) {
+                weights[i] = weight;
+                return;
+            }
+
+            i = -i - 1; //id выдаются по возрастанию, поэтому почти всегда это добавление в конец
+
+            if (size == filmIds.length) {
+                filmIds = Arrays.copyOf(filmIds, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+            }
+
+            System.arraycopy(filmIds, i, filmIds, i + 1, size - i);
+            System.arraycopy(weights, i, weights, i + 1, size - i);
+            filmIds[i] = filmId;
+            weights[i] = weight;
+            size++;
+        }
+
+        private void remove(long filmId) {
+            int i = indexOf(filmId);
+
+            if (i >= 0) {
+                System.arraycopy(filmIds, i + 1, filmIds, i, size - i - 1);
+                System.arraycopy(weights, i + 1, weights, i, size - i - 1);
+                size--;
+            }
+        }
+    }
+
+    private static class Index {
+        private final Map<String, Postings> postings = new HashMap<>();
+        private final Map<Long, String[]> filmTerms = new HashMap<>(); //для обновления фильма без чтения из БД
+
+        private void put(Film film) {
+            long filmId = film.getId();
+            remove(filmId);
+            Map<String, Byte> termWeights = new HashMap<>();
+            tokenize(film.getName()).forEach(term -> termWeights.put(term, NAME_WEIGHT));
+            tokenize(film.getDescription()).forEach(term -> termWeights.merge(term, DESCRIPTION_WEIGHT,
+                    (nameWeight, descriptionWeight) -> (byte) (nameWeight | descriptionWeight)));
+            String[] terms = new String[termWeights.size()];
+            int i = 0;
+
+            for (Map.Entry<String, Byte> termWeight : termWeights.entrySet()) {
+                Postings termPostings = postings.computeIfAbsent(termWeight.getKey(), Postings::new);
+                termPostings.put(filmId, termWeight.getValue());
+                terms[i++] = termPostings.term; //один экземпляр строки на всё слово
+            }
+
+            filmTerms.put(filmId, terms);
+        }
+
+        private void remove(long filmId) {
+            String[] terms = filmTerms.remove(filmId);
+
+            if (terms == null) {
+                return;
+            }
+
+            for (String term : terms) {
+                Postings termPostings = postings.get(term);
+                termPostings.remove(filmId);
+
+                if (termPostings.size == 0) {
+                    postings.remove(term);
+                }
+            }
+        }
+
+        private void clear() {
+            postings.clear();
+            filmTerms.clear();
+        }
+    }
+
+    private static class Match {
+        private final float score;
+        private final int likeCount;
+        private final long filmId;
+
+        private Match(float score, int likeCount, long filmId) {
+            this.score = score;
+            this.likeCount = likeCount;
+            this.filmId = filmId;
+        }
+    }
+
+    public FilmSearchIndex(PopularityIndex popularityIndex) {
+        this.popularityIndex = popularityIndex;
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+
+        if (text == null) {
+            return tokens;
+        }
+
+        StringBuilder token = new StringBuilder();
+
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+
+            if (Character.isLetterOrDigit(c)) {
+                c = Character.toLowerCase(c);
+                token.append(c == 'ё' ? 'е' : c); //«Ёлки» находятся и по запросу «елки»
+            } else if (token.length() > 0) {
+                tokens.add(token.toString());
+                token.setLength(0);
+            }
+        }
+
+        if (token.length() > 0) {
+            tokens.add(token.toString());
+        }
+
+        return tokens;
+    }
+
+    private void change(Consumer<Index> change) {
+        lock.writeLock().lock();
+
+        try {
+            change.accept(index);
+
+            if (pendingChanges != null) {
+                pendingChanges.add(change); //повторим на новом индексе после перестроения
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void put(Film film) {
+        change(index -> index.put(film));
+    }
+
+    public void clear() {
+        change(Index::clear);
+    }
+
+    public void rebuild(Consumer<Consumer<Film>> filmsScan) {
+        Index newIndex = new Index();
+        boolean isBuilt = false;
+        lock.writeLock().lock();
+
+        try {
+            pendingChanges = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        try {
+            filmsScan.accept(newIndex::put); //поиск всё это время работает по прежнему индексу
+            isBuilt = true;
+        } finally {
+            lock.writeLock().lock();
+
+            try {
+                if (isBuilt) {
+                    pendingChanges.forEach(change -> change.accept(newIndex));
+                    index = newIndex;
+                }
+
+                pendingChanges = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    public int getTermsCount() {
+        lock.readLock().lock();
+
+        try {
+            return index.postings.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long[] search(String query, int limit) {
+        List<String> terms = tokenize(query).stream().distinct().collect(Collectors.toList());
+
+        if (terms.isEmpty()) {
+            return new long[0];
+        }
+
+        lock.readLock().lock();
+
+        try {
+            return search(terms, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private long[] search(List<String> terms, int limit) {
+        List<Postings> termPostings = new ArrayList<>(terms.size());
+
+        for (String term : terms) {
+            Postings postings = index.postings.get(term);
+
+            if (postings == null) {
+                return new long[0]; //в результат попадают только фильмы со всеми словами запроса
+            }
+
+            termPostings.add(postings);
+        }
+
+        termPostings.sort(Comparator.comparingInt(postings -> postings.size)); //перебираем самый короткий список
+        float[] idf = new float[termPostings.size()];
+
+        for (int i = 0; i < idf.length; i++) {
+            idf[i] = (float) Math.log(1 + (double) index.filmTerms.size() / termPostings.get(i).size); //редкие слова весомее
+        }
+
+        Postings shortest = termPostings.get(0);
+        PriorityQueue<Match> top = new PriorityQueue<>(limit, MATCH_ORDER); //в голове худшее из отобранного
+
+        candidates:
+        for (int i = 0; i < shortest.size; i++) {
+            long filmId = shortest.filmIds[i];
+            float score = shortest.weights[i] * idf[0];
+
+            for (int j = 1; j < termPostings.size(); j++) {
+                Postings postings = termPostings.get(j);
+                int k = postings.indexOf(filmId);
+
+                if (k < 0) {
+                    continue candidates;
+                }
+
+                score += postings.weights[k] * idf[j];
+            }
+
+            offer(top, limit, score, filmId);
+        }
+
+        long[] filmIds = new long[top.size()];
+
+        for (int i = filmIds.length - 1; i >= 0; i--) {
+            filmIds[i] = top.poll().filmId;
+        }
+
+        return filmIds;
+    }
+
+    private void offer(PriorityQueue<Match> top, int limit, float score, long filmId) {
+        if (top.size() == limit && score < top.peek().score) {
+            return; //популярность нужна только кандидатам, не уступающим худшему из отобранных
+        }
+
+        Match match = new Match(score, popularityIndex.getLikeCount(filmId), filmId);
+
+        if (top.size() < limit) {
+            top.add(match);
+        } else if (MATCH_ORDER.compare(match, top.peek()) > 0) {
+            top.poll();
+            top.add(match);
+        }
+    }
+}
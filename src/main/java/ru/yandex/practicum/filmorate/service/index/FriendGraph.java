@@ -0,0 +1,62 @@
+package ru.yandex.practicum.filmorate.service.index;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Component
+public class FriendGraph {
+    private static final int LOCK_STRIPES = 64;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private volatile Map<Long, long[]> friendIds = new ConcurrentHashMap<>(); //отсортированные массивы id друзей
+
+    public FriendGraph() {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    public void update(long userId, Runnable change) {
+        synchronized (locks[(int) (userId & (LOCK_STRIPES - 1))]) {
+            change.run(); //изменения друзей одного пользователя попадают в граф в том же порядке, что и в БД
+        }
+    }
+
+    public void rebuild(Map<Long, long[]> loadedFriendIds) {
+        Map<Long, long[]> newFriendIds = new ConcurrentHashMap<>(loadedFriendIds.size());
+
+        loadedFriendIds.forEach((userId, ids) -> {
+            long[] sortedIds = ids.clone();
+            Arrays.sort(sortedIds);
+            newFriendIds.put(userId, sortedIds);
+        });
+
+        friendIds = newFriendIds;
+    }
+
+    public void clear() {
+        friendIds = new ConcurrentHashMap<>();
+    }
+
+    public void addFriend(long userId, long friendId) {
+        friendIds.compute(userId, (id, ids) -> SortedLongArrays.insert(ids, friendId));
+    }
+
+    public void deleteFriend(long userId, long friendId) {
+        friendIds.computeIfPresent(userId, (id, ids) -> SortedLongArrays.remove(ids, friendId));
+    }
+
+    public long[] getFriendIds(long userId) {
+        return friendIds.getOrDefault(userId, SortedLongArrays.EMPTY);
+    }
+
+    public boolean isFriend(long userId, long friendId) {
+        return SortedLongArrays.contains(getFriendIds(userId), friendId);
+    }
+
+    public long[] getCommonFriendIds(long userId, long otherUserId) {
+        return SortedLongArrays.intersect(getFriendIds(userId), getFriendIds(otherUserId));
+    }
+}
@@ -0,0 +1,100 @@
+package ru.yandex.practicum.filmorate.service.index;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Component
+public class FriendSuggester {
+    public static final int MAX_SUGGESTIONS = 100;
+    static final int MAX_FRIENDS_VISITED = 1000; //сколько друзей обходим на первом шаге
+    static final int MAX_EDGES_VISITED = 100_000; //сколько связей друзей просматриваем на втором шаге
+    static final int HEAVY_USER_FRIENDS = 200; //для пользователей с таким числом друзей результат кэшируется
+    private final FriendGraph friendGraph;
+    private final Map<Long, long[]> heavyUserSuggestions = new ConcurrentHashMap<>();
+    private final AtomicLong version = new AtomicLong(); //меняется при каждой инвалидации
+
+    public FriendSuggester(FriendGraph friendGraph) {
+        this.friendGraph = friendGraph;
+    }
+
+    public long[] suggest(long userId, int limit) {
+        long[] friendIds = friendGraph.getFriendIds(userId);
+        boolean isHeavyUser = friendIds.length >= HEAVY_USER_FRIENDS;
+        long[] suggestions = isHeavyUser ? heavyUserSuggestions.get(userId) : null;
+
+        if (suggestions == null) {
+            long computedVersion = version.get();
+            suggestions = findSuggestions(userId, friendIds, isHeavyUser ? MAX_SUGGESTIONS : limit);
+
+            if (isHeavyUser && computedVersion == version.get()) { //граф не менялся, пока считали
+                heavyUserSuggestions.put(userId, suggestions); //кэшируем полный список, limit применяем при выдаче
+
+                if (computedVersion != version.get()) { //инвалидация прошла между проверкой и вставкой
+                    heavyUserSuggestions.remove(userId, suggestions);
+                }
+            }
+        }
+
+        return suggestions.length <= limit ? suggestions : Arrays.copyOf(suggestions, limit);
+    }
+
+    public void onFriendsChanged(long userId) {
+        version.incrementAndGet();
+        heavyUserSuggestions.remove(userId);
+        //у пользователей, в друзьях которых есть userId, поменялся второй шаг обхода
+        heavyUserSuggestions.keySet().removeIf(cachedUserId -> friendGraph.isFriend(cachedUserId, userId));
+    }
+
+    public void clear() {
+        version.incrementAndGet();
+        heavyUserSuggestions.clear();
+    }
+
+    private long[] findSuggestions(long userId, long[] friendIds, int limit) {
+        LongIntCounter mutualFriends = new LongIntCounter(Math.min(friendIds.length * 16, MAX_EDGES_VISITED));
+        int step = Math.max(1, (friendIds.length + MAX_FRIENDS_VISITED - 1) / MAX_FRIENDS_VISITED);
+        int edgesVisited = 0;
+
+        for (int i = 0; i < friendIds.length && edgesVisited < MAX_EDGES_VISITED; i += step) { //равномерная выборка друзей
+            for (long candidateId : friendGraph.getFriendIds(friendIds[i])) {
+                if (++edgesVisited > MAX_EDGES_VISITED) {
+                    break;
+                }
+
+                if (candidateId != userId && !SortedLongArrays.contains(friendIds, candidateId)) {
+                    mutualFriends.increment(candidateId, 1);
+                }
+            }
+        }
+
+        return getTop(mutualFriends, limit);
+    }
+
+    private static long[] getTop(LongIntCounter mutualFriends, int limit) {
+        //куча из limit лучших: сверху худший - больше id при равном числе общих друзей
+        PriorityQueue<long[]> top = new PriorityQueue<>(limit + 1, (a, b) -> a[1] != b[1]
+                ? Long.compare(a[1], b[1])
+                : Long.compare(b[0], a[0]));
+
+        mutualFriends.forEach((candidateId, count) -> {
+            top.add(new long[]{candidateId, count});
+
+            if (top.size() > limit) {
+                top.poll();
+            }
+        });
+
+        long[] suggestions = new long[top.size()];
+
+        for (int i = suggestions.length - 1; i >= 0; i--) {
+            suggestions[i] = top.poll()[0];
+        }
+
+        return suggestions;
+    }
+}
@@ -0,0 +1,88 @@
+package ru.yandex.practicum.filmorate.service.index;
+
+public class LongFloatSums {
+    private static final int MIN_CAPACITY = 16;
+    private long[] keys;
+    private float[] sums;
+    private boolean[] used; //сумма может быть любой, поэтому занятость ячейки храним отдельно
+    private int size;
+
+    public LongFloatSums(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+
+        keys = new long[capacity];
+        sums = new float[capacity];
+        used = new boolean[capacity];
+    }
+
+    private static int getSlot(long key, int mask) {
+        long hash = key * 0x9E3779B97F4A7C15L; //как в LongIntCounter
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    public void add(long key, float value) {
+        int mask = keys.length - 1;
+        int slot = getSlot(key, mask);
+
+        while (used[slot] && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+
+        if (!used[slot]) {
+            used[slot] = true;
+            keys[slot] = key;
+            size++;
+        }
+
+        sums[slot] += value;
+
+        if (size * 2 > keys.length) {
+            resize();
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void forEach(Consumer consumer) {
+        for (int i = 0; i < keys.length; i++) {
+            if (used[i]) {
+                consumer.accept(keys[i], sums[i]);
+            }
+        }
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        float[] oldSums = sums;
+        boolean[] oldUsed = used;
+        keys = new long[oldKeys.length * 2];
+        sums = new float[oldSums.length * 2];
+        used = new boolean[oldUsed.length * 2];
+        int mask = keys.length - 1;
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                int slot = getSlot(oldKeys[i], mask);
+
+                while (used[slot]) {
+                    slot = (slot + 1) & mask;
+                }
+
+                keys[slot] = oldKeys[i];
+                sums[slot] = oldSums[i];
+                used[slot] = true;
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface Consumer {
+        void accept(long key, float sum);
+    }
+}
@@ -0,0 +1,100 @@
+package ru.yandex.practicum.filmorate.service.index;
+
+public class LongIntCounter {
+    private static final int MIN_CAPACITY = 16;
+    private long[] keys;
+    private int[] counts; //0 - пустая ячейка, поэтому счётчик умеет только расти
+    private int size;
+
+    public LongIntCounter(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+
+        keys = new long[capacity];
+        counts = new int[capacity];
+    }
+
+    private static int getSlot(long key, int mask) {
+        long hash = key * 0x9E3779B97F4A7C15L; //перемешиваем биты, чтобы подряд идущие id не сбивались в кучу
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    public int increment(long key, int delta) {
+        int mask = keys.length - 1;
+        int slot = getSlot(key, mask);
+
+        while (counts[slot] != 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+
+        if (counts[slot] == 0) {
+            keys[slot] = key;
+            size++;
+        }
+
+        counts[slot] += delta;
+        int count = counts[slot];
+
+        if (size * 2 > keys.length) {
+            resize();
+        }
+
+        return count;
+    }
+
+    public int get(long key) {
+        int mask = keys.length - 1;
+        int slot = getSlot(key, mask);
+
+        while (counts[slot] != 0) {
+            if (keys[slot] == key) {
+                return counts[slot];
+            }
+
+            slot = (slot + 1) & mask;
+        }
+
+        return 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void forEach(Consumer consumer) {
+        for (int i = 0; i < keys.length; i++) {
+            if (counts[i] != 0) {
+                consumer.accept(keys[i], counts[i]);
+            }
+        }
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        int[] oldCounts = counts;
+        keys = new long[oldKeys.length * 2];
+        counts = new int[oldCounts.length * 2];
+        int mask = keys.length - 1;
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldCounts[i] != 0) {
+                int slot = getSlot(oldKeys[i], mask);
+
+                while (counts[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+
+                keys[slot] = oldKeys[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface Consumer {
+        void accept(long key, int count);
+    }
+}
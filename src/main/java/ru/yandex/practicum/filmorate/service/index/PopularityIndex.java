@@ -0,0 +1,155 @@
+package ru.yandex.practicum.filmorate.service.index;
+
+import lombok.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+@Component
+public class PopularityIndex {
+    private static final Comparator<Entry> ENTRY_ORDER = Comparator
+            .comparingInt(Entry::getLikeCount)
+            .reversed()
+            .thenComparingLong(Entry::getFilmId); //тот же порядок, что и ORDER BY like_count DESC, film_id
+    private final ReadWriteLock lock = new ReentrantReadWriteLock(); //перестроение и сверка с БД ждут изменений лайков
+    private volatile Ranking ranking = new Ranking();
+
+    @Value
+    private static class Entry {
+        int likeCount;
+        long filmId;
+    }
+
+    private static class Ranking {
+        private final Map<Long, Integer> likeCounts = new ConcurrentHashMap<>();
+        private final Set<Entry> entries = new ConcurrentSkipListSet<>(ENTRY_ORDER);
+
+        private Ranking() {
+        }
+
+        private Ranking(Map<Long, Integer> likeCounts) {
+            likeCounts.forEach(this::set);
+        }
+
+        private void set(long filmId, int likeCount) {
+            likeCounts.compute(filmId, (id, oldLikeCount) -> {
+                if (oldLikeCount != null) {
+                    entries.remove(new Entry(oldLikeCount, id)); //сначала удаляем, чтобы фильм не попал в выборку дважды
+                }
+
+                entries.add(new Entry(likeCount, id));
+                return likeCount;
+            });
+        }
+
+        private void change(long filmId, int delta) {
+            likeCounts.compute(filmId, (id, oldLikeCount) -> {
+                int likeCount = oldLikeCount == null ? delta : oldLikeCount + delta;
+
+                if (oldLikeCount != null) {
+                    entries.remove(new Entry(oldLikeCount, id));
+                }
+
+                entries.add(new Entry(likeCount, id));
+                return likeCount;
+            });
+        }
+    }
+
+    public <T> T update(Supplier<T> update) {
+        lock.readLock().lock(); //изменения лайков не мешают друг другу, но ждут перестроения
+
+        try {
+            return update.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void update(Runnable update) {
+        update(() -> {
+            update.run();
+            return null;
+        });
+    }
+
+    public void addFilm(long filmId) {
+        ranking.likeCounts.computeIfAbsent(filmId, id -> {
+            ranking.entries.add(new Entry(0, id));
+            return 0;
+        });
+    }
+
+    public void changeLikeCount(long filmId, int delta) {
+        ranking.change(filmId, delta);
+    }
+
+    public void resetLikeCounts() {
+        Map<Long, Integer> likeCounts = new ConcurrentHashMap<>();
+        ranking.likeCounts.keySet().forEach(filmId -> likeCounts.put(filmId, 0));
+        ranking = new Ranking(likeCounts);
+    }
+
+    public void clear() {
+        ranking = new Ranking();
+    }
+
+    public int getLikeCount(long filmId) {
+        return ranking.likeCounts.getOrDefault(filmId, 0);
+    }
+
+    public List<Long> getTopFilmIds(int count) {
+        List<Long> filmIds = new ArrayList<>(Math.min(count, ranking.likeCounts.size()));
+        Iterator<Entry> entries = ranking.entries.iterator();
+
+        while (filmIds.size() < count && entries.hasNext()) {
+            filmIds.add(entries.next().getFilmId());
+        }
+
+        return filmIds;
+    }
+
+    public void rebuild(Supplier<Map<Long, Integer>> likeCountsLoader) {
+        lock.writeLock().lock();
+
+        try {
+            ranking = new Ranking(likeCountsLoader.get()); //читатели до замены видят прежний рейтинг
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public Set<Long> findMismatches(Supplier<Map<Long, Integer>> likeCountsLoader) {
+        lock.writeLock().lock();
+
+        try {
+            Map<Long, Integer> expectedLikeCounts = likeCountsLoader.get();
+            Map<Long, Integer> actualLikeCounts = ranking.likeCounts;
+            Set<Long> mismatches = new HashSet<>();
+            Set<Long> filmIds = new HashSet<>(expectedLikeCounts.keySet());
+            filmIds.addAll(actualLikeCounts.keySet());
+
+            for (Long filmId : filmIds) {
+                if (!Objects.equals(expectedLikeCounts.get(filmId), actualLikeCounts.get(filmId))) {
+                    mismatches.add(filmId);
+                }
+            }
+
+            return mismatches;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package ru.yandex.practicum.filmorate.service.index;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongToIntFunction;
+import java.util.function.ObjLongConsumer;
+
+public class PrefixIndex {
+    public static final int MAX_RESULTS = 20;
+    static final int MAX_SCANNED = 5000; //сколько записей с префиксом просматриваем в потоке запроса
+    static final long TOP_CACHE_TTL_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final Comparator<Entry> ENTRY_ORDER = Comparator
+            .comparing((Entry entry) -> entry.key)
+            .thenComparingLong(entry -> entry.itemId);
+    private static final Comparator<Match> MATCH_ORDER = Comparator
+            .comparingInt((Match match) -> match.rank)
+            .thenComparing(match -> match.entry, ENTRY_ORDER.reversed()); //при равном рейтинге - по алфавиту
+    private final LongToIntFunction rank;
+    private final NavigableSet<Entry> entries = new ConcurrentSkipListSet<>(ENTRY_ORDER);
+    private final Map<Long, String> keys = new ConcurrentHashMap<>();
+    private final Map<String, CachedTop> topCache = new ConcurrentHashMap<>(); //только префиксы с большим числом совпадений
+    private final AtomicLong generation = new AtomicLong(); //меняется при очистке - строки прежних перестроений отбрасываются
+    private volatile Set<Long> changedIds; //изменённые во время перестроения
+
+    private static class Entry {
+        private final String key;
+        private final long itemId;
+
+        private Entry(String key, long itemId) {
+            this.key = key;
+            this.itemId = itemId;
+        }
+    }
+
+    private static class Match {
+        private final int rank;
+        private final Entry entry;
+
+        private Match(int rank, Entry entry) {
+            this.rank = rank;
+            this.entry = entry;
+        }
+    }
+
+    private static class Scan {
+        private final long[] itemIds;
+        private final boolean isComplete;
+
+        private Scan(long[] itemIds, boolean isComplete) {
+            this.itemIds = itemIds;
+            this.isComplete = isComplete;
+        }
+    }
+
+    private static class CachedTop {
+        private final long[] itemIds;
+        private final long computedNanos = System.nanoTime();
+        private final AtomicBoolean isRefreshing = new AtomicBoolean();
+
+        private CachedTop(long[] itemIds) {
+            this.itemIds = itemIds;
+        }
+    }
+
+    public PrefixIndex(LongToIntFunction rank) {
+        this.rank = rank;
+    }
+
+    static String normalize(String text) {
+        return text == null ? "" : text.trim().toLowerCase(Locale.ROOT).replace('ё', 'е');
+    }
+
+    private void put(long itemId, String text, boolean isScanned, long scanGeneration) {
+        String key = normalize(text);
+
+        keys.compute(itemId, (id, oldKey) -> { //запись одного элемента меняется атомарно
+            if (isScanned && scanGeneration != generation.get()) {
+                return oldKey; //строка прочитана до очистки - элемент уже удалён
+            }
+
+            Set<Long> currentChangedIds = changedIds;
+
+            if (currentChangedIds != null) {
+                if (isScanned && currentChangedIds.contains(id)) {
+                    return oldKey; //изменение через сервис новее прочитанной при перестроении строки
+                } else if (!isScanned) {
+                    currentChangedIds.add(id);
+                }
+            }
+
+            if (key.equals(oldKey)) {
+                return oldKey;
+            } else if (oldKey != null) {
+                entries.remove(new Entry(oldKey, id));
+            }
+
+            entries.add(new Entry(key, id));
+            return key;
+        });
+    }
+
+    public void put(long itemId, String text) {
+        put(itemId, text, false, 0);
+    }
+
+    public void rebuild(Consumer<ObjLongConsumer<String>> itemsScan) {
+        changedIds = ConcurrentHashMap.newKeySet();
+        long scanGeneration = generation.get();
+
+        try {
+            //подсказки работают всё время перестроения
+            itemsScan.accept((text, itemId) -> put(itemId, text, true, scanGeneration));
+        } finally {
+            changedIds = null;
+        }
+    }
+
+    public void clear() {
+        generation.incrementAndGet(); //сначала - иначе перестроение вернёт уже удалённые строки
+
+        for (Long itemId : keys.keySet()) { //как и put, через keys.compute - запись и ключ удаляются вместе
+            keys.computeIfPresent(itemId, (id, oldKey) -> {
+                entries.remove(new Entry(oldKey, id));
+                return null;
+            });
+        }
+
+        topCache.clear();
+    }
+
+    public int size() {
+        return keys.size();
+    }
+
+    public long[] lookup(String prefix, int limit) {
+        String from = normalize(prefix);
+
+        if (from.isEmpty()) {
+            return new long[0];
+        }
+
+        CachedTop cachedTop = topCache.get(from);
+
+        if (cachedTop == null) {
+            Scan scan = scan(from, MAX_SCANNED);
+
+            if (scan.isComplete) {
+                return limit(scan.itemIds, limit);
+            }
+
+            cachedTop = new CachedTop(scan.itemIds); //пока точный список считается в фоне, отвечаем по первым MAX_SCANNED
+            topCache.put(from, cachedTop);
+            refreshInBackground(from, cachedTop);
+        } else if (System.nanoTime() - cachedTop.computedNanos > TOP_CACHE_TTL_NANOS) {
+            refreshInBackground(from, cachedTop); //до пересчёта отдаём прежний список
+        }
+
+        return limit(cachedTop.itemIds, limit);
+    }
+
+    private static long[] limit(long[] itemIds, int limit) {
+        return itemIds.length <= limit ? itemIds : Arrays.copyOf(itemIds, limit);
+    }
+
+    private void refreshInBackground(String from, CachedTop cachedTop) {
+        if (cachedTop.isRefreshing.compareAndSet(false, true)) {
+            ForkJoinPool.commonPool().execute(() -> topCache.put(from, new CachedTop(scan(from, Integer.MAX_VALUE).itemIds)));
+        }
+    }
+
+    private Scan scan(String from, int maxScanned) {
+        NavigableSet<Entry> range = entries.subSet(new Entry(from, Long.MIN_VALUE), true,
+                new Entry(from + Character.MAX_VALUE, Long.MIN_VALUE), false);
+        PriorityQueue<Match> top = new PriorityQueue<>(MAX_RESULTS, MATCH_ORDER); //в голове худшее из отобранного
+        int scanned = 0;
+        boolean isComplete = true;
+
+        for (Entry entry : range) {
+            if (++scanned > maxScanned) {
+                isComplete = false;
+                break;
+            }
+
+            int itemRank = rank.applyAsInt(entry.itemId);
+
+            if (top.size() < MAX_RESULTS) {
+                top.add(new Match(itemRank, entry));
+            } else if (itemRank > top.peek().rank) { //записи идут по алфавиту, поэтому равный рейтинг не выигрывает
+                top.poll();
+                top.add(new Match(itemRank, entry));
+            }
+        }
+
+        long[] itemIds = new long[top.size()];
+
+        for (int i = itemIds.length - 1; i >= 0; i--) {
+            itemIds[i] = top.poll().entry.itemId;
+        }
+
+        return new Scan(itemIds, isComplete);
+    }
+}
@@ -0,0 +1,68 @@
+package ru.yandex.practicum.filmorate.service.index;
+
+import java.util.Arrays;
+
+public class SortedLongArrays {
+    public static final long[] EMPTY = new long[0];
+
+    private SortedLongArrays() {
+    }
+
+    public static boolean contains(long[] ids, long id) {
+        return Arrays.binarySearch(ids, id) >= 0;
+    }
+
+    public static long[] insert(long[] ids, long id) {
+        long[] currentIds = ids == null ? EMPTY : ids;
+        int position = Arrays.binarySearch(currentIds, id);
+
+        if (position >= 0) {
+            return currentIds;
+        }
+
+        int insertAt = -position - 1;
+        long[] newIds = new long[currentIds.length + 1]; //массив не меняется на месте - читатели видят целую копию
+        System.arraycopy(currentIds, 0, newIds, 0, insertAt);
+        newIds[insertAt] = id;
+        System.arraycopy(currentIds, insertAt, newIds, insertAt + 1, currentIds.length - insertAt);
+        return newIds;
+    }
+
+    public static long[] remove(long[] ids, long id) {
+        int position = Arrays.binarySearch(ids, id);
+
+        if (position < 0) {
+            return ids;
+        }
+
+        if (ids.length == 1) {
+            return null; //для Map.compute - пустой массив не храним
+        }
+
+        long[] newIds = new long[ids.length - 1];
+        System.arraycopy(ids, 0, newIds, 0, position);
+        System.arraycopy(ids, position + 1, newIds, position, ids.length - position - 1);
+        return newIds;
+    }
+
+    public static long[] intersect(long[] ids, long[] otherIds) {
+        long[] commonIds = new long[Math.min(ids.length, otherIds.length)];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+
+        while (i < ids.length && j < otherIds.length) { //слияние двух отсортированных массивов
+            if (ids[i] < otherIds[j]) {
+                i++;
+            } else if (ids[i] > otherIds[j]) {
+                j++;
+            } else {
+                commonIds[size++] = ids[i];
+                i++;
+                j++;
+            }
+        }
+
+        return Arrays.copyOf(commonIds, size);
+    }
+}
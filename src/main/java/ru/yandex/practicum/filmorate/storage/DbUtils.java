@@ -1,9 +1,30 @@
 package ru.yandex.practicum.filmorate.storage;
 
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
 public class DbUtils {
+    public static final int STREAMING_FETCH_SIZE = 1000;
+    public static final int IN_LIST_BATCH_SIZE = 1000; //ограничение на количество id в одном условии IN
+
     private DbUtils() {
     }
 
+    public static int getSequenceIncrement(JdbcTemplate jdbcTemplate, String sequenceName) {
+        String sql = "SELECT \"INCREMENT\" FROM INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_NAME = ?";
+        Integer increment = jdbcTemplate.queryForObject(sql, Integer.class, sequenceName);
+        return increment == null ? 1 : increment;
+    }
+
     public static String getPlaceHolders(int count) {
         StringBuilder sb = new StringBuilder();
 
@@ -19,4 +40,49 @@ public class DbUtils {
 
         return sb.toString();
     }
+
+    public static String getListPlaceHolders(int count) {
+        StringBuilder sb = new StringBuilder();
+
+        for (int i = 0; i < count; i++) {
+            sb.append("?");
+
+            if (i == count - 1) {
+                break; //не ставим запятую вконце
+            }
+
+            sb.append(", ");
+        }
+
+        return sb.toString();
+    }
+
+    public static <T> List<T> orderByIds(List<Long> ids, Collection<T> items, ToLongFunction<T> idGetter) {
+        Map<Long, T> itemsById = new HashMap<>();
+        items.forEach(item -> itemsById.put(idGetter.applyAsLong(item), item));
+        List<T> orderedItems = new ArrayList<>(ids.size());
+
+        for (Long id : ids) {
+            T item = itemsById.get(id);
+
+            if (item != null) { //элемент могли удалить между чтением id и выборкой
+                orderedItems.add(item);
+            }
+        }
+
+        return orderedItems;
+    }
+
+    public static PreparedStatementCreator getStreamingStatement(String sql) {
+        return connection -> {
+            PreparedStatement statement = connection.prepareStatement(
+                    sql,
+                    ResultSet.TYPE_FORWARD_ONLY,
+                    ResultSet.CONCUR_READ_ONLY
+            );
+
+            statement.setFetchSize(STREAMING_FETCH_SIZE); //строки читаются порциями, а не всей выборкой сразу
+            return statement;
+        };
+    }
 }
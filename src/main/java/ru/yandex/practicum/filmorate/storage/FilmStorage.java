@@ -6,4 +6,6 @@ import java.util.List;
 
 public interface FilmStorage extends ItemStorage<Film> {
     List<Film> getPopularFilms(int count);
+
+    List<Film> getPopularFilms(int count, Integer genreId, Integer year);
 }
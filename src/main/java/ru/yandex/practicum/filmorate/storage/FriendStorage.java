@@ -1,7 +1,22 @@
 package ru.yandex.practicum.filmorate.storage;
 
+import java.util.Map;
+import java.util.function.BiConsumer;
+
 public interface FriendStorage {
-    void add(long userId, long friendId);
+    boolean add(long userId, long friendId);
+
+    boolean delete(long userId, long friendId);
+
+    boolean isFriend(long userId, long friendId);
+
+    //добавление или удаление друга, о которых уже ответили клиенту, но не записали (буфер записи, ACK_ON_ENQUEUE)
+    default void setLostWriteListener(BiConsumer<Long, Long> listener) {
+    }
+
+    //дописать в БД всё, что накопилось в буфере записи: перед чтениями из БД и каскадным удалением
+    default void flush() {
+    }
 
-    void delete(long userId, long friendId);
+    Map<Long, long[]> getFriendIds();
 }
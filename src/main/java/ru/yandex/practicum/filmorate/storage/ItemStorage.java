@@ -1,19 +1,40 @@
 package ru.yandex.practicum.filmorate.storage;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
 
 public interface ItemStorage<T> {
-    long getNextId();
+    long reserveIdBlock();
+
+    int getIdBlockSize();
 
     T get(long itemId);
 
     Collection<T> getAll();
 
+    List<T> getPage(long afterId, int limit);
+
+    List<T> getByIds(List<Long> itemIds);
+
+    void streamAll(Consumer<T> consumer);
+
+    void streamIds(LongConsumer consumer);
+
     T add(T item);
 
-    T update(T item);
+    void addAll(List<T> items);
+
+    Optional<T> update(T item);
 
     void deleteAll();
 
     boolean isExists(long itemId);
+
+    Optional<Long> getVersion(long itemId);
+
+    Set<Long> getExistingIds(List<Long> itemIds);
 }
@@ -1,7 +1,26 @@
 package ru.yandex.practicum.filmorate.storage;
 
+import java.util.Map;
+import java.util.function.BiConsumer;
+
 public interface LikeStorage {
-    void add(long filmId, long userId);
+    boolean add(long filmId, long userId);
+
+    boolean delete(long filmId, long userId);
+
+    boolean isLiked(long filmId, long userId);
+
+    //лайк или его удаление, о которых уже ответили клиенту, но не записали (буфер записи, ACK_ON_ENQUEUE)
+    default void setLostWriteListener(BiConsumer<Long, Long> listener) {
+    }
+
+    //дописать в БД всё, что накопилось в буфере записи: перед чтениями из БД и каскадным удалением
+    default void flush() {
+    }
+
+    int reconcileLikeCounts();
+
+    Map<Long, Integer> getLikeCounts();
 
-    void delete(long filmId, long userId);
+    Map<Long, long[]> getLikedFilmIds();
 }
@@ -0,0 +1,51 @@
+package ru.yandex.practicum.filmorate.storage.impl;
+
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+class AdjacencyCollector implements RowCallbackHandler {
+    private final String fromColumn;
+    private final String toColumn;
+    private final Map<Long, long[]> adjacency = new HashMap<>();
+    private long fromId;
+    private long[] toIds = new long[16];
+    private int size;
+
+    AdjacencyCollector(String fromColumn, String toColumn) {
+        this.fromColumn = fromColumn;
+        this.toColumn = toColumn;
+    }
+
+    @Override
+    public void processRow(ResultSet rs) throws SQLException {
+        long rowFromId = rs.getLong(fromColumn);
+
+        if (size > 0 && rowFromId != fromId) {
+            flush(); //строки отсортированы по (fromColumn, toColumn) - связи одного id идут подряд
+        }
+
+        if (size == toIds.length) {
+            toIds = Arrays.copyOf(toIds, size * 2);
+        }
+
+        fromId = rowFromId;
+        toIds[size++] = rs.getLong(toColumn);
+    }
+
+    Map<Long, long[]> getAdjacency() {
+        flush();
+        return adjacency;
+    }
+
+    private void flush() {
+        if (size > 0) {
+            adjacency.put(fromId, Arrays.copyOf(toIds, size));
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package ru.yandex.practicum.filmorate.storage.impl;
+
+import lombok.Value;
+
+import java.util.List;
+import java.util.function.Function;
+
+@Value
+public class EdgeOperation {
+    boolean add;
+    long fromId;
+    long toId;
+
+    public static int[] writeInRuns(List<EdgeOperation> operations,
+                                    Function<List<EdgeOperation>, int[]> addWriter,
+                                    Function<List<EdgeOperation>, int[]> deleteWriter) {
+        int[] updateCounts = new int[operations.size()];
+        int from = 0;
+
+        while (from < operations.size()) {
+            boolean add = operations.get(from).isAdd();
+            int to = from;
+
+            while (to < operations.size() && operations.get(to).isAdd() == add) {
+                to++; //подряд идущие операции одного вида пишутся одним пакетом, порядок операций сохраняется
+            }
+
+            List<EdgeOperation> run = operations.subList(from, to);
+            int[] runUpdateCounts = add ? addWriter.apply(run) : deleteWriter.apply(run);
+            System.arraycopy(runUpdateCounts, 0, updateCounts, from, runUpdateCounts.length);
+            from = to;
+        }
+
+        return updateCounts;
+    }
+}
@@ -0,0 +1,130 @@
+package ru.yandex.practicum.filmorate.storage.impl;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+
+//буфер записи лайков и друзей; в режиме ACK_ON_ENQUEUE результат операции известен до записи в БД -
+//по последней ещё не записанной операции с тем же ребром, а если её нет, по самой БД
+@Slf4j
+public class EdgeWriteBehind {
+    private static final int LOCK_STRIPES = 64;
+    private final String name;
+    private final WriteBehindQueue<EdgeOperation> queue;
+    private final boolean isAckOnEnqueue;
+    private final BiPredicate<Long, Long> isStored;
+    private final Map<EdgeOperation, PendingEdge> pendingEdges = new ConcurrentHashMap<>(); //ключ - ребро как добавление
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+    private volatile BiConsumer<Long, Long> lostWriteListener = (fromId, toId) -> {
+    };
+
+    private static class PendingEdge {
+        private final boolean isStored; //каким ребро станет после записи; сравнивается по ссылке
+
+        private PendingEdge(boolean isStored) {
+            this.isStored = isStored;
+        }
+    }
+
+    public EdgeWriteBehind(String name, WriteBehindProperties properties,
+                           Function<List<EdgeOperation>, int[]> batchWriter, BiPredicate<Long, Long> isStored) {
+        this.name = name;
+        this.queue = new WriteBehindQueue<>(name, properties, batchWriter);
+        this.isAckOnEnqueue = properties.getDurability() == WriteBehindProperties.Durability.ACK_ON_ENQUEUE;
+        this.isStored = isStored;
+
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    //вызывается потоком записи - слушатель не должен ждать блокировок тех, кто ставит операции в буфер
+    public void setLostWriteListener(BiConsumer<Long, Long> lostWriteListener) {
+        this.lostWriteListener = lostWriteListener;
+    }
+
+    private ReentrantLock lock(EdgeOperation edge) {
+        ReentrantLock lock = locks[Math.floorMod(edge.hashCode(), LOCK_STRIPES)];
+        lock.lock();
+        return lock;
+    }
+
+    //состояние ребра с учётом подтверждённых, но ещё не записанных операций
+    public boolean isStored(long fromId, long toId) {
+        if (!isAckOnEnqueue) {
+            return isStored.test(fromId, toId);
+        }
+
+        ReentrantLock lock = lock(new EdgeOperation(true, fromId, toId));
+
+        try {
+            PendingEdge pending = pendingEdges.get(new EdgeOperation(true, fromId, toId));
+            return pending != null ? pending.isStored : isStored.test(fromId, toId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean write(EdgeOperation operation) {
+        if (!isAckOnEnqueue) {
+            return queue.write(operation) > 0;
+        }
+
+        EdgeOperation edge = operation.isAdd() ? operation
+                : new EdgeOperation(true, operation.getFromId(), operation.getToId());
+        ReentrantLock lock = lock(edge);
+
+        try {
+            PendingEdge pending = pendingEdges.get(edge);
+            boolean isStoredNow = pending != null ? pending.isStored : isStored.test(edge.getFromId(), edge.getToId());
+
+            if (isStoredNow == operation.isAdd()) {
+                return false; //повторное добавление или удаление отсутствующего ничего не меняет - в буфер не ставим
+            }
+
+            PendingEdge next = new PendingEdge(operation.isAdd());
+            pendingEdges.put(edge, next);
+            CompletableFuture<Integer> result;
+
+            try {
+                result = queue.submit(operation);
+            } catch (RuntimeException e) {
+                if (pending == null) {
+                    pendingEdges.remove(edge, next);
+                } else {
+                    pendingEdges.put(edge, pending);
+                }
+
+                throw e;
+            }
+
+            result.whenComplete((updateCount, e) -> {
+                pendingEdges.remove(edge, next); //записано - дальше состояние ребра берём из БД
+
+                if (e != null || updateCount == 0) { //индексы уже учли операцию - сервис сверит их с БД по этому ребру
+                    log.warn("write-behind {}: acknowledged {} was not applied", name, operation, e);
+                    lostWriteListener.accept(operation.getFromId(), operation.getToId());
+                }
+            });
+
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void flush() {
+        queue.flush();
+    }
+
+    public void close() {
+        queue.close();
+    }
+}
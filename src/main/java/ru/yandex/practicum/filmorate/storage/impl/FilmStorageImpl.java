@@ -1,8 +1,12 @@
 package ru.yandex.practicum.filmorate.storage.impl;
 
+import org.springframework.context.annotation.Profile;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.Mpa;
@@ -13,94 +17,297 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.stream.Collectors;
 
 @Component
+@Profile("!memory") //в профиле memory - InMemoryFilmStorage
 public class FilmStorageImpl implements FilmStorage, RowMapper<Film> {
+    static final String POPULAR_FILMS_SQL = "SELECT f.film_id, f.film_name, f.description, f.release_date, f.duration, " +
+            "f.mpa_id, m.mpa_name " +
+            "FROM films f " +
+            "JOIN mpa m ON m.mpa_id = f.mpa_id " +
+            "ORDER BY f.like_count DESC, f.film_id " +
+            "LIMIT ?"; //сортировка по индексу films_like_count_idx, читается только count строк
+    static final String POPULAR_FILMS_BY_YEAR_SQL = "SELECT f.film_id, f.film_name, f.description, f.release_date, " +
+            "f.duration, f.mpa_id, m.mpa_name " +
+            "FROM films f " +
+            "JOIN mpa m ON m.mpa_id = f.mpa_id " +
+            "WHERE f.release_year = ? " +
+            "ORDER BY f.release_year, f.like_count DESC, f.film_id " + //префикс индекса - иначе H2 сортирует всю выборку
+            "LIMIT ?"; //индекс films_release_year_idx
+    static final String POPULAR_FILMS_BY_GENRE_SQL = "SELECT f.film_id, f.film_name, f.description, f.release_date, " +
+            "f.duration, f.mpa_id, m.mpa_name " +
+            "FROM film_genres fg " +
+            "JOIN films f ON f.film_id = fg.film_id " +
+            "JOIN mpa m ON m.mpa_id = f.mpa_id " +
+            "WHERE fg.genre_id = ? " +
+            "ORDER BY fg.genre_id, fg.like_count DESC, fg.film_id " +
+            "LIMIT ?"; //индекс film_genres_popular_idx, счётчик лайков продублирован в film_genres
+    static final String POPULAR_FILMS_BY_GENRE_AND_YEAR_SQL = "SELECT f.film_id, f.film_name, f.description, " +
+            "f.release_date, f.duration, f.mpa_id, m.mpa_name " +
+            "FROM film_genres fg " +
+            "JOIN films f ON f.film_id = fg.film_id " +
+            "JOIN mpa m ON m.mpa_id = f.mpa_id " +
+            "WHERE fg.genre_id = ? AND fg.release_year = ? " +
+            "ORDER BY fg.genre_id, fg.release_year, fg.like_count DESC, fg.film_id " +
+            "LIMIT ?"; //индекс film_genres_year_popular_idx
+    private static final String FILM_GENRES_SQL = "SELECT fg.film_id, g.genre_id, g.genre_name FROM film_genres fg " +
+            "JOIN genres g ON g.genre_id = fg.genre_id ";
     private final JdbcTemplate jdbcTemplate;
 
     public FilmStorageImpl(JdbcTemplate jdbcTemplate) {
         this.jdbcTemplate = jdbcTemplate;
     }
 
-    private Set<Genre> getGenres(long filmId) {
-        String sql = "SELECT g.genre_id, g.genre_name FROM genres g " +
-                "JOIN film_genres fg on g.genre_id = fg.genre_id " +
-                "JOIN films f on f.film_id = fg.film_id " +
-                "WHERE f.film_id = ?";
+    private RowCallbackHandler collectGenres(Map<Long, Set<Genre>> filmGenres) {
+        return rs -> filmGenres
+                .computeIfAbsent(rs.getLong("film_id"), filmId -> new LinkedHashSet<>())
+                .add(new Genre(rs.getInt("genre_id"), rs.getString("genre_name")));
+    }
 
-        return new LinkedHashSet<>(
-                jdbcTemplate.query(
-                        sql,
-                        (rs, rowNum) -> new Genre(rs.getInt("genre_id"), rs.getString("genre_name")),
-                        filmId
-                )
-        );
+    private Map<Long, Set<Genre>> getGenres(List<Film> films) {
+        Map<Long, Set<Genre>> filmGenres = new HashMap<>();
+
+        for (int from = 0; from < films.size(); from += DbUtils.IN_LIST_BATCH_SIZE) {
+            List<Film> batch = films.subList(from, Math.min(from + DbUtils.IN_LIST_BATCH_SIZE, films.size()));
+            String sql = FILM_GENRES_SQL +
+                    "WHERE fg.film_id IN (" + DbUtils.getListPlaceHolders(batch.size()) + ") " +
+                    "ORDER BY fg.film_id, g.genre_id";
+
+            jdbcTemplate.query(
+                    sql,
+                    collectGenres(filmGenres),
+                    batch.stream().map(Film::getId).toArray()
+            );
+        }
+
+        return filmGenres;
     }
 
-    private void rewriteGenres(Film film) {
-        deleteGenres(film);
-        insertGenres(film);
+    private Map<Long, Set<Genre>> getAllGenres() {
+        Map<Long, Set<Genre>> filmGenres = new HashMap<>();
+        String sql = FILM_GENRES_SQL + "ORDER BY fg.film_id, g.genre_id";
+        jdbcTemplate.query(sql, collectGenres(filmGenres));
+        return filmGenres;
     }
 
-    private void deleteGenres(Film film) {
-        long filmId = film.getId();
-        String sql = "DELETE FROM film_genres WHERE film_id = ?";
-        jdbcTemplate.update(sql, filmId);
+    private List<Film> setGenres(List<Film> films, Map<Long, Set<Genre>> filmGenres) {
+        List<Film> filmsWithGenres = new ArrayList<>(films.size());
+
+        for (Film film : films) {
+            filmsWithGenres.add(film.withGenres(filmGenres.getOrDefault(film.getId(), Collections.emptySet())));
+        }
+
+        return filmsWithGenres;
+    }
+
+    private List<Film> setGenres(List<Film> films) {
+        return films.isEmpty() ? films : setGenres(films, getGenres(films));
+    }
+
+    private class FilmStreamHandler implements RowCallbackHandler {
+        private final Consumer<Film> consumer;
+        private Film film;
+        private Set<Genre> genres;
+
+        private FilmStreamHandler(Consumer<Film> consumer) {
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            long filmId = rs.getLong("film_id");
+
+            if (film == null || film.getId() != filmId) { //строки одного фильма идут подряд
+                flush();
+                film = mapRow(rs, rs.getRow());
+                genres = new LinkedHashSet<>();
+            }
+
+            int genreId = rs.getInt("genre_id");
+
+            if (!rs.wasNull()) {
+                genres.add(new Genre(genreId, rs.getString("genre_name")));
+            }
+        }
+
+        private void flush() {
+            if (film != null) {
+                consumer.accept(film.withGenres(genres));
+                film = null;
+            }
+        }
+    }
+
+    private Set<Integer> getGenreIds(Film film) {
+        return film
+                .getGenres()
+                .stream()
+                .map(Genre::getId)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
     }
 
-    private void insertGenres(Film film) {
+    private void updateGenres(Film film) {
         long filmId = film.getId();
-        int genresCount = film.getGenres().size();
+        String sql = "SELECT genre_id, release_year FROM film_genres WHERE film_id = ?"; //строка фильма уже заблокирована UPDATE
+        Set<Integer> storedGenreIds = new HashSet<>();
+        Set<Integer> storedReleaseYears = new HashSet<>();
 
-        if (genresCount == 0) {
-            return; //фильму не присвоены жанры
+        jdbcTemplate.query(
+                sql,
+                rs -> {
+                    storedGenreIds.add(rs.getInt("genre_id"));
+                    storedReleaseYears.add(rs.getInt("release_year"));
+                },
+                filmId
+        );
+
+        int releaseYear = film.getReleaseDate().getYear();
+
+        if (!storedReleaseYears.isEmpty() && !storedReleaseYears.equals(Set.of(releaseYear))) {
+            jdbcTemplate.update("UPDATE film_genres SET release_year = ? WHERE film_id = ?", releaseYear, filmId);
         }
 
-        String sql = "INSERT INTO film_genres (film_id, genre_id) VALUES "
-                + DbUtils.getPlaceHolders(genresCount);
-        List<Long> filmGenres = new ArrayList<>();
+        Set<Integer> genreIds = getGenreIds(film);
+        Set<Integer> genreIdsToDelete = new HashSet<>(storedGenreIds);
+        genreIdsToDelete.removeAll(genreIds);
+        genreIds.removeAll(storedGenreIds);
+        deleteGenres(filmId, genreIdsToDelete);
+        insertGenres(filmId, genreIds); //неизменившиеся жанры не трогаем
+    }
 
-        for (Genre genre : film.getGenres()) {
-            filmGenres.add(filmId);
-            filmGenres.add((long) genre.getId());
+    private void deleteGenres(long filmId, Set<Integer> genreIds) {
+        if (genreIds.isEmpty()) {
+            return;
         }
 
+        String sql = "DELETE FROM film_genres WHERE film_id = ? AND genre_id IN ("
+                + DbUtils.getListPlaceHolders(genreIds.size()) + ")";
+        List<Object> params = new ArrayList<>();
+        params.add(filmId);
+        params.addAll(genreIds);
+        jdbcTemplate.update(sql, params.toArray());
+    }
+
+    private void insertGenres(long filmId, Set<Integer> genreIds) {
+        int genresCount = genreIds.size();
+
+        if (genresCount == 0) {
+            return; //фильму не присвоены жанры
+        }
+
+        String sql = "INSERT INTO film_genres (film_id, genre_id, like_count, release_year) " +
+                "SELECT f.film_id, g.genre_id, f.like_count, f.release_year FROM films f, genres g " +
+                "WHERE f.film_id = ? AND g.genre_id IN (" + DbUtils.getListPlaceHolders(genresCount) + ")";
+        List<Object> params = new ArrayList<>();
+        params.add(filmId);
+        params.addAll(genreIds);
+
         jdbcTemplate.update(
                 sql,
-                filmGenres.toArray()
+                params.toArray()
         );
     }
 
     @Override
-    public long getNextId() {
-        String sql = "SELECT NEXT VALUE FOR films_seq nextval";
+    public long reserveIdBlock() {
+        String sql = "SELECT NEXT VALUE FOR films_seq nextval"; //начало блока из getIdBlockSize() свободных id
 
-        Long nextId = jdbcTemplate.queryForObject(
+        Long blockStart = jdbcTemplate.queryForObject(
                 sql,
                 (rs, rowNum) -> rs.getLong("nextval")
         );
 
-        return nextId == null ? 0 : nextId;
+        return blockStart == null ? 0 : blockStart;
+    }
+
+    @Override
+    public int getIdBlockSize() {
+        return DbUtils.getSequenceIncrement(jdbcTemplate, "FILMS_SEQ");
     }
 
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true) //транзакцию не открывает, только направляет на реплику
     public Film get(long filmId) {
         String sql = "SELECT f.film_id, f.film_name, f.description, f.release_date, f.duration, f.mpa_id, m.mpa_name " +
                 "FROM films f, mpa m WHERE m.mpa_id = f.mpa_id AND f.film_id = ?";
-        return jdbcTemplate.queryForObject(sql, this, filmId);
+        Film film = jdbcTemplate.queryForObject(sql, this, filmId);
+        return setGenres(Collections.singletonList(film)).get(0);
     }
 
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public Collection<Film> getAll() {
         String sql = "SELECT f.film_id, f.film_name, f.description, f.release_date, f.duration, f.mpa_id, m.mpa_name " +
                 "FROM films f, mpa m WHERE m.mpa_id = f.mpa_id";
-        return jdbcTemplate.query(sql, this);
+        List<Film> films = jdbcTemplate.query(sql, this);
+        return films.isEmpty() ? films : setGenres(films, getAllGenres()); //все жанры выбираем одним запросом
     }
 
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public List<Film> getPage(long afterId, int limit) {
+        String sql = "SELECT f.film_id, f.film_name, f.description, f.release_date, f.duration, f.mpa_id, m.mpa_name " +
+                "FROM films f, mpa m WHERE m.mpa_id = f.mpa_id AND f.film_id > ? " +
+                "ORDER BY f.film_id " +
+                "LIMIT ?";
+        return setGenres(jdbcTemplate.query(sql, this, afterId, limit));
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public List<Film> getByIds(List<Long> filmIds) {
+        List<Film> films = new ArrayList<>(filmIds.size());
+
+        for (int from = 0; from < filmIds.size(); from += DbUtils.IN_LIST_BATCH_SIZE) {
+            List<Long> batch = filmIds.subList(from, Math.min(from + DbUtils.IN_LIST_BATCH_SIZE, filmIds.size()));
+            String sql = "SELECT f.film_id, f.film_name, f.description, f.release_date, f.duration, f.mpa_id, m.mpa_name " +
+                    "FROM films f, mpa m WHERE m.mpa_id = f.mpa_id " +
+                    "AND f.film_id IN (" + DbUtils.getListPlaceHolders(batch.size()) + ")";
+            films.addAll(jdbcTemplate.query(sql, this, batch.toArray()));
+        }
+
+        return DbUtils.orderByIds(filmIds, setGenres(films), Film::getId);
+    }
+
+    @Override
+    public void streamAll(Consumer<Film> consumer) {
+        String sql = "SELECT f.film_id, f.film_name, f.description, f.release_date, f.duration, f.mpa_id, m.mpa_name, " +
+                "g.genre_id, g.genre_name " +
+                "FROM films f " +
+                "JOIN mpa m ON m.mpa_id = f.mpa_id " +
+                "LEFT JOIN film_genres fg ON fg.film_id = f.film_id " +
+                "LEFT JOIN genres g ON g.genre_id = fg.genre_id " +
+                "ORDER BY f.film_id, g.genre_id";
+        FilmStreamHandler handler = new FilmStreamHandler(consumer);
+        jdbcTemplate.query(DbUtils.getStreamingStatement(sql), handler);
+        handler.flush(); //отдаём последний фильм выборки
+    }
+
+    @Override
+    public void streamIds(LongConsumer consumer) {
+        String sql = "SELECT film_id FROM films";
+
+        jdbcTemplate.query(
+                DbUtils.getStreamingStatement(sql),
+                rs -> {
+                    consumer.accept(rs.getLong("film_id"));
+                }
+        );
+    }
+
+    @Override
+    @Transactional
     public Film add(Film film) {
         String sql = "INSERT INTO films (film_id, film_name, description, release_date, duration, mpa_id) " +
                 "VALUES (?, ?, ?, ?, ?, ?)";
@@ -115,16 +322,51 @@ public class FilmStorageImpl implements FilmStorage, RowMapper<Film> {
                 film.getMpa().getId()
         );
 
-        rewriteGenres(film);
+        insertGenres(film.getId(), getGenreIds(film)); //у нового фильма жанров ещё нет
         return film;
     }
 
     @Override
-    public Film update(Film film) {
-        String sql = "UPDATE films SET film_name = ?, description = ?, release_date = ?, duration = ?, mpa_id = ? " +
+    @Transactional
+    public void addAll(List<Film> films) {
+        String sql = "INSERT INTO films (film_id, film_name, description, release_date, duration, mpa_id) " +
+                "VALUES (?, ?, ?, ?, ?, ?)";
+
+        jdbcTemplate.batchUpdate(
+                sql,
+                films
+                        .stream()
+                        .map(film -> new Object[]{
+                                film.getId(),
+                                film.getName(),
+                                film.getDescription(),
+                                film.getReleaseDate(),
+                                film.getDuration(),
+                                film.getMpa().getId()
+                        })
+                        .collect(Collectors.toList())
+        );
+
+        List<Object[]> filmGenres = new ArrayList<>();
+
+        for (Film film : films) {
+            for (Genre genre : film.getGenres()) {
+                filmGenres.add(new Object[]{film.getId(), genre.getId(), film.getReleaseDate().getYear()});
+            }
+        }
+
+        jdbcTemplate.batchUpdate("INSERT INTO film_genres (film_id, genre_id, release_year) VALUES (?, ?, ?)",
+                filmGenres); //у новых фильмов лайков нет
+    }
+
+    @Override
+    @Transactional
+    public Optional<Film> update(Film film) {
+        String sql = "UPDATE films SET film_name = ?, description = ?, release_date = ?, duration = ?, mpa_id = ?, " +
+                "version = NEXT VALUE FOR item_versions_seq " + //новая версия - новый ETag
                 "WHERE film_id = ?";
 
-        jdbcTemplate.update(
+        int updated = jdbcTemplate.update(
                 sql,
                 film.getName(),
                 film.getDescription(),
@@ -134,8 +376,12 @@ public class FilmStorageImpl implements FilmStorage, RowMapper<Film> {
                 film.getId()
         );
 
-        rewriteGenres(film);
-        return film;
+        if (updated == 0) {
+            return Optional.empty(); //фильма нет, жанры не трогаем
+        }
+
+        updateGenres(film);
+        return Optional.of(film);
     }
 
     @Override
@@ -145,6 +391,14 @@ public class FilmStorageImpl implements FilmStorage, RowMapper<Film> {
     }
 
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public Optional<Long> getVersion(long filmId) {
+        String sql = "SELECT version FROM films WHERE film_id = ?";
+        return jdbcTemplate.queryForList(sql, Long.class, filmId).stream().findFirst();
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public boolean isExists(long filmId) {
         String sql = "SELECT COUNT(*) cnt FROM films WHERE film_id = ?";
 
@@ -158,31 +412,48 @@ public class FilmStorageImpl implements FilmStorage, RowMapper<Film> {
     }
 
     @Override
+    public Set<Long> getExistingIds(List<Long> filmIds) {
+        Set<Long> existingIds = new HashSet<>();
+
+        for (int from = 0; from < filmIds.size(); from += DbUtils.IN_LIST_BATCH_SIZE) {
+            List<Long> batch = filmIds.subList(from, Math.min(from + DbUtils.IN_LIST_BATCH_SIZE, filmIds.size()));
+            String sql = "SELECT film_id FROM films WHERE film_id IN (" + DbUtils.getListPlaceHolders(batch.size()) + ")";
+            existingIds.addAll(jdbcTemplate.query(sql, (rs, rowNum) -> rs.getLong("film_id"), batch.toArray()));
+        }
+
+        return existingIds;
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public List<Film> getPopularFilms(int count) {
-        String sql = "SELECT f.film_id, f.film_name, f.description, f.release_date, f.duration, f.mpa_id, " +
-                "m.mpa_name, COUNT(l.user_id) cnt " +
-                "FROM films f " +
-                "JOIN mpa m ON m.mpa_id = f.mpa_id " +
-                "LEFT JOIN likes l ON f.film_id = l.film_id " +
-                "GROUP BY f.film_id, f.film_name, f.description, f.release_date, f.duration, f.mpa_id, m.mpa_name " +
-                "ORDER BY cnt DESC, f.film_id " +
-                "LIMIT ?";
-        return jdbcTemplate.query(sql, this, count);
+        return setGenres(jdbcTemplate.query(POPULAR_FILMS_SQL, this, count));
     }
 
     @Override
-    public Film mapRow(ResultSet rs, int rowNum) throws SQLException {
-        long filmId = rs.getLong("film_id");
-        Set<Genre> genres = getGenres(filmId);
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public List<Film> getPopularFilms(int count, Integer genreId, Integer year) {
+        if (genreId == null && year == null) {
+            return getPopularFilms(count);
+        } else if (genreId == null) {
+            return setGenres(jdbcTemplate.query(POPULAR_FILMS_BY_YEAR_SQL, this, year, count));
+        } else if (year == null) {
+            return setGenres(jdbcTemplate.query(POPULAR_FILMS_BY_GENRE_SQL, this, genreId, count));
+        }
+
+        return setGenres(jdbcTemplate.query(POPULAR_FILMS_BY_GENRE_AND_YEAR_SQL, this, genreId, year, count));
+    }
 
-        return new Film(
-                filmId,
+    @Override
+    public Film mapRow(ResultSet rs, int rowNum) throws SQLException {
+        return new Film( //жанры присваиваются отдельно, одним запросом на весь список фильмов
+                rs.getLong("film_id"),
                 rs.getString("film_name"),
                 rs.getString("description"),
                 rs.getDate("release_date").toLocalDate(),
                 rs.getInt("duration"),
                 new Mpa(rs.getInt("mpa_id"), rs.getString("mpa_name")),
-                genres
+                null
         );
     }
 }
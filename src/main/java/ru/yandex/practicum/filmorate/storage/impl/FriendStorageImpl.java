@@ -1,34 +1,138 @@
 package ru.yandex.practicum.filmorate.storage.impl;
 
+import org.springframework.context.annotation.Profile;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.storage.DbUtils;
 import ru.yandex.practicum.filmorate.storage.FriendStorage;
 
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+
 @Component
+@Profile("!memory") //в профиле memory - InMemoryFriendStorage
 public class FriendStorageImpl implements FriendStorage {
+    private static final String INSERT_FRIEND_SQL = "INSERT INTO user_friends (user_id, friend_id) " +
+            "SELECT CAST(? AS BIGINT), CAST(? AS BIGINT) FROM dual " +
+            "WHERE NOT EXISTS (SELECT * FROM user_friends WHERE user_id = ? AND friend_id = ?)";
     private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final EdgeWriteBehind writeBehind;
 
-    public FriendStorageImpl(JdbcTemplate jdbcTemplate) {
+    public FriendStorageImpl(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                             WriteBehindProperties writeBehindProperties) {
         this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.writeBehind = writeBehindProperties.isEnabled()
+                ? new EdgeWriteBehind("user_friends", writeBehindProperties, this::writeBatch, this::isStored)
+                : null;
+    }
+
+    private boolean isStored(long userId, long friendId) {
+        String sql = "SELECT COUNT(*) FROM user_friends WHERE user_id = ? AND friend_id = ?";
+        Integer cnt = jdbcTemplate.queryForObject(sql, Integer.class, userId, friendId);
+        return cnt != null && cnt > 0;
+    }
+
+    private int[] insertFriends(List<EdgeOperation> operations) {
+        return jdbcTemplate.batchUpdate(
+                INSERT_FRIEND_SQL,
+                operations
+                        .stream()
+                        .map(o -> new Object[]{o.getFromId(), o.getToId(), o.getFromId(), o.getToId()})
+                        .collect(Collectors.toList())
+        );
     }
 
-    public void add(long userId, long friendId) {
-        String sql = "INSERT INTO user_friends (user_id, friend_id) VALUES (?, ?)";
+    private int[] deleteFriends(List<EdgeOperation> operations) {
+        String sql = "DELETE FROM user_friends WHERE user_id = ? AND friend_id = ?";
 
-        jdbcTemplate.update(
+        return jdbcTemplate.batchUpdate(
                 sql,
+                operations
+                        .stream()
+                        .map(o -> new Object[]{o.getFromId(), o.getToId()})
+                        .collect(Collectors.toList())
+        );
+    }
+
+    private int[] writeBatch(List<EdgeOperation> operations) {
+        return transactionTemplate.execute(
+                status -> EdgeOperation.writeInRuns(operations, this::insertFriends, this::deleteFriends)
+        );
+    }
+
+    @PreDestroy
+    public void close() {
+        if (writeBehind != null) {
+            writeBehind.close();
+        }
+    }
+
+    @Override
+    public boolean add(long userId, long friendId) {
+        if (writeBehind != null) {
+            return writeBehind.write(new EdgeOperation(true, userId, friendId));
+        }
+
+        int inserted = jdbcTemplate.update(
+                INSERT_FRIEND_SQL,
+                userId,
+                friendId,
                 userId,
                 friendId
         );
+
+        return inserted > 0; //повторное добавление в друзья ничего не меняет
     }
 
-    public void delete(long userId, long friendId) {
+    @Override
+    public boolean delete(long userId, long friendId) {
+        if (writeBehind != null) {
+            return writeBehind.write(new EdgeOperation(false, userId, friendId));
+        }
+
         String sql = "DELETE FROM user_friends WHERE user_id = ? AND friend_id = ?";
 
-        jdbcTemplate.update(
+        int deleted = jdbcTemplate.update(
                 sql,
                 userId,
                 friendId
         );
+
+        return deleted > 0;
+    }
+
+    @Override
+    public boolean isFriend(long userId, long friendId) {
+        return writeBehind != null ? writeBehind.isStored(userId, friendId) : isStored(userId, friendId);
+    }
+
+    @Override
+    public void setLostWriteListener(BiConsumer<Long, Long> listener) {
+        if (writeBehind != null) {
+            writeBehind.setLostWriteListener(listener);
+        }
+    }
+
+    @Override
+    public void flush() {
+        if (writeBehind != null) {
+            writeBehind.flush();
+        }
+    }
+
+    @Override
+    public Map<Long, long[]> getFriendIds() {
+        flush(); //перед чтением дописываем всё, что накопилось в буфере
+
+        String sql = "SELECT user_id, friend_id FROM user_friends ORDER BY user_id, friend_id";
+        AdjacencyCollector collector = new AdjacencyCollector("user_id", "friend_id");
+        jdbcTemplate.query(DbUtils.getStreamingStatement(sql), collector);
+        return collector.getAdjacency();
     }
 }
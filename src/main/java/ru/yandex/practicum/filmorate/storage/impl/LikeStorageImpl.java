@@ -1,34 +1,219 @@
 package ru.yandex.practicum.filmorate.storage.impl;
 
+import org.springframework.context.annotation.Profile;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.storage.DbUtils;
 import ru.yandex.practicum.filmorate.storage.LikeStorage;
 
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+
 @Component
+@Profile("!memory") //в профиле memory - InMemoryLikeStorage
 public class LikeStorageImpl implements LikeStorage {
+    private static final String CHANGE_LIKE_COUNT_SQL = "UPDATE films SET like_count = like_count + ? WHERE film_id = ?";
+    private static final String CHANGE_GENRE_LIKE_COUNT_SQL = "UPDATE film_genres SET like_count = like_count + ? " +
+            "WHERE film_id = ?"; //копия счётчика для рейтинга по жанру
+    private static final String INSERT_LIKE_SQL = "INSERT INTO likes (film_id, user_id) " +
+            "SELECT CAST(? AS BIGINT), CAST(? AS BIGINT) FROM dual " +
+            "WHERE NOT EXISTS (SELECT * FROM likes WHERE film_id = ? AND user_id = ?)"; //повторный лайк пакет не ломает
     private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final EdgeWriteBehind writeBehind;
 
-    public LikeStorageImpl(JdbcTemplate jdbcTemplate) {
+    public LikeStorageImpl(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                           WriteBehindProperties writeBehindProperties) {
         this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.writeBehind = writeBehindProperties.isEnabled()
+                ? new EdgeWriteBehind("likes", writeBehindProperties, this::writeBatch, this::isStored)
+                : null;
     }
 
-    public void add(long filmId, long userId) {
-        String sql = "INSERT INTO likes (film_id, user_id) VALUES (?, ?)";
+    private void changeLikeCount(long filmId, int delta) {
+        jdbcTemplate.update(
+                CHANGE_LIKE_COUNT_SQL,
+                delta,
+                filmId
+        );
 
         jdbcTemplate.update(
+                CHANGE_GENRE_LIKE_COUNT_SQL,
+                delta,
+                filmId
+        );
+    }
+
+    private boolean isStored(long filmId, long userId) {
+        String sql = "SELECT COUNT(*) FROM likes WHERE film_id = ? AND user_id = ?";
+        Integer cnt = jdbcTemplate.queryForObject(sql, Integer.class, filmId, userId);
+        return cnt != null && cnt > 0;
+    }
+
+    private int[] insertLikes(List<EdgeOperation> operations) {
+        return jdbcTemplate.batchUpdate(
+                INSERT_LIKE_SQL,
+                operations
+                        .stream()
+                        .map(o -> new Object[]{o.getFromId(), o.getToId(), o.getFromId(), o.getToId()})
+                        .collect(Collectors.toList())
+        );
+    }
+
+    private int[] deleteLikes(List<EdgeOperation> operations) {
+        String sql = "DELETE FROM likes WHERE film_id = ? AND user_id = ?";
+
+        return jdbcTemplate.batchUpdate(
                 sql,
-                filmId,
-                userId
+                operations
+                        .stream()
+                        .map(o -> new Object[]{o.getFromId(), o.getToId()})
+                        .collect(Collectors.toList())
         );
     }
 
-    public void delete(long filmId, long userId) {
+    private int[] writeBatch(List<EdgeOperation> operations) {
+        return transactionTemplate.execute(status -> {
+            int[] updateCounts = EdgeOperation.writeInRuns(operations, this::insertLikes, this::deleteLikes);
+            Map<Long, Integer> likeCountDeltas = new HashMap<>();
+
+            for (int i = 0; i < operations.size(); i++) {
+                EdgeOperation operation = operations.get(i);
+                int delta = operation.isAdd() ? updateCounts[i] : -updateCounts[i];
+                likeCountDeltas.merge(operation.getFromId(), delta, Integer::sum);
+            }
+
+            List<Object[]> likeCountUpdates = new ArrayList<>();
+
+            likeCountDeltas.forEach((filmId, delta) -> {
+                if (delta != 0) {
+                    likeCountUpdates.add(new Object[]{delta, filmId});
+                }
+            });
+
+            jdbcTemplate.batchUpdate(CHANGE_LIKE_COUNT_SQL, likeCountUpdates);
+            jdbcTemplate.batchUpdate(CHANGE_GENRE_LIKE_COUNT_SQL, likeCountUpdates);
+            return updateCounts;
+        });
+    }
+
+    @Override
+    public void flush() {
+        if (writeBehind != null) {
+            writeBehind.flush();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (writeBehind != null) {
+            writeBehind.close();
+        }
+    }
+
+    @Override
+    public boolean add(long filmId, long userId) {
+        if (writeBehind != null) {
+            return writeBehind.write(new EdgeOperation(true, filmId, userId));
+        }
+
+        Integer inserted = transactionTemplate.execute(status -> {
+            int insertedLikes = jdbcTemplate.update(
+                    INSERT_LIKE_SQL,
+                    filmId,
+                    userId,
+                    filmId,
+                    userId
+            );
+
+            if (insertedLikes > 0) { //повторный лайк ничего не меняет - как и в режиме буфера записи
+                changeLikeCount(filmId, insertedLikes);
+            }
+
+            return insertedLikes;
+        });
+
+        return inserted != null && inserted > 0;
+    }
+
+    @Override
+    public boolean delete(long filmId, long userId) {
+        if (writeBehind != null) {
+            return writeBehind.write(new EdgeOperation(false, filmId, userId));
+        }
+
         String sql = "DELETE FROM likes WHERE film_id = ? AND user_id = ?";
 
-        jdbcTemplate.update(
+        Integer deleted = transactionTemplate.execute(status -> {
+            int deletedLikes = jdbcTemplate.update(
+                    sql,
+                    filmId,
+                    userId
+            );
+
+            if (deletedLikes > 0) { //счётчик уменьшаем, только если лайк действительно был
+                changeLikeCount(filmId, -deletedLikes);
+            }
+
+            return deletedLikes;
+        });
+
+        return deleted != null && deleted > 0;
+    }
+
+    @Override
+    public boolean isLiked(long filmId, long userId) {
+        return writeBehind != null ? writeBehind.isStored(filmId, userId) : isStored(filmId, userId);
+    }
+
+    @Override
+    public void setLostWriteListener(BiConsumer<Long, Long> listener) {
+        if (writeBehind != null) {
+            writeBehind.setLostWriteListener(listener);
+        }
+    }
+
+    @Override
+    public int reconcileLikeCounts() {
+        flush(); //перед чтением дописываем всё, что накопилось в буфере
+        String sql = "UPDATE films f SET like_count = (SELECT COUNT(*) FROM likes l WHERE l.film_id = f.film_id) " +
+                "WHERE like_count <> (SELECT COUNT(*) FROM likes l WHERE l.film_id = f.film_id)";
+        String genresSql = "UPDATE film_genres fg SET like_count = (SELECT f.like_count FROM films f WHERE f.film_id = fg.film_id) " +
+                "WHERE like_count <> (SELECT f.like_count FROM films f WHERE f.film_id = fg.film_id)";
+        int reconciled = jdbcTemplate.update(sql);
+        jdbcTemplate.update(genresSql);
+        return reconciled;
+    }
+
+    @Override
+    public Map<Long, Integer> getLikeCounts() {
+        flush(); //перед чтением дописываем всё, что накопилось в буфере
+        String sql = "SELECT film_id, like_count FROM films";
+        Map<Long, Integer> likeCounts = new HashMap<>();
+
+        jdbcTemplate.query(
                 sql,
-                filmId,
-                userId
+                rs -> {
+                    likeCounts.put(rs.getLong("film_id"), rs.getInt("like_count"));
+                }
         );
+
+        return likeCounts;
+    }
+
+    @Override
+    public Map<Long, long[]> getLikedFilmIds() {
+        flush(); //перед чтением дописываем всё, что накопилось в буфере
+        String sql = "SELECT user_id, film_id FROM likes ORDER BY user_id, film_id";
+        AdjacencyCollector collector = new AdjacencyCollector("user_id", "film_id");
+        jdbcTemplate.query(DbUtils.getStreamingStatement(sql), collector);
+        return collector.getAdjacency();
     }
 }
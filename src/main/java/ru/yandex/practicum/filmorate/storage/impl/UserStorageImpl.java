@@ -1,17 +1,29 @@
 package ru.yandex.practicum.filmorate.storage.impl;
 
+import org.springframework.context.annotation.Profile;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.DbUtils;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.stream.Collectors;
 
 @Component
+@Profile("!memory") //в профиле memory - InMemoryUserStorage
 public class UserStorageImpl implements UserStorage, RowMapper<User> {
     private final JdbcTemplate jdbcTemplate;
 
@@ -20,18 +32,24 @@ public class UserStorageImpl implements UserStorage, RowMapper<User> {
     }
 
     @Override
-    public long getNextId() {
-        String sql = "SELECT NEXT VALUE FOR users_seq nextval";
+    public long reserveIdBlock() {
+        String sql = "SELECT NEXT VALUE FOR users_seq nextval"; //начало блока из getIdBlockSize() свободных id
 
-        Long nextId = jdbcTemplate.queryForObject(
+        Long blockStart = jdbcTemplate.queryForObject(
                 sql,
                 (rs, rowNum) -> rs.getLong("nextval")
         );
 
-        return nextId == null ? 0 : nextId;
+        return blockStart == null ? 0 : blockStart;
     }
 
     @Override
+    public int getIdBlockSize() {
+        return DbUtils.getSequenceIncrement(jdbcTemplate, "USERS_SEQ");
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public User get(long userId) {
         String sql = "SELECT user_id, email, login, user_name, birthday FROM users " +
                 "WHERE user_id = ?";
@@ -39,11 +57,61 @@ public class UserStorageImpl implements UserStorage, RowMapper<User> {
     }
 
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public Collection<User> getAll() {
         String sql = "SELECT user_id, email, login, user_name, birthday FROM users";
         return jdbcTemplate.query(sql, this);
     }
 
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public List<User> getPage(long afterId, int limit) {
+        String sql = "SELECT user_id, email, login, user_name, birthday FROM users " +
+                "WHERE user_id > ? " +
+                "ORDER BY user_id " +
+                "LIMIT ?";
+        return jdbcTemplate.query(sql, this, afterId, limit);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public List<User> getByIds(List<Long> userIds) {
+        List<User> users = new ArrayList<>(userIds.size());
+
+        for (int from = 0; from < userIds.size(); from += DbUtils.IN_LIST_BATCH_SIZE) {
+            List<Long> batch = userIds.subList(from, Math.min(from + DbUtils.IN_LIST_BATCH_SIZE, userIds.size()));
+            String sql = "SELECT user_id, email, login, user_name, birthday FROM users " +
+                    "WHERE user_id IN (" + DbUtils.getListPlaceHolders(batch.size()) + ")";
+            users.addAll(jdbcTemplate.query(sql, this, batch.toArray()));
+        }
+
+        return DbUtils.orderByIds(userIds, users, User::getId);
+    }
+
+    @Override
+    public void streamAll(Consumer<User> consumer) {
+        String sql = "SELECT user_id, email, login, user_name, birthday FROM users ORDER BY user_id";
+
+        jdbcTemplate.query(
+                DbUtils.getStreamingStatement(sql),
+                rs -> {
+                    consumer.accept(mapRow(rs, rs.getRow()));
+                }
+        );
+    }
+
+    @Override
+    public void streamIds(LongConsumer consumer) {
+        String sql = "SELECT user_id FROM users";
+
+        jdbcTemplate.query(
+                DbUtils.getStreamingStatement(sql),
+                rs -> {
+                    consumer.accept(rs.getLong("user_id"));
+                }
+        );
+    }
+
     @Override
     public User add(User user) {
         String sql = "INSERT INTO users (user_id, email, login, user_name, birthday) " +
@@ -62,11 +130,33 @@ public class UserStorageImpl implements UserStorage, RowMapper<User> {
     }
 
     @Override
-    public User update(User user) {
-        String sql = "UPDATE users SET email = ?, login = ?, user_name = ?, birthday = ? " +
+    @Transactional
+    public void addAll(List<User> users) {
+        String sql = "INSERT INTO users (user_id, email, login, user_name, birthday) " +
+                "VALUES (?, ?, ?, ?, ?)";
+
+        jdbcTemplate.batchUpdate(
+                sql,
+                users
+                        .stream()
+                        .map(user -> new Object[]{
+                                user.getId(),
+                                user.getEmail(),
+                                user.getLogin(),
+                                user.getName(),
+                                user.getBirthday()
+                        })
+                        .collect(Collectors.toList())
+        );
+    }
+
+    @Override
+    public Optional<User> update(User user) {
+        String sql = "UPDATE users SET email = ?, login = ?, user_name = ?, birthday = ?, " +
+                "version = NEXT VALUE FOR item_versions_seq " + //новая версия - новый ETag
                 "WHERE user_id = ?";
 
-        jdbcTemplate.update(
+        int updated = jdbcTemplate.update(
                 sql,
                 user.getEmail(),
                 user.getLogin(),
@@ -75,16 +165,27 @@ public class UserStorageImpl implements UserStorage, RowMapper<User> {
                 user.getId()
         );
 
-        return user;
+        return updated == 0 ? Optional.empty() : Optional.of(user);
     }
 
     @Override
+    @Transactional
     public void deleteAll() {
         String sql = "DELETE FROM users";
         jdbcTemplate.update(sql);
+        jdbcTemplate.update("UPDATE films SET like_count = 0 WHERE like_count <> 0"); //лайки удалены каскадно
+        jdbcTemplate.update("UPDATE film_genres SET like_count = 0 WHERE like_count <> 0"); //и копия счётчика для жанров
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public Optional<Long> getVersion(long userId) {
+        String sql = "SELECT version FROM users WHERE user_id = ?";
+        return jdbcTemplate.queryForList(sql, Long.class, userId).stream().findFirst();
     }
 
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public boolean isExists(long userId) {
         String sql = "SELECT COUNT(*) cnt FROM users WHERE user_id = ?";
 
@@ -98,19 +199,16 @@ public class UserStorageImpl implements UserStorage, RowMapper<User> {
     }
 
     @Override
-    public List<User> getFriends(long userId) {
-        String sql = "SELECT u.user_id, u.email, u.login, u.user_name, u.birthday FROM users u, user_friends uf " +
-                "WHERE u.user_id = uf.friend_id AND uf.user_id = ?";
-        return jdbcTemplate.query(sql, this, userId);
-    }
+    public Set<Long> getExistingIds(List<Long> userIds) {
+        Set<Long> existingIds = new HashSet<>();
 
-    @Override
-    public List<User> getCommonFriends(long userId, long otherUserId) {
-        String sql = "SELECT u.user_id, u.email, u.login, u.user_name, u.birthday FROM users u, user_friends uf " +
-                "WHERE u.user_id = uf.friend_id AND uf.user_id = ? " +
-                "INTERSECT SELECT u.user_id, u.email, u.login, u.user_name, u.birthday FROM users u, user_friends uf " +
-                "WHERE u.user_id = uf.friend_id AND uf.user_id = ?";
-        return jdbcTemplate.query(sql, this, userId, otherUserId);
+        for (int from = 0; from < userIds.size(); from += DbUtils.IN_LIST_BATCH_SIZE) {
+            List<Long> batch = userIds.subList(from, Math.min(from + DbUtils.IN_LIST_BATCH_SIZE, userIds.size()));
+            String sql = "SELECT user_id FROM users WHERE user_id IN (" + DbUtils.getListPlaceHolders(batch.size()) + ")";
+            existingIds.addAll(jdbcTemplate.query(sql, (rs, rowNum) -> rs.getLong("user_id"), batch.toArray()));
+        }
+
+        return existingIds;
     }
 
     @Override
@@ -0,0 +1,22 @@
+package ru.yandex.practicum.filmorate.storage.impl;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "filmorate.write-behind")
+public class WriteBehindProperties {
+    public enum Durability {
+        ACK_AFTER_FLUSH, //запрос ждёт записи пакета в БД
+        ACK_ON_ENQUEUE //запрос завершается сразу после постановки в буфер, результат - по буферу и БД
+    }
+
+    private boolean enabled = false;
+    private Durability durability = Durability.ACK_AFTER_FLUSH;
+    private int capacity = 10000;
+    private int batchSize = 500;
+    private long flushIntervalMs = 50;
+    private long enqueueTimeoutMs = 1000;
+}
@@ -0,0 +1,190 @@
+package ru.yandex.practicum.filmorate.storage.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.TransientDataAccessResourceException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+@Slf4j
+public class WriteBehindQueue<T> {
+    private final String name;
+    private final WriteBehindProperties properties;
+    private final Function<List<T>, int[]> batchWriter;
+    private final BlockingQueue<PendingWrite<T>> buffer;
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    private static class PendingWrite<T> {
+        private final T operation; //null - отметка для принудительного сброса буфера
+        private final CompletableFuture<Integer> result = new CompletableFuture<>();
+
+        private PendingWrite(T operation) {
+            this.operation = operation;
+        }
+    }
+
+    public WriteBehindQueue(String name, WriteBehindProperties properties, Function<List<T>, int[]> batchWriter) {
+        this.name = name;
+        this.properties = properties;
+        this.batchWriter = batchWriter;
+        this.buffer = new ArrayBlockingQueue<>(properties.getCapacity());
+        this.flusher = new Thread(this::flushLoop, "write-behind-" + name);
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    private IllegalStateException closed() {
+        return new IllegalStateException(String.format("буфер записи %s закрыт", name));
+    }
+
+    CompletableFuture<Integer> submit(T operation) {
+        if (!running) {
+            throw closed();
+        }
+
+        PendingWrite<T> pendingWrite = new PendingWrite<>(operation);
+
+        try {
+            if (!buffer.offer(pendingWrite, properties.getEnqueueTimeoutMs(), TimeUnit.MILLISECONDS)) {
+                throw new TransientDataAccessResourceException( //буфер полон дольше допустимого - отказываем клиенту
+                        String.format("буфер записи %s переполнен", name));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransientDataAccessResourceException(String.format("запись в буфер %s прервана", name), e);
+        }
+
+        if (!running && buffer.remove(pendingWrite)) { //закрыт, пока ждали места: сбрасывающий поток мог уже остановиться
+            throw closed();
+        }
+
+        return pendingWrite.result;
+    }
+
+    private static int await(CompletableFuture<Integer> result) {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause(); //ошибку записи получает тот, чья операция не прошла
+            }
+
+            throw e;
+        }
+    }
+
+    public int write(T operation) {
+        return await(submit(operation));
+    }
+
+    public void flush() {
+        await(submit(null));
+    }
+
+    public void close() {
+        running = false;
+
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        List<PendingWrite<T>> abandoned = new ArrayList<>();
+        buffer.drainTo(abandoned); //поставлены после остановки сбрасывающего потока - ждущие не должны зависнуть
+
+        for (PendingWrite<T> pendingWrite : abandoned) {
+            pendingWrite.result.completeExceptionally(closed());
+        }
+    }
+
+    private void flushLoop() {
+        List<PendingWrite<T>> batch = new ArrayList<>(properties.getBatchSize());
+
+        while (running || !buffer.isEmpty()) {
+            try {
+                PendingWrite<T> first = buffer.poll(properties.getFlushIntervalMs(), TimeUnit.MILLISECONDS);
+
+                if (first == null) {
+                    continue;
+                }
+
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(properties.getFlushIntervalMs());
+
+                while (batch.size() < properties.getBatchSize()) { //пакет закрывается по размеру или по времени
+                    PendingWrite<T> next = buffer.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+
+                    if (next == null) {
+                        break;
+                    }
+
+                    batch.add(next);
+                }
+
+                writeBatch(batch);
+                batch.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+        }
+
+        log.info("write-behind {}: stopped", name);
+    }
+
+    private void writeBatch(List<PendingWrite<T>> batch) {
+        List<PendingWrite<T>> writes = new ArrayList<>(batch.size());
+        List<T> operations = new ArrayList<>(batch.size());
+
+        for (PendingWrite<T> pendingWrite : batch) {
+            if (pendingWrite.operation != null) {
+                writes.add(pendingWrite);
+                operations.add(pendingWrite.operation);
+            }
+        }
+
+        try {
+            if (!operations.isEmpty()) {
+                complete(writes, batchWriter.apply(operations));
+            }
+        } catch (RuntimeException e) {
+            log.warn("write-behind {}: batch of {} failed, writing one by one", name, operations.size(), e);
+            writeOneByOne(writes); //ошибка одной операции не должна отменять остальные
+        }
+
+        for (PendingWrite<T> pendingWrite : batch) {
+            if (pendingWrite.operation == null) {
+                pendingWrite.result.complete(0);
+            }
+        }
+    }
+
+    private void writeOneByOne(List<PendingWrite<T>> writes) {
+        for (PendingWrite<T> pendingWrite : writes) {
+            try {
+                complete(
+                        Collections.singletonList(pendingWrite),
+                        batchWriter.apply(Collections.singletonList(pendingWrite.operation))
+                );
+            } catch (RuntimeException e) {
+                log.warn("write-behind {}: {} failed", name, pendingWrite.operation, e);
+                pendingWrite.result.completeExceptionally(e);
+            }
+        }
+    }
+
+    private static <T> void complete(List<PendingWrite<T>> writes, int[] updateCounts) {
+        for (int i = 0; i < writes.size(); i++) {
+            writes.get(i).result.complete(updateCounts[i]);
+        }
+    }
+}
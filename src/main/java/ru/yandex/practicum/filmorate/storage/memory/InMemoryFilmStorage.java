@@ -0,0 +1,181 @@
+package ru.yandex.practicum.filmorate.storage.memory;
+
+import lombok.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.impl.GenreStorageImpl;
+import ru.yandex.practicum.filmorate.storage.impl.MpaStorageImpl;
+
+import javax.annotation.PostConstruct;
+import java.nio.ByteBuffer;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+@Component
+@Profile("memory")
+public class InMemoryFilmStorage extends InMemoryItemStorage<Film> implements FilmStorage {
+    private final InMemoryLikeStorage likeStorage;
+    private final GenreStorageImpl genreStorage;
+    private final MpaStorageImpl mpaStorage;
+    private final Map<FilterKey, Set<Long>> filmIdsByFilter = new ConcurrentHashMap<>(); //выборки по году и жанру с годом
+    private volatile Map<Integer, Genre> genres = Map.of();
+    private volatile Map<Integer, Mpa> mpas = Map.of();
+
+    @Value
+    private static class FilterKey {
+        Integer genreId;
+        Integer year;
+    }
+
+    public InMemoryFilmStorage(InMemoryLikeStorage likeStorage, GenreStorageImpl genreStorage, MpaStorageImpl mpaStorage,
+                               OpLog opLog) {
+        super("фильм", OpLog.FILMS, opLog);
+        this.likeStorage = likeStorage;
+        this.genreStorage = genreStorage;
+        this.mpaStorage = mpaStorage;
+    }
+
+    @PostConstruct
+    public void loadReferences() {
+        //справочники остаются в БД и меняются только вместе с data.sql - читаем их один раз
+        genres = genreStorage.getAll().stream().collect(Collectors.toMap(Genre::getId, genre -> genre));
+        mpas = mpaStorage.getAll().stream().collect(Collectors.toMap(Mpa::getId, mpa -> mpa));
+    }
+
+    @Override
+    protected Film normalize(Film film) {
+        Set<Genre> filmGenres = film
+                .getGenres()
+                .stream()
+                .sorted(Comparator.comparingInt(Genre::getId))
+                .map(genre -> genres.getOrDefault(genre.getId(), genre))
+                .collect(Collectors.toCollection(LinkedHashSet::new)); //названия и порядок - как после JOIN с genres
+        Mpa mpa = mpas.getOrDefault(film.getMpa().getId(), film.getMpa());
+        return film.withMpa(mpa).withGenres(filmGenres);
+    }
+
+    @Override
+    void write(RecordBuffer out, Film film) {
+        out
+                .putLong(film.getId())
+                .putString(film.getName())
+                .putString(film.getDescription())
+                .putDate(film.getReleaseDate())
+                .putInt(film.getDuration())
+                .putInt(film.getMpa().getId())
+                .putInt(film.getGenres().size());
+        film.getGenres().forEach(genre -> out.putInt(genre.getId())); //названия восстановит normalize
+    }
+
+    @Override
+    Film read(ByteBuffer in) {
+        Film.FilmBuilder film = Film
+                .builder()
+                .id(in.getLong())
+                .name(RecordBuffer.getString(in))
+                .description(RecordBuffer.getString(in))
+                .releaseDate(RecordBuffer.getDate(in))
+                .duration(in.getInt())
+                .mpa(new Mpa(in.getInt(), null));
+        Set<Genre> filmGenres = new LinkedHashSet<>();
+
+        for (int i = in.getInt(); i > 0; i--) {
+            filmGenres.add(new Genre(in.getInt(), null));
+        }
+
+        return film.genres(filmGenres).build();
+    }
+
+    private static Set<FilterKey> getFilterKeys(Film film) {
+        int year = film.getReleaseDate().getYear();
+        Set<FilterKey> filterKeys = new HashSet<>();
+        filterKeys.add(new FilterKey(null, year));
+
+        for (Genre genre : film.getGenres()) { //выборки только по жанру - в рейтингах жанров InMemoryLikeStorage
+            filterKeys.add(new FilterKey(genre.getId(), year));
+        }
+
+        return filterKeys;
+    }
+
+    private void index(long filmId, Set<FilterKey> filterKeys) {
+        filterKeys.forEach(filterKey -> filmIdsByFilter
+                .computeIfAbsent(filterKey, key -> ConcurrentHashMap.newKeySet())
+                .add(filmId));
+    }
+
+    @Override
+    protected void onAdded(Film film) {
+        index(film.getId(), getFilterKeys(film));
+        likeStorage.setFilmGenres(film.getId(), getGenreIds(film));
+    }
+
+    private static int[] getGenreIds(Film film) {
+        return film.getGenres().stream().mapToInt(Genre::getId).sorted().toArray();
+    }
+
+    private void unindex(long filmId, Set<FilterKey> filterKeys) {
+        for (FilterKey filterKey : filterKeys) {
+            Set<Long> filmIds = filmIdsByFilter.get(filterKey);
+
+            if (filmIds != null) {
+                filmIds.remove(filmId);
+            }
+        }
+    }
+
+    @Override
+    protected void onUpdated(Film oldFilm, Film film) {
+        Set<FilterKey> filterKeys = getFilterKeys(film);
+        index(film.getId(), filterKeys);
+        Set<FilterKey> filterKeysToRemove = getFilterKeys(oldFilm);
+        filterKeysToRemove.removeAll(filterKeys); //из неизменившихся выборок фильм не пропадает ни на миг
+        unindex(film.getId(), filterKeysToRemove);
+        likeStorage.setFilmGenres(film.getId(), getGenreIds(film));
+    }
+
+    @Override
+    protected void lockDependents() {
+        likeStorage.lockAll();
+    }
+
+    @Override
+    protected void unlockDependents() {
+        likeStorage.unlockAll();
+    }
+
+    @Override
+    protected void onDeletedAll() {
+        filmIdsByFilter.clear();
+        likeStorage.deleteAllFilms();
+    }
+
+    @Override
+    public List<Film> getPopularFilms(int count) {
+        return getByIds(likeStorage.getTopFilmIds(count));
+    }
+
+    @Override
+    public List<Film> getPopularFilms(int count, Integer genreId, Integer year) {
+        if (genreId == null && year == null) {
+            return getPopularFilms(count);
+        }
+
+        if (year == null) {
+            return getByIds(likeStorage.getTopFilmIdsByGenre(count, genreId)); //читаются только count первых фильмов жанра
+        }
+
+        Set<Long> filmIds = filmIdsByFilter.getOrDefault(new FilterKey(genreId, year), Set.of());
+        return getByIds(likeStorage.getTopFilmIds(count, filmIds)); //фильмов одного года немного - ранжируем только их
+    }
+}
@@ -0,0 +1,101 @@
+package ru.yandex.practicum.filmorate.storage.memory;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.service.index.SortedLongArrays;
+import ru.yandex.practicum.filmorate.storage.FriendStorage;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+
+@Component
+@Profile("memory")
+public class InMemoryFriendStorage implements FriendStorage {
+    private final Map<Long, long[]> friendIds = new ConcurrentHashMap<>(); //id пользователя -> отсортированные id друзей
+    private final StripedLocks locks = new StripedLocks();
+    private final OpLog opLog;
+
+    public InMemoryFriendStorage(OpLog opLog) {
+        this.opLog = opLog;
+    }
+
+    @Override
+    public boolean add(long userId, long friendId) {
+        try (OpLog.Commit commit = opLog.begin()) {
+            Lock lock = locks.lock(userId);
+
+            try {
+                long[] ids = friendIds.get(userId);
+                long[] result = SortedLongArrays.insert(ids, friendId);
+
+                if (result == ids) {
+                    return false; //повторное добавление в друзья ничего не меняет
+                }
+
+                commit.append(out -> out.putByte(OpLog.FRIEND_ADD).putLong(userId).putLong(friendId));
+                commit.await();
+                friendIds.put(userId, result);
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public boolean delete(long userId, long friendId) {
+        try (OpLog.Commit commit = opLog.begin()) {
+            Lock lock = locks.lock(userId);
+
+            try {
+                long[] ids = friendIds.get(userId);
+
+                if (ids == null || !SortedLongArrays.contains(ids, friendId)) {
+                    return false;
+                }
+
+                commit.append(out -> out.putByte(OpLog.FRIEND_DELETE).putLong(userId).putLong(friendId));
+                commit.await();
+                long[] remaining = SortedLongArrays.remove(ids, friendId);
+
+                if (remaining == null) {
+                    friendIds.remove(userId);
+                } else {
+                    friendIds.put(userId, remaining);
+                }
+
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public boolean isFriend(long userId, long friendId) {
+        return SortedLongArrays.contains(friendIds.getOrDefault(userId, SortedLongArrays.EMPTY), friendId);
+    }
+
+    @Override
+    public Map<Long, long[]> getFriendIds() {
+        return new HashMap<>(friendIds); //массивы неизменяемы, копируем только ссылки
+    }
+
+    void lockAll() {
+        locks.lockAll();
+    }
+
+    void unlockAll() {
+        locks.unlockAll();
+    }
+
+    void clear() {
+        friendIds.clear();
+    }
+
+    void restore(long userId, long[] ids) {
+        friendIds.put(userId, ids);
+    }
+}
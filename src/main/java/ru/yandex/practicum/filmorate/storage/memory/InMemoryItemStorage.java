@@ -0,0 +1,341 @@
+package ru.yandex.practicum.filmorate.storage.memory;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import ru.yandex.practicum.filmorate.model.Identifiable;
+import ru.yandex.practicum.filmorate.storage.ItemStorage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+public abstract class InMemoryItemStorage<T extends Identifiable<T>> implements ItemStorage<T> {
+    static final int ID_BLOCK_SIZE = 100; //как INCREMENT BY у последовательностей в schema.sql
+    private final String itemName;
+    private final byte itemType;
+    private final OpLog opLog;
+    private final StripedLocks locks = new StripedLocks();
+    protected final ConcurrentNavigableMap<Long, Row<T>> rows = new ConcurrentSkipListMap<>(); //чтение без блокировок
+    private final AtomicLong nextIdBlock = new AtomicLong(1);
+    private final AtomicLong nextVersion = new AtomicLong(1); //общая на все строки, как item_versions_seq
+
+    protected static class Row<T> {
+        protected final T item;
+        protected final long version;
+
+        protected Row(T item, long version) {
+            this.item = item;
+            this.version = version;
+        }
+    }
+
+    protected InMemoryItemStorage(String itemName, byte itemType, OpLog opLog) {
+        this.itemName = itemName;
+        this.itemType = itemType;
+        this.opLog = opLog;
+    }
+
+    protected abstract T normalize(T item); //то, что вернула бы выборка из БД
+
+    abstract void write(RecordBuffer out, T item);
+
+    abstract T read(ByteBuffer in);
+
+    protected void onAdded(T item) {
+    }
+
+    protected void onUpdated(T oldItem, T item) {
+    }
+
+    protected void onDeletedAll() {
+    }
+
+    //хранилища связей, которые deleteAll очищает каскадно, - их изменения не должны вклиниться между
+    //записью DELETE_ALL в журнал и очисткой
+    protected void lockDependents() {
+    }
+
+    protected void unlockDependents() {
+    }
+
+    private Row<T> newRow(T item) {
+        return new Row<>(normalize(item), nextVersion.getAndIncrement());
+    }
+
+    private void appendPut(OpLog.Commit commit, Row<T> row) {
+        commit.append(out -> {
+            out.putByte(OpLog.PUT).putByte(itemType).putLong(row.version);
+            write(out, row.item);
+        });
+    }
+
+    private DuplicateKeyException duplicateKey(long itemId) {
+        return new DuplicateKeyException(String.format("%s с id = %d уже существует", itemName, itemId));
+    }
+
+    @Override
+    public long reserveIdBlock() {
+        return nextIdBlock.getAndAdd(ID_BLOCK_SIZE);
+    }
+
+    @Override
+    public int getIdBlockSize() {
+        return ID_BLOCK_SIZE;
+    }
+
+    @Override
+    public T get(long itemId) {
+        Row<T> row = rows.get(itemId);
+
+        if (row == null) {
+            throw new EmptyResultDataAccessException(1); //как queryForObject без строк
+        }
+
+        return row.item;
+    }
+
+    @Override
+    public Collection<T> getAll() {
+        List<T> items = new ArrayList<>(rows.size());
+        rows.values().forEach(row -> items.add(row.item));
+        return items;
+    }
+
+    @Override
+    public List<T> getPage(long afterId, int limit) {
+        List<T> items = new ArrayList<>(limit);
+
+        for (Row<T> row : rows.tailMap(afterId, false).values()) {
+            if (items.size() == limit) {
+                break;
+            }
+
+            items.add(row.item);
+        }
+
+        return items;
+    }
+
+    @Override
+    public List<T> getByIds(List<Long> itemIds) {
+        List<T> items = new ArrayList<>(itemIds.size());
+
+        for (Long itemId : itemIds) {
+            Row<T> row = rows.get(itemId);
+
+            if (row != null) { //элемент могли удалить между чтением id и выборкой
+                items.add(row.item);
+            }
+        }
+
+        return items;
+    }
+
+    @Override
+    public void streamAll(Consumer<T> consumer) {
+        rows.values().forEach(row -> consumer.accept(row.item));
+    }
+
+    @Override
+    public void streamIds(LongConsumer consumer) {
+        rows.keySet().forEach(consumer::accept);
+    }
+
+    @Override
+    public T add(T item) {
+        Row<T> row;
+
+        try (OpLog.Commit commit = opLog.begin()) {
+            Lock lock = locks.lock(item.getId());
+
+            try {
+                if (rows.containsKey(item.getId())) {
+                    throw duplicateKey(item.getId());
+                }
+
+                row = newRow(item);
+                appendPut(commit, row);
+                commit.await(); //строка появляется только после записи в журнал
+                rows.put(item.getId(), row);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        onAdded(row.item);
+        return row.item; //сохранённый экземпляр, как его вернул бы get
+    }
+
+    @Override
+    public void addAll(List<T> items) {
+        List<Row<T>> addedRows = new ArrayList<>(items.size());
+
+        try (OpLog.Commit commit = opLog.begin()) {
+            locks.lockAll(); //пачки редки - проще занять все полосы, чем упорядочивать нужные
+
+            try {
+                Set<Long> itemIds = new HashSet<>();
+
+                for (T item : items) {
+                    if (rows.containsKey(item.getId()) || !itemIds.add(item.getId())) {
+                        throw duplicateKey(item.getId()); //пачка целиком, как в транзакции
+                    }
+                }
+
+                for (T item : items) {
+                    Row<T> row = newRow(item);
+                    appendPut(commit, row);
+                    addedRows.add(row);
+                }
+
+                commit.await();
+                addedRows.forEach(row -> rows.put(row.item.getId(), row));
+            } finally {
+                locks.unlockAll();
+            }
+        }
+
+        addedRows.forEach(row -> onAdded(row.item));
+    }
+
+    @Override
+    public Optional<T> update(T item) {
+        T oldItem;
+        Row<T> row;
+
+        try (OpLog.Commit commit = opLog.begin()) {
+            Lock lock = locks.lock(item.getId());
+
+            try {
+                Row<T> oldRow = rows.get(item.getId());
+
+                if (oldRow == null) {
+                    return Optional.empty();
+                }
+
+                oldItem = oldRow.item;
+                row = newRow(item);
+                appendPut(commit, row);
+                commit.await();
+                rows.put(item.getId(), row);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        onUpdated(oldItem, row.item);
+        return Optional.of(row.item);
+    }
+
+    @Override
+    public void deleteAll() {
+        try (OpLog.Commit commit = opLog.begin()) {
+            locks.lockAll();
+            lockDependents();
+
+            try {
+                commit.append(out -> out.putByte(OpLog.DELETE_ALL).putByte(itemType));
+                commit.await();
+                rows.clear();
+                onDeletedAll();
+            } finally {
+                unlockDependents();
+                locks.unlockAll();
+            }
+        }
+    }
+
+    @Override
+    public boolean isExists(long itemId) {
+        return rows.containsKey(itemId);
+    }
+
+    @Override
+    public Optional<Long> getVersion(long itemId) {
+        Row<T> row = rows.get(itemId);
+        return row == null ? Optional.empty() : Optional.of(row.version);
+    }
+
+    @Override
+    public Set<Long> getExistingIds(List<Long> itemIds) {
+        Set<Long> existingIds = new HashSet<>();
+
+        for (Long itemId : itemIds) {
+            if (rows.containsKey(itemId)) {
+                existingIds.add(itemId);
+            }
+        }
+
+        return existingIds;
+    }
+
+    //восстановление из снимка и журнала: строка с записанной версией, без повторного журналирования
+    void restore(ByteBuffer in) {
+        long version = in.getLong();
+        Row<T> row = new Row<>(normalize(read(in)), version);
+        Row<T> oldRow = rows.put(row.item.getId(), row);
+        nextIdBlock.accumulateAndGet(row.item.getId() + 1, Math::max);
+        nextVersion.accumulateAndGet(version + 1, Math::max);
+
+        if (oldRow == null) {
+            onAdded(row.item);
+        } else {
+            onUpdated(oldRow.item, row.item);
+        }
+    }
+
+    void restoreCounters(long nextIdBlock, long nextVersion) {
+        this.nextIdBlock.accumulateAndGet(nextIdBlock, Math::max);
+        this.nextVersion.accumulateAndGet(nextVersion, Math::max);
+    }
+
+    int size() {
+        return rows.size();
+    }
+
+    //вызывается при остановленных изменениях: строки неизменяемы, сериализовать их можно уже после
+    Snapshot<T> capture() {
+        return new Snapshot<>(new ArrayList<>(rows.values()), nextIdBlock.get(), nextVersion.get());
+    }
+
+    void writeSnapshot(Snapshot<T> snapshot, SnapshotWriter out) throws IOException {
+        out.buffer().putLong(snapshot.nextIdBlock).putLong(snapshot.nextVersion).putInt(snapshot.rows.size());
+
+        for (Row<T> row : snapshot.rows) {
+            out.buffer().putLong(row.version);
+            write(out.buffer(), row.item);
+            out.flushIfFull();
+        }
+    }
+
+    void readSnapshot(ByteBuffer in) {
+        restoreCounters(in.getLong(), in.getLong());
+
+        for (int i = in.getInt(); i > 0; i--) {
+            restore(in);
+        }
+    }
+
+    static class Snapshot<T> {
+        private final List<Row<T>> rows;
+        private final long nextIdBlock;
+        private final long nextVersion;
+
+        private Snapshot(List<Row<T>> rows, long nextIdBlock, long nextVersion) {
+            this.rows = rows;
+            this.nextIdBlock = nextIdBlock;
+            this.nextVersion = nextVersion;
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package ru.yandex.practicum.filmorate.storage.memory;
+
+import lombok.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.service.index.SortedLongArrays;
+import ru.yandex.practicum.filmorate.storage.LikeStorage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.Lock;
+
+@Component
+@Profile("memory")
+public class InMemoryLikeStorage implements LikeStorage {
+    private static final Comparator<Entry> ENTRY_ORDER = Comparator
+            .comparingInt(Entry::getLikeCount)
+            .reversed()
+            .thenComparingLong(Entry::getFilmId); //тот же порядок, что и ORDER BY like_count DESC, film_id
+    private static final int[] NO_GENRES = new int[0];
+    private final Map<Long, long[]> likedFilmIds = new ConcurrentHashMap<>(); //id пользователя -> отсортированные id фильмов
+    private final Map<Long, Integer> likeCounts = new ConcurrentHashMap<>();
+    private final NavigableSet<Entry> ranking = new ConcurrentSkipListSet<>(ENTRY_ORDER);
+    private final Map<Long, int[]> filmGenreIds = new ConcurrentHashMap<>(); //отсортированные id жанров фильма
+    private final Map<Integer, NavigableSet<Entry>> genreRankings = new ConcurrentHashMap<>(); //как film_genres_popular_idx
+    private final StripedLocks locks = new StripedLocks(); //по id пользователя
+    private final OpLog opLog;
+
+    @Value
+    private static class Entry {
+        int likeCount;
+        long filmId;
+    }
+
+    public InMemoryLikeStorage(OpLog opLog) {
+        this.opLog = opLog;
+    }
+
+    private NavigableSet<Entry> getGenreRanking(int genreId) {
+        return genreRankings.computeIfAbsent(genreId, id -> new ConcurrentSkipListSet<>(ENTRY_ORDER));
+    }
+
+    private static void move(NavigableSet<Entry> ranking, Entry oldEntry, Entry entry) {
+        if (oldEntry == null) {
+            ranking.add(entry);
+        } else if (!oldEntry.equals(entry)) { //из рейтинга, где место не изменилось, фильм не пропадает ни на миг
+            ranking.remove(oldEntry);
+            ranking.add(entry);
+        }
+    }
+
+    //вызывается внутри likeCounts.compute - изменения рейтингов одного фильма не перемешиваются
+    private void rank(long filmId, Integer oldLikeCount, int[] oldGenreIds, int likeCount, int[] genreIds) {
+        Entry oldEntry = oldLikeCount == null ? null : new Entry(oldLikeCount, filmId);
+        Entry entry = new Entry(likeCount, filmId);
+        move(ranking, oldEntry, entry);
+
+        for (int genreId : oldGenreIds) {
+            if (oldEntry != null && Arrays.binarySearch(genreIds, genreId) < 0) {
+                getGenreRanking(genreId).remove(oldEntry);
+            }
+        }
+
+        for (int genreId : genreIds) {
+            move(getGenreRanking(genreId), Arrays.binarySearch(oldGenreIds, genreId) < 0 ? null : oldEntry, entry);
+        }
+    }
+
+    private void setLikeCount(long filmId, int likeCount) {
+        likeCounts.compute(filmId, (id, oldLikeCount) -> {
+            int[] genreIds = filmGenreIds.getOrDefault(id, NO_GENRES);
+            rank(id, oldLikeCount, genreIds, likeCount, genreIds);
+            return likeCount;
+        });
+    }
+
+    private void changeLikeCount(long filmId, int delta) {
+        likeCounts.compute(filmId, (id, oldLikeCount) -> {
+            int likeCount = oldLikeCount == null ? delta : oldLikeCount + delta;
+            int[] genreIds = filmGenreIds.getOrDefault(id, NO_GENRES);
+            rank(id, oldLikeCount, genreIds, likeCount, genreIds);
+            return likeCount;
+        });
+    }
+
+    @Override
+    public boolean add(long filmId, long userId) {
+        try (OpLog.Commit commit = opLog.begin()) {
+            Lock lock = locks.lock(userId); //в журнал и в память - в одном порядке для пользователя
+
+            try {
+                long[] filmIds = likedFilmIds.get(userId);
+                long[] result = SortedLongArrays.insert(filmIds, filmId);
+
+                if (result == filmIds) {
+                    return false; //повторный лайк
+                }
+
+                commit.append(out -> out.putByte(OpLog.LIKE_ADD).putLong(filmId).putLong(userId));
+                commit.await(); //лайк виден только после записи в журнал
+                likedFilmIds.put(userId, result);
+                changeLikeCount(filmId, 1);
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public boolean delete(long filmId, long userId) {
+        try (OpLog.Commit commit = opLog.begin()) {
+            Lock lock = locks.lock(userId);
+
+            try {
+                long[] filmIds = likedFilmIds.get(userId);
+
+                if (filmIds == null || !SortedLongArrays.contains(filmIds, filmId)) {
+                    return false;
+                }
+
+                commit.append(out -> out.putByte(OpLog.LIKE_DELETE).putLong(filmId).putLong(userId));
+                commit.await();
+                long[] remaining = SortedLongArrays.remove(filmIds, filmId);
+
+                if (remaining == null) {
+                    likedFilmIds.remove(userId); //пустые массивы не храним
+                } else {
+                    likedFilmIds.put(userId, remaining);
+                }
+
+                changeLikeCount(filmId, -1);
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public boolean isLiked(long filmId, long userId) {
+        return SortedLongArrays.contains(likedFilmIds.getOrDefault(userId, SortedLongArrays.EMPTY), filmId);
+    }
+
+    @Override
+    public int reconcileLikeCounts() {
+        Map<Long, int[]> actualLikeCounts = new HashMap<>(likeCounts.size() * 2);
+        likeCounts.keySet().forEach(filmId -> actualLikeCounts.put(filmId, new int[1]));
+        likedFilmIds.values().forEach(filmIds -> {
+            for (long filmId : filmIds) {
+                int[] likeCount = actualLikeCounts.get(filmId); //счётчик в массиве - без упаковки на каждый лайк
+
+                if (likeCount != null) {
+                    likeCount[0]++;
+                }
+            }
+        });
+        int reconciled = 0;
+
+        for (Map.Entry<Long, int[]> entry : actualLikeCounts.entrySet()) {
+            Integer storedLikeCount = likeCounts.get(entry.getKey());
+
+            if (storedLikeCount != null && storedLikeCount != entry.getValue()[0]) {
+                setLikeCount(entry.getKey(), entry.getValue()[0]);
+                reconciled++;
+            }
+        }
+
+        return reconciled;
+    }
+
+    @Override
+    public Map<Long, Integer> getLikeCounts() {
+        return new HashMap<>(likeCounts);
+    }
+
+    @Override
+    public Map<Long, long[]> getLikedFilmIds() {
+        return new HashMap<>(likedFilmIds); //массивы неизменяемы, копируем только ссылки
+    }
+
+    void lockAll() {
+        locks.lockAll();
+    }
+
+    void unlockAll() {
+        locks.unlockAll();
+    }
+
+    //при добавлении и изменении фильма: лайки сохраняются, меняются только рейтинги жанров
+    void setFilmGenres(long filmId, int[] genreIds) {
+        likeCounts.compute(filmId, (id, oldLikeCount) -> {
+            int[] oldGenreIds = filmGenreIds.put(id, genreIds);
+            int likeCount = oldLikeCount == null ? 0 : oldLikeCount;
+            rank(id, oldLikeCount, oldGenreIds == null ? NO_GENRES : oldGenreIds, likeCount, genreIds);
+            return likeCount;
+        });
+    }
+
+    void restore(long userId, long[] filmIds) {
+        likedFilmIds.put(userId, filmIds); //счётчики пересчитываются один раз после загрузки снимка
+    }
+
+    private static List<Long> getTopFilmIds(NavigableSet<Entry> ranking, int count) {
+        List<Long> filmIds = new ArrayList<>(count);
+
+        for (Entry entry : ranking) { //обход по убыванию лайков останавливается на count фильмах
+            if (filmIds.size() == count) {
+                break;
+            }
+
+            filmIds.add(entry.getFilmId());
+        }
+
+        return filmIds;
+    }
+
+    List<Long> getTopFilmIds(int count) {
+        return getTopFilmIds(ranking, Math.min(count, likeCounts.size()));
+    }
+
+    List<Long> getTopFilmIdsByGenre(int count, int genreId) {
+        NavigableSet<Entry> genreRanking = genreRankings.get(genreId);
+        return genreRanking == null ? List.of() : getTopFilmIds(genreRanking, Math.min(count, likeCounts.size()));
+    }
+
+    private static boolean isHigher(int likeCount, long filmId, int otherLikeCount, long otherFilmId) {
+        return likeCount > otherLikeCount || likeCount == otherLikeCount && filmId < otherFilmId;
+    }
+
+    List<Long> getTopFilmIds(int count, Collection<Long> candidateIds) {
+        //для выборочных фильтров дешевле отобрать лучших кандидатов, чем обходить рейтинг;
+        //отобранные держим упорядоченными в примитивных массивах - без объекта на каждого кандидата
+        int capacity = Math.min(count, candidateIds.size());
+        long[] topFilmIds = new long[capacity];
+        int[] topLikeCounts = new int[capacity];
+        int size = 0;
+
+        for (Long filmId : candidateIds) {
+            Integer likeCount = likeCounts.get(filmId);
+
+            if (likeCount == null || size == capacity && (capacity == 0
+                    || !isHigher(likeCount, filmId, topLikeCounts[size - 1], topFilmIds[size - 1]))) {
+                continue; //фильм удалён или не выше худшего из отобранных
+            }
+
+            int i = size == capacity ? size - 1 : size++;
+
+            for (; i > 0 && isHigher(likeCount, filmId, topLikeCounts[i - 1], topFilmIds[i - 1]); i--) {
+                topFilmIds[i] = topFilmIds[i - 1];
+                topLikeCounts[i] = topLikeCounts[i - 1];
+            }
+
+            topFilmIds[i] = filmId;
+            topLikeCounts[i] = likeCount;
+        }
+
+        List<Long> filmIds = new ArrayList<>(size);
+
+        for (int i = 0; i < size; i++) {
+            filmIds.add(topFilmIds[i]);
+        }
+
+        return filmIds;
+    }
+
+    void deleteAllFilms() {
+        likedFilmIds.clear(); //лайки удаляются вместе с фильмами, как ON DELETE CASCADE
+        likeCounts.clear();
+        ranking.clear();
+        filmGenreIds.clear();
+        genreRankings.clear();
+    }
+
+    void deleteAllUsers() {
+        likedFilmIds.clear();
+        likeCounts.keySet().forEach(filmId -> setLikeCount(filmId, 0));
+    }
+}
@@ -0,0 +1,60 @@
+package ru.yandex.practicum.filmorate.storage.memory;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+
+import java.nio.ByteBuffer;
+
+@Component
+@Profile("memory")
+public class InMemoryUserStorage extends InMemoryItemStorage<User> implements UserStorage {
+    private final InMemoryLikeStorage likeStorage;
+    private final InMemoryFriendStorage friendStorage;
+
+    public InMemoryUserStorage(InMemoryLikeStorage likeStorage, InMemoryFriendStorage friendStorage, OpLog opLog) {
+        super("пользователь", OpLog.USERS, opLog);
+        this.likeStorage = likeStorage;
+        this.friendStorage = friendStorage;
+    }
+
+    @Override
+    protected User normalize(User user) {
+        return user.withName(user.getName()); //в БД пустое имя сохраняется уже замененным на логин
+    }
+
+    @Override
+    void write(RecordBuffer out, User user) {
+        out
+                .putLong(user.getId())
+                .putString(user.getEmail())
+                .putString(user.getLogin())
+                .putString(user.getName())
+                .putDate(user.getBirthday());
+    }
+
+    @Override
+    User read(ByteBuffer in) {
+        return new User(in.getLong(), RecordBuffer.getString(in), RecordBuffer.getString(in),
+                RecordBuffer.getString(in), RecordBuffer.getDate(in));
+    }
+
+    @Override
+    protected void lockDependents() {
+        friendStorage.lockAll();
+        likeStorage.lockAll();
+    }
+
+    @Override
+    protected void unlockDependents() {
+        likeStorage.unlockAll();
+        friendStorage.unlockAll();
+    }
+
+    @Override
+    protected void onDeletedAll() {
+        friendStorage.clear(); //дружба и лайки удаляются вместе с пользователями, как ON DELETE CASCADE
+        likeStorage.deleteAllUsers();
+    }
+}
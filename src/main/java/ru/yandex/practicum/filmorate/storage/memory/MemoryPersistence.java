@@ -0,0 +1,284 @@
+package ru.yandex.practicum.filmorate.storage.memory;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+
+@Slf4j
+@Component
+@Profile("memory")
+public class MemoryPersistence {
+    private static final int SNAPSHOT_MAGIC = 0x464C4D53;
+    private static final int SNAPSHOT_FORMAT = 1;
+    private static final String SNAPSHOT_FILE = "snapshot.bin";
+    private final OpLogProperties properties;
+    private final OpLog opLog;
+    private final InMemoryFilmStorage filmStorage;
+    private final InMemoryUserStorage userStorage;
+    private final InMemoryLikeStorage likeStorage;
+    private final InMemoryFriendStorage friendStorage;
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "memory-log-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Path dir;
+    private FileChannel lockChannel;
+    private FileLock lock;
+
+    private static class State {
+        private final long segment;
+        private final InMemoryItemStorage.Snapshot<Film> films;
+        private final InMemoryItemStorage.Snapshot<User> users;
+        private final Map<Long, long[]> likedFilmIds;
+        private final Map<Long, long[]> friendIds;
+
+        private State(long segment, InMemoryItemStorage.Snapshot<Film> films, InMemoryItemStorage.Snapshot<User> users,
+                      Map<Long, long[]> likedFilmIds, Map<Long, long[]> friendIds) {
+            this.segment = segment;
+            this.films = films;
+            this.users = users;
+            this.likedFilmIds = likedFilmIds;
+            this.friendIds = friendIds;
+        }
+    }
+
+    public MemoryPersistence(OpLogProperties properties, OpLog opLog, InMemoryFilmStorage filmStorage,
+                             InMemoryUserStorage userStorage, InMemoryLikeStorage likeStorage,
+                             InMemoryFriendStorage friendStorage) {
+        this.properties = properties;
+        this.opLog = opLog;
+        this.filmStorage = filmStorage;
+        this.userStorage = userStorage;
+        this.likeStorage = likeStorage;
+        this.friendStorage = friendStorage;
+    }
+
+    //снимок + хвост журнала; индексы сервисов строятся позже, по ApplicationReadyEvent
+    @PostConstruct
+    public void recover() throws IOException {
+        if (!properties.isEnabled()) {
+            return;
+        }
+
+        dir = Paths.get(properties.getDir());
+        Files.createDirectories(dir);
+        lockDir();
+        long startNanos = System.nanoTime();
+        long snapshotSegment = readSnapshot();
+        long nextSegment = snapshotSegment;
+        long records = 0;
+
+        for (long segment : OpLog.listSegments(dir)) {
+            if (segment >= snapshotSegment) {
+                records += replay(OpLog.getSegmentPath(dir, segment));
+                nextSegment = segment + 1; //дописывать в сегмент с оборванной записью нельзя - начинаем новый
+            }
+        }
+
+        opLog.open(dir, nextSegment, () -> compactor.execute(this::compactQuietly));
+        opLog.deleteSegmentsBefore(snapshotSegment); //остались, если прошлое сжатие прервалось
+        log.info("memory log: recovered {} films, {} users, {} log records in {} ms",
+                filmStorage.size(), userStorage.size(), records,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+
+        if (records > 0) {
+            compactor.execute(this::compactQuietly); //иначе каждый перезапуск оставлял бы ещё один сегмент
+        }
+    }
+
+    private void lockDir() throws IOException {
+        lockChannel = FileChannel.open(dir.resolve("lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+
+        try {
+            lock = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null;
+        }
+
+        if (lock == null) {
+            lockChannel.close();
+            throw new IllegalStateException(String.format("каталог журнала %s уже используется", dir));
+        }
+    }
+
+    private long readSnapshot() throws IOException {
+        Path path = dir.resolve(SNAPSHOT_FILE);
+
+        if (!Files.exists(path)) {
+            return 0;
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IllegalStateException(String.format("снимок %s больше 2 ГБ", path));
+            }
+
+            int size = (int) channel.size();
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            CRC32 crc = new CRC32();
+            crc.update(in.duplicate().limit(size - 4));
+
+            //снимок пишется во временный файл и подменяется атомарно - повреждение означает сбой диска
+            if (size < 20 || in.getInt(size - 4) != (int) crc.getValue()
+                    || in.getInt() != SNAPSHOT_MAGIC || in.getInt() != SNAPSHOT_FORMAT) {
+                throw new IllegalStateException(String.format("снимок %s повреждён", path));
+            }
+
+            long segment = in.getLong();
+            filmStorage.readSnapshot(in);
+            userStorage.readSnapshot(in);
+            readEdges(in, likeStorage::restore);
+            likeStorage.reconcileLikeCounts(); //один проход по всем лайкам вместо инкремента на каждый
+            readEdges(in, friendStorage::restore);
+            return segment;
+        }
+    }
+
+    private static void readEdges(ByteBuffer in, BiConsumer<Long, long[]> consumer) {
+        for (int i = in.getInt(); i > 0; i--) {
+            consumer.accept(in.getLong(), RecordBuffer.getLongs(in));
+        }
+    }
+
+    private long replay(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            CRC32 crc = new CRC32();
+            long records = 0;
+            int end = 0;
+
+            while (in.remaining() >= 4) {
+                int length = in.getInt();
+
+                if (length <= 0 || in.remaining() < length + 4) {
+                    break;
+                }
+
+                ByteBuffer record = in.slice().limit(length);
+                crc.reset();
+                crc.update(record.duplicate());
+                in.position(end + 4 + length);
+
+                if (in.getInt() != (int) crc.getValue()) {
+                    break;
+                }
+
+                apply(record);
+                records++;
+                end = in.position();
+            }
+
+            if (end < in.limit()) { //запись оборвалась при сбое - клиент не получил по ней ответа
+                log.warn("memory log: {} ends with {} bytes of incomplete record, ignored", path, in.limit() - end);
+            }
+
+            return records;
+        }
+    }
+
+    private InMemoryItemStorage<?> getItemStorage(byte itemType) {
+        return itemType == OpLog.FILMS ? filmStorage : userStorage;
+    }
+
+    private void apply(ByteBuffer in) {
+        byte operation = in.get();
+
+        switch (operation) {
+            case OpLog.PUT:
+                getItemStorage(in.get()).restore(in);
+                break;
+            case OpLog.DELETE_ALL:
+                getItemStorage(in.get()).deleteAll(); //журнал ещё не открыт - повторно не записывается
+                break;
+            case OpLog.LIKE_ADD:
+                likeStorage.add(in.getLong(), in.getLong());
+                break;
+            case OpLog.LIKE_DELETE:
+                likeStorage.delete(in.getLong(), in.getLong());
+                break;
+            case OpLog.FRIEND_ADD:
+                friendStorage.add(in.getLong(), in.getLong());
+                break;
+            case OpLog.FRIEND_DELETE:
+                friendStorage.delete(in.getLong(), in.getLong());
+                break;
+            default:
+                throw new IllegalStateException("неизвестная операция в журнале: " + operation);
+        }
+    }
+
+    public synchronized void compact() throws IOException {
+        if (dir == null) {
+            throw new IllegalStateException("журнал операций выключен");
+        }
+
+        long startNanos = System.nanoTime();
+        State state = opLog.rotate(segment -> new State(segment, filmStorage.capture(), userStorage.capture(),
+                likeStorage.getLikedFilmIds(), friendStorage.getFriendIds()));
+        Path tempPath = dir.resolve(SNAPSHOT_FILE + ".tmp");
+
+        try (SnapshotWriter out = new SnapshotWriter(tempPath)) {
+            out.buffer().putInt(SNAPSHOT_MAGIC).putInt(SNAPSHOT_FORMAT).putLong(state.segment);
+            filmStorage.writeSnapshot(state.films, out);
+            userStorage.writeSnapshot(state.users, out);
+            out.writeEdges(state.likedFilmIds);
+            out.writeEdges(state.friendIds);
+            out.finish();
+        }
+
+        Files.move(tempPath, dir.resolve(SNAPSHOT_FILE),
+                StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        opLog.deleteSegmentsBefore(state.segment);
+        log.info("memory log: snapshot before segment {} written in {} ms", state.segment,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+    }
+
+    private void compactQuietly() {
+        try {
+            compact();
+        } catch (IOException | RuntimeException e) {
+            log.error("memory log: snapshot failed, log keeps growing", e); //данные целы - они в журнале
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        compactor.shutdown();
+
+        try {
+            compactor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        opLog.close();
+
+        if (lock != null) {
+            lock.release();
+            lockChannel.close();
+        }
+    }
+}
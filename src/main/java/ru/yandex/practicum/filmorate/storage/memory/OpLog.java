@@ -0,0 +1,351 @@
+package ru.yandex.practicum.filmorate.storage.memory;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+@Slf4j
+@Component
+@Profile("memory")
+public class OpLog {
+    //запись журнала: длина (int), тип операции (byte), данные, CRC32 типа и данных (int)
+    static final byte PUT = 1;
+    static final byte DELETE_ALL = 3;
+    static final byte LIKE_ADD = 4;
+    static final byte LIKE_DELETE = 5;
+    static final byte FRIEND_ADD = 6;
+    static final byte FRIEND_DELETE = 7;
+    static final byte FILMS = 1;
+    static final byte USERS = 2;
+    private static final Commit NO_COMMIT = new Commit(null);
+    private final OpLogProperties properties;
+    private final ReadWriteLock rotationLock = new ReentrantReadWriteLock(); //снимок не видит половину операции
+    private final Object mutex = new Object();
+    private final CRC32 crc = new CRC32();
+    private RecordBuffer pending = new RecordBuffer(64 * 1024);
+    private RecordBuffer spare = new RecordBuffer(64 * 1024);
+    private long appendedPosition; //позиции сквозные по всем сегментам
+    private long writtenPosition;
+    private long syncedPosition;
+    private long segmentSize;
+    private long segment;
+    private Path dir;
+    private FileChannel channel;
+    private FileChannel retiredChannel;
+    private IOException failure;
+    private Runnable onSegmentFull;
+    private boolean isCompactionRequested;
+    private boolean isClosed;
+    private volatile boolean isOpen;
+    private Thread writer;
+
+    public static class Commit implements AutoCloseable {
+        private final OpLog opLog;
+        private long position;
+
+        private Commit(OpLog opLog) {
+            this.opLog = opLog;
+        }
+
+        void append(Consumer<RecordBuffer> record) {
+            if (opLog != null) {
+                position = opLog.append(record);
+            }
+        }
+
+        //изменение применяется в памяти только после записи пакета на диск - если запись не удалась,
+        //ни читатели, ни следующий снимок его не увидят
+        void await() {
+            if (opLog != null && position > 0) {
+                opLog.await(position);
+                position = 0;
+            }
+        }
+
+        @Override
+        public void close() {
+            if (opLog == null) {
+                return;
+            }
+
+            try {
+                await();
+            } finally {
+                opLog.rotationLock.readLock().unlock(); //снимок снимается только после применения изменения
+            }
+        }
+    }
+
+    public OpLog(OpLogProperties properties) {
+        this.properties = properties;
+    }
+
+    static Path getSegmentPath(Path dir, long segment) {
+        return dir.resolve(String.format("oplog-%016d.bin", segment));
+    }
+
+    //вызывается после восстановления: до этого изменения хранилищ не журналируются
+    void open(Path dir, long segment, Runnable onSegmentFull) throws IOException {
+        this.dir = dir;
+        this.segment = segment;
+        this.onSegmentFull = onSegmentFull;
+        channel = openSegment(segment);
+        writer = new Thread(this::writeLoop, "memory-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+        isOpen = true;
+    }
+
+    FileChannel openSegment(long segment) throws IOException {
+        FileChannel segmentChannel = FileChannel.open(getSegmentPath(dir, segment),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        log.info("memory log: writing segment {}", segment);
+        return segmentChannel;
+    }
+
+    public Commit begin() {
+        if (!isOpen) {
+            return NO_COMMIT;
+        }
+
+        rotationLock.readLock().lock();
+
+        synchronized (mutex) {
+            if (failure != null || isClosed) {
+                rotationLock.readLock().unlock();
+                throw failed();
+            }
+        }
+
+        return new Commit(this);
+    }
+
+    private DataAccessResourceFailureException failed() {
+        return failure == null
+                ? new DataAccessResourceFailureException("журнал операций закрыт")
+                : new DataAccessResourceFailureException("журнал операций недоступен: " + failure.getMessage(), failure);
+    }
+
+    private long append(Consumer<RecordBuffer> record) {
+        synchronized (mutex) {
+            int start = pending.position();
+            pending.putInt(0);
+            record.accept(pending);
+            int end = pending.position();
+            crc.reset();
+            pending.updateCrc(crc, start + 4, end);
+            pending.putInt((int) crc.getValue());
+            pending.putIntAt(start, end - start - 4);
+            appendedPosition += pending.position() - start;
+            mutex.notifyAll();
+            return appendedPosition;
+        }
+    }
+
+    private void await(long position) {
+        boolean isSyncRequired = properties.getFsync() == OpLogProperties.Fsync.ALWAYS;
+
+        synchronized (mutex) {
+            while ((isSyncRequired ? syncedPosition : writtenPosition) < position) {
+                if (failure != null || writer == null || !writer.isAlive()) {
+                    throw failed();
+                }
+
+                waitQuietly(0);
+            }
+        }
+    }
+
+    private void waitQuietly(long timeoutMs) {
+        try {
+            mutex.wait(timeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DataAccessResourceFailureException("ожидание записи журнала прервано", e);
+        }
+    }
+
+    private boolean isSyncPending(long nextSyncNanos) {
+        return properties.getFsync() == OpLogProperties.Fsync.INTERVAL && writtenPosition > syncedPosition
+                && System.nanoTime() >= nextSyncNanos;
+    }
+
+    //пакет копится, пока пишется и синхронизируется предыдущий, - это и есть групповая фиксация
+    private void writeLoop() {
+        long syncIntervalNanos = properties.getFsyncInterval().toNanos();
+        long nextSyncNanos = System.nanoTime() + syncIntervalNanos;
+
+        try {
+            while (true) {
+                RecordBuffer batch;
+                long batchEnd;
+                FileChannel target;
+                FileChannel retired;
+
+                synchronized (mutex) {
+                    while (pending.position() == 0 && retiredChannel == null && !isClosed
+                            && !isSyncPending(nextSyncNanos)) {
+                        boolean hasUnsynced = properties.getFsync() == OpLogProperties.Fsync.INTERVAL
+                                && writtenPosition > syncedPosition;
+                        mutex.wait(hasUnsynced
+                                ? Math.max(1, TimeUnit.NANOSECONDS.toMillis(nextSyncNanos - System.nanoTime()))
+                                : 0);
+                    }
+
+                    if (pending.position() == 0 && retiredChannel == null && isClosed) {
+                        break;
+                    }
+
+                    batch = pending;
+                    pending = spare;
+                    spare = null;
+                    batchEnd = appendedPosition;
+                    target = channel;
+                    retired = retiredChannel;
+                    retiredChannel = null;
+                }
+
+                if (retired != null) {
+                    closeRetired(retired);
+                }
+
+                int batchSize = batch.position();
+                batch.writeTo(target);
+                boolean isSynced = properties.getFsync() == OpLogProperties.Fsync.ALWAYS && batchSize > 0;
+
+                if (isSynced || properties.getFsync() == OpLogProperties.Fsync.INTERVAL
+                        && System.nanoTime() >= nextSyncNanos) {
+                    target.force(false);
+                    isSynced = true;
+                    nextSyncNanos = System.nanoTime() + syncIntervalNanos;
+                }
+
+                boolean isSegmentFull;
+
+                synchronized (mutex) {
+                    spare = batch;
+                    writtenPosition = batchEnd;
+                    syncedPosition = isSynced ? batchEnd : syncedPosition;
+                    segmentSize += batchSize;
+                    isSegmentFull = segmentSize >= properties.getCompactAfter().toBytes() && !isCompactionRequested;
+                    isCompactionRequested |= isSegmentFull;
+                    mutex.notifyAll();
+                }
+
+                if (isSegmentFull) {
+                    onSegmentFull.run();
+                }
+            }
+
+            channel.force(false);
+            channel.close();
+            log.info("memory log: stopped at position {}", writtenPosition);
+        } catch (IOException e) {
+            log.error("memory log: write failed, further changes are rejected", e);
+
+            synchronized (mutex) {
+                failure = e;
+                mutex.notifyAll();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void closeRetired(FileChannel retired) throws IOException {
+        if (properties.getFsync() != OpLogProperties.Fsync.NEVER) {
+            retired.force(false);
+        }
+
+        retired.close();
+    }
+
+    //новые записи идут в следующий сегмент, capture снимает состояние ровно на границе сегментов
+    <R> R rotate(LongFunction<R> capture) throws IOException {
+        rotationLock.writeLock().lock();
+
+        try {
+            FileChannel next;
+
+            synchronized (mutex) {
+                while (writtenPosition < appendedPosition) {
+                    if (failure != null) {
+                        throw failed();
+                    }
+
+                    waitQuietly(0);
+                }
+
+                next = openSegment(segment + 1);
+                retiredChannel = channel; //закрывает писатель - он мог ещё синхронизировать прежний сегмент
+                channel = next;
+                segment++;
+                segmentSize = 0;
+                isCompactionRequested = false;
+                mutex.notifyAll();
+            }
+
+            return capture.apply(segment);
+        } finally {
+            rotationLock.writeLock().unlock();
+        }
+    }
+
+    static long getSegment(Path segmentPath) {
+        String fileName = segmentPath.getFileName().toString();
+        return fileName.startsWith("oplog-") && fileName.endsWith(".bin")
+                ? Long.parseLong(fileName.substring("oplog-".length(), fileName.length() - ".bin".length()))
+                : -1;
+    }
+
+    static List<Long> listSegments(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.list(dir)) {
+            return paths
+                    .map(OpLog::getSegment)
+                    .filter(segment -> segment >= 0)
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    void deleteSegmentsBefore(long segment) throws IOException {
+        for (long previous : listSegments(dir)) {
+            if (previous < segment) {
+                Files.delete(getSegmentPath(dir, previous)); //всё, что в них было, уже в снимке
+            }
+        }
+    }
+
+    void close() {
+        if (!isOpen) {
+            return;
+        }
+
+        synchronized (mutex) {
+            isClosed = true; //писатель дописывает накопленное и закрывает сегмент
+            mutex.notifyAll();
+        }
+
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
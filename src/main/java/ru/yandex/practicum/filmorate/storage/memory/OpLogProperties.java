@@ -0,0 +1,25 @@
+package ru.yandex.practicum.filmorate.storage.memory;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "filmorate.memory-log")
+public class OpLogProperties {
+    public enum Fsync {
+        ALWAYS, //запрос ждёт fsync пакета, в который попала его запись
+        INTERVAL, //запрос ждёт записи в файл, fsync не реже fsync-interval
+        NEVER //запрос ждёт записи в файл, сброс на диск - на усмотрение ОС
+    }
+
+    private boolean enabled = false;
+    private String dir = "./db/memory-log";
+    private Fsync fsync = Fsync.ALWAYS;
+    private Duration fsyncInterval = Duration.ofSeconds(1);
+    private DataSize compactAfter = DataSize.ofMegabytes(64); //размер сегмента журнала, после которого пишется снимок
+}
@@ -0,0 +1,117 @@
+package ru.yandex.practicum.filmorate.storage.memory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.zip.CRC32;
+
+class RecordBuffer {
+    private static final int NULL_LENGTH = -1;
+    private static final long NULL_DATE = Long.MIN_VALUE;
+    private ByteBuffer buffer;
+
+    RecordBuffer(int capacity) {
+        buffer = ByteBuffer.allocate(capacity);
+    }
+
+    private void ensureRemaining(int bytes) {
+        if (buffer.remaining() >= bytes) {
+            return;
+        }
+
+        ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+        buffer.flip();
+        grown.put(buffer);
+        buffer = grown;
+    }
+
+    RecordBuffer putByte(byte value) {
+        ensureRemaining(1);
+        buffer.put(value);
+        return this;
+    }
+
+    RecordBuffer putInt(int value) {
+        ensureRemaining(4);
+        buffer.putInt(value);
+        return this;
+    }
+
+    RecordBuffer putLong(long value) {
+        ensureRemaining(8);
+        buffer.putLong(value);
+        return this;
+    }
+
+    RecordBuffer putLongs(long[] values) {
+        ensureRemaining(4 + 8 * values.length);
+        buffer.putInt(values.length);
+        buffer.asLongBuffer().put(values);
+        buffer.position(buffer.position() + 8 * values.length);
+        return this;
+    }
+
+    RecordBuffer putString(String value) {
+        if (value == null) {
+            return putInt(NULL_LENGTH);
+        }
+
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ensureRemaining(4 + bytes.length);
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+        return this;
+    }
+
+    RecordBuffer putDate(LocalDate value) {
+        return putLong(value == null ? NULL_DATE : value.toEpochDay());
+    }
+
+    static long[] getLongs(ByteBuffer in) {
+        long[] values = new long[in.getInt()];
+        in.asLongBuffer().get(values); //из отображённого файла - одним копированием
+        in.position(in.position() + 8 * values.length);
+        return values;
+    }
+
+    static String getString(ByteBuffer in) {
+        int length = in.getInt();
+
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static LocalDate getDate(ByteBuffer in) {
+        long epochDay = in.getLong();
+        return epochDay == NULL_DATE ? null : LocalDate.ofEpochDay(epochDay);
+    }
+
+    int position() {
+        return buffer.position();
+    }
+
+    void putIntAt(int index, int value) {
+        buffer.putInt(index, value);
+    }
+
+    void updateCrc(CRC32 crc, int from, int to) {
+        crc.update(buffer.array(), from, to - from);
+    }
+
+    void writeTo(FileChannel channel) throws IOException {
+        buffer.flip();
+
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+
+        buffer.clear();
+    }
+}
@@ -0,0 +1,56 @@
+package ru.yandex.practicum.filmorate.storage.memory;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+class SnapshotWriter implements AutoCloseable {
+    private static final int FLUSH_SIZE = 1024 * 1024;
+    private final FileChannel channel;
+    private final RecordBuffer buffer = new RecordBuffer(FLUSH_SIZE + 64 * 1024);
+    private final CRC32 crc = new CRC32();
+
+    SnapshotWriter(Path path) throws IOException {
+        channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    RecordBuffer buffer() {
+        return buffer;
+    }
+
+    void flushIfFull() throws IOException {
+        if (buffer.position() >= FLUSH_SIZE) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.updateCrc(crc, 0, buffer.position());
+        buffer.writeTo(channel);
+    }
+
+    void writeEdges(Map<Long, long[]> edges) throws IOException {
+        buffer.putInt(edges.size());
+
+        for (Map.Entry<Long, long[]> entry : edges.entrySet()) {
+            buffer.putLong(entry.getKey()).putLongs(entry.getValue());
+            flushIfFull();
+        }
+    }
+
+    void finish() throws IOException {
+        flush();
+        buffer.putInt((int) crc.getValue()); //CRC32 всего снимка - в последних 4 байтах
+        buffer.writeTo(channel);
+        channel.force(true);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
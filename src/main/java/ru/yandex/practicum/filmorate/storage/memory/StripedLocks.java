@@ -0,0 +1,34 @@
+package ru.yandex.practicum.filmorate.storage.memory;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+//изменения одного id попадают в журнал и в память в одном порядке
+class StripedLocks {
+    private static final int STRIPES = 64;
+    private final Lock[] locks = new Lock[STRIPES];
+
+    StripedLocks() {
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    Lock lock(long id) {
+        Lock lock = locks[(int) (id & (STRIPES - 1))];
+        lock.lock();
+        return lock;
+    }
+
+    void lockAll() {
+        for (Lock lock : locks) { //всегда в одном порядке - два lockAll не ждут друг друга по кругу
+            lock.lock();
+        }
+    }
+
+    void unlockAll() {
+        for (Lock lock : locks) {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package ru.yandex.practicum.filmorate.storage.replica;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.function.Supplier;
+
+//чтения, результат которых переживает запрос (например, заполнение кэша), - только из основной БД:
+//реплика может отставать, и устаревшая строка осталась бы в кэше уже после инвалидации
+@Component
+public class PrimaryReads {
+    private final TransactionTemplate transactionTemplate;
+
+    public PrimaryReads(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        //транзакцию не открывает; вложенные SUPPORTS readOnly не меняют флаг, и маршрутизация выбирает основную БД
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_SUPPORTS);
+        transactionTemplate.setReadOnly(false);
+    }
+
+    public <T> T get(Supplier<T> reader) {
+        return transactionTemplate.execute(status -> reader.get());
+    }
+}
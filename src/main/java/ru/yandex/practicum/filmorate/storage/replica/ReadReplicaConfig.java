@@ -0,0 +1,55 @@
+package ru.yandex.practicum.filmorate.storage.replica;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+@Configuration
+@ConditionalOnProperty(prefix = "filmorate.read-replica", name = "enabled", havingValue = "true")
+public class ReadReplicaConfig {
+    private static HikariDataSource createPool(DataSourceProperties dataSourceProperties, String poolName,
+                                               String url) {
+        HikariDataSource pool = dataSourceProperties
+                .initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .url(url)
+                .build();
+        pool.setPoolName(poolName);
+        return pool;
+    }
+
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(DataSourceProperties dataSourceProperties,
+                                                             ReadReplicaProperties properties) {
+        if (properties.getUrls().isEmpty()) {
+            throw new IllegalStateException("filmorate.read-replica.urls: не задано ни одной реплики");
+        }
+
+        List<DataSource> replicas = new ArrayList<>();
+
+        for (String url : properties.getUrls()) {
+            replicas.add(createPool(dataSourceProperties, "replica-" + replicas.size(), url));
+        }
+
+        return new ReplicaRoutingDataSource(
+                createPool(dataSourceProperties, ReplicaRoutingDataSource.PRIMARY,
+                        dataSourceProperties.determineUrl()),
+                replicas,
+                properties.isStickyAfterWrite()
+        );
+    }
+
+    @Bean
+    @Primary //его берут JdbcTemplate, менеджер транзакций и инициализация схемы
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource); //соединение - при первом запросе, когда флаг readOnly уже известен
+    }
+}
@@ -0,0 +1,17 @@
+package ru.yandex.practicum.filmorate.storage.replica;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "filmorate.read-replica")
+public class ReadReplicaProperties {
+    private boolean enabled = false;
+    private List<String> urls = new ArrayList<>(); //драйвер, логин и пароль - как у основной БД
+    private boolean stickyAfterWrite = true; //после записи запрос читает только из основной БД
+}
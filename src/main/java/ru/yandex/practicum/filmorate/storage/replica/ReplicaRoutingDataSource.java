@@ -0,0 +1,86 @@
+package ru.yandex.practicum.filmorate.storage.replica;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//чтения внутри @Transactional(readOnly = true) - на реплику, всё остальное - на основную БД;
+//ключ выбирается при первом запросе соединения, поэтому снаружи нужен LazyConnectionDataSourceProxy
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+    static final String PRIMARY = "primary";
+    private static final String ROUTE_ATTRIBUTE = ReplicaRoutingDataSource.class.getName() + ".route";
+    private final List<DataSource> dataSources = new ArrayList<>();
+    private final List<String> replicaKeys = new ArrayList<>();
+    private final boolean isStickyAfterWrite;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+
+    public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas, boolean isStickyAfterWrite) {
+        this.isStickyAfterWrite = isStickyAfterWrite;
+        Map<Object, Object> targetDataSources = new HashMap<>();
+        targetDataSources.put(PRIMARY, primary);
+        dataSources.add(primary);
+
+        for (DataSource replica : replicas) {
+            String replicaKey = "replica-" + replicaKeys.size();
+            targetDataSources.put(replicaKey, replica);
+            replicaKeys.add(replicaKey);
+            dataSources.add(replica);
+        }
+
+        setTargetDataSources(targetDataSources);
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        RequestAttributes request = RequestContextHolder.getRequestAttributes(); //вне HTTP-запроса - null
+
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            if (request != null && isStickyAfterWrite) {
+                request.setAttribute(ROUTE_ATTRIBUTE, PRIMARY, RequestAttributes.SCOPE_REQUEST); //read-your-writes
+            }
+
+            return PRIMARY;
+        }
+
+        if (request == null) {
+            return getNextReplicaKey();
+        }
+
+        Object route = request.getAttribute(ROUTE_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+
+        if (route == null) { //все чтения запроса - с одной реплики, например версия для ETag и сам элемент
+            route = getNextReplicaKey();
+            request.setAttribute(ROUTE_ATTRIBUTE, route, RequestAttributes.SCOPE_REQUEST);
+        }
+
+        return route;
+    }
+
+    private String getNextReplicaKey() {
+        return replicaKeys.get(Math.floorMod(nextReplica.getAndIncrement(), replicaKeys.size()));
+    }
+
+    @Override
+    public void close() {
+        for (DataSource dataSource : dataSources) {
+            if (dataSource instanceof Closeable) {
+                try {
+                    ((Closeable) dataSource).close();
+                } catch (Exception e) {
+                    logger.warn("close failed: " + dataSource, e);
+                }
+            }
+        }
+    }
+}
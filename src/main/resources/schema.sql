@@ -14,7 +14,9 @@ CREATE TABLE IF NOT EXISTS mpa
     CONSTRAINT mpa_pk PRIMARY KEY (mpa_id),
     CONSTRAINT mpa_name_uq UNIQUE (mpa_name)
 );
-CREATE SEQUENCE IF NOT EXISTS films_seq;
+CREATE SEQUENCE IF NOT EXISTS item_versions_seq;
+CREATE SEQUENCE IF NOT EXISTS films_seq INCREMENT BY 100;
+ALTER SEQUENCE films_seq INCREMENT BY 100;
 CREATE TABLE IF NOT EXISTS films
 (
     film_id      BIGINT DEFAULT NEXT VALUE FOR films_seq,
@@ -23,18 +25,35 @@ CREATE TABLE IF NOT EXISTS films
     release_date DATE         NOT NULL,
     duration     INT          NOT NULL,
     mpa_id       INT,
+    like_count   INT DEFAULT 0 NOT NULL,
+    release_year INT GENERATED ALWAYS AS (EXTRACT(YEAR FROM release_date)),
+    version      BIGINT DEFAULT NEXT VALUE FOR item_versions_seq NOT NULL,
     CONSTRAINT films_pk PRIMARY KEY (film_id),
     CONSTRAINT films_mpa_fk FOREIGN KEY (mpa_id) REFERENCES mpa (mpa_id) ON DELETE RESTRICT
 );
+ALTER TABLE films ADD COLUMN IF NOT EXISTS like_count INT DEFAULT 0 NOT NULL;
+CREATE INDEX IF NOT EXISTS films_like_count_idx ON films (like_count DESC, film_id);
+ALTER TABLE films ADD COLUMN IF NOT EXISTS release_year INT GENERATED ALWAYS AS (EXTRACT(YEAR FROM release_date));
+CREATE INDEX IF NOT EXISTS films_release_year_idx ON films (release_year, like_count DESC, film_id);
+ALTER TABLE films ADD COLUMN IF NOT EXISTS version BIGINT DEFAULT NEXT VALUE FOR item_versions_seq NOT NULL;
 CREATE TABLE IF NOT EXISTS film_genres
 (
-    film_id  BIGINT,
-    genre_id INT,
+    film_id      BIGINT,
+    genre_id     INT,
+    like_count   INT DEFAULT 0 NOT NULL,
+    release_year INT,
     CONSTRAINT film_genres_pk PRIMARY KEY (film_id, genre_id),
     CONSTRAINT film_genres_film_fk FOREIGN KEY (film_id) REFERENCES films (film_id) ON DELETE CASCADE,
     CONSTRAINT film_genres_genre_fk FOREIGN KEY (genre_id) REFERENCES genres (genre_id) ON DELETE RESTRICT
 );
-CREATE SEQUENCE IF NOT EXISTS users_seq;
+ALTER TABLE film_genres ADD COLUMN IF NOT EXISTS like_count INT DEFAULT 0 NOT NULL;
+ALTER TABLE film_genres ADD COLUMN IF NOT EXISTS release_year INT;
+UPDATE film_genres fg SET (like_count, release_year) = (SELECT f.like_count, f.release_year FROM films f WHERE f.film_id = fg.film_id)
+WHERE release_year IS NULL;
+CREATE INDEX IF NOT EXISTS film_genres_popular_idx ON film_genres (genre_id, like_count DESC, film_id);
+CREATE INDEX IF NOT EXISTS film_genres_year_popular_idx ON film_genres (genre_id, release_year, like_count DESC, film_id);
+CREATE SEQUENCE IF NOT EXISTS users_seq INCREMENT BY 100;
+ALTER SEQUENCE users_seq INCREMENT BY 100;
 CREATE TABLE IF NOT EXISTS users
 (
     user_id   BIGINT DEFAULT NEXT VALUE FOR users_seq,
@@ -42,8 +61,10 @@ CREATE TABLE IF NOT EXISTS users
     login     VARCHAR(50)  NOT NULL,
     user_name VARCHAR(100),
     birthday  DATE         NOT NULL,
+    version   BIGINT DEFAULT NEXT VALUE FOR item_versions_seq NOT NULL,
     CONSTRAINT users_pk PRIMARY KEY (user_id)
 );
+ALTER TABLE users ADD COLUMN IF NOT EXISTS version BIGINT DEFAULT NEXT VALUE FOR item_versions_seq NOT NULL;
 CREATE TABLE IF NOT EXISTS likes
 (
     film_id BIGINT,
@@ -0,0 +1,94 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.service.index.FilmRecommender;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.LongConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Slf4j
+@Tag("benchmark")
+class FilmRecommenderBenchmarkTest {
+    private static final int USERS_COUNT = Integer.getInteger("benchmark.users", 1_000_000);
+    private static final int FILMS_COUNT = Integer.getInteger("benchmark.films", 100_000);
+    private static final int LIKES_PER_USER = 10;
+    private static final int REQUESTS = 2000;
+
+    private static long randomFilmId(Random random) {
+        //степенное распределение: небольшая часть фильмов собирает большинство лайков
+        return 1 + (long) (FILMS_COUNT * Math.pow(random.nextDouble(), 3));
+    }
+
+    private static Map<Long, long[]> createLikes(Random random) {
+        Map<Long, long[]> likedFilmIds = new HashMap<>(USERS_COUNT * 2);
+
+        for (long userId = 1; userId <= USERS_COUNT; userId++) {
+            long[] filmIds = new long[1 + random.nextInt(LIKES_PER_USER * 2)];
+
+            for (int i = 0; i < filmIds.length; i++) {
+                filmIds[i] = randomFilmId(random);
+            }
+
+            likedFilmIds.put(userId, Arrays.stream(filmIds).distinct().toArray());
+        }
+
+        return likedFilmIds;
+    }
+
+    private static long percentile(long[] sortedNanos, double percentile) {
+        return sortedNanos[(int) Math.min(sortedNanos.length - 1, Math.round(sortedNanos.length * percentile))];
+    }
+
+    private static long[] measure(LongConsumer request, Random random, int idBound) {
+        long[] nanos = new long[REQUESTS];
+
+        for (int i = 0; i < REQUESTS; i++) {
+            long id = 1 + random.nextInt(idBound);
+            long startNanos = System.nanoTime();
+            request.accept(id);
+            nanos[i] = System.nanoTime() - startNanos;
+        }
+
+        Arrays.sort(nanos);
+        return nanos;
+    }
+
+    private static void report(String name, long[] nanos) {
+        log.info(String.format("%s: p50 %.1f us, p99 %.1f us, max %.1f us", name,
+                percentile(nanos, 0.5) / 1e3, percentile(nanos, 0.99) / 1e3, nanos[REQUESTS - 1] / 1e3));
+    }
+
+    @Test
+    void recommendations_millionUsers_shouldStayFast() throws Exception {
+        Random random = new Random(42);
+        FilmRecommender filmRecommender = new FilmRecommender();
+        Map<Long, long[]> likedFilmIds = createLikes(random);
+
+        long startNanos = System.nanoTime();
+        filmRecommender.rebuild(likedFilmIds).get();
+        log.info(String.format("similar films for %d users x %d films built in %.1f s",
+                USERS_COUNT, FILMS_COUNT, (System.nanoTime() - startNanos) / 1e9));
+        likedFilmIds.clear();
+
+        long[] similarNanos = measure(filmId -> filmRecommender.getSimilarFilmIds(filmId, 10), random, FILMS_COUNT);
+        long[] recommendedNanos = measure(userId -> filmRecommender.getRecommendedFilmIds(userId, 10),
+                random, USERS_COUNT);
+        long[] coldNanos = measure(userId -> { //новый лайк сбрасывает похожие фильмы пользователя
+            filmRecommender.addLike(randomFilmId(random), userId);
+            filmRecommender.getRecommendedFilmIds(userId, 10);
+        }, random, USERS_COUNT);
+
+        report("similar films", similarNanos);
+        report("recommendations", recommendedNanos);
+        report("recommendations after like", coldNanos);
+        assertTrue(percentile(recommendedNanos, 0.99) < 100_000_000);
+        assertTrue(percentile(coldNanos, 0.99) < 500_000_000);
+    }
+}
@@ -0,0 +1,118 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.service.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.service.index.PopularityIndex;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Slf4j
+@Tag("benchmark")
+class FilmSearchIndexBenchmarkTest {
+    private static final int FILMS_COUNT = Integer.getInteger("benchmark.films", 1_000_000);
+    private static final int WORDS_COUNT = 50_000;
+    private static final int REQUESTS = 2000;
+    private static final String[] WORDS = createWords();
+
+    private static String[] createWords() {
+        String[] words = new String[WORDS_COUNT];
+        String letters = "абвгдеёжзиклмнопрстуфхцчшэюяabcdefghijklmnoprstuvwxyz";
+
+        for (int i = 0; i < WORDS_COUNT; i++) {
+            StringBuilder word = new StringBuilder();
+
+            for (int n = i + 1; n > 0; n /= letters.length()) {
+                word.append(letters.charAt(n % letters.length()));
+            }
+
+            words[i] = word.toString();
+        }
+
+        return words;
+    }
+
+    private static String randomWord(Random random) {
+        //степенное распределение: частые слова встречаются в сотнях тысяч фильмов
+        return WORDS[(int) (WORDS_COUNT * Math.pow(random.nextDouble(), 4))];
+    }
+
+    private static String randomText(Random random, int minWords, int maxWords) {
+        StringBuilder text = new StringBuilder();
+        int wordsCount = minWords + random.nextInt(maxWords - minWords + 1);
+
+        for (int i = 0; i < wordsCount; i++) {
+            text.append(i == 0 ? "" : " ").append(randomWord(random));
+        }
+
+        return text.toString();
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long percentile(long[] sortedNanos, double percentile) {
+        return sortedNanos[(int) Math.min(sortedNanos.length - 1, Math.round(sortedNanos.length * percentile))];
+    }
+
+    private static void measure(String name, FilmSearchIndex filmSearchIndex, Supplier<String> queries) {
+        long[] nanos = new long[REQUESTS];
+
+        for (int i = 0; i < REQUESTS; i++) {
+            String query = queries.get();
+            long startNanos = System.nanoTime();
+            filmSearchIndex.search(query, 10);
+            nanos[i] = System.nanoTime() - startNanos;
+        }
+
+        Arrays.sort(nanos);
+        log.info(String.format("%s: p50 %.1f us, p99 %.1f us, max %.1f us", name,
+                percentile(nanos, 0.5) / 1e3, percentile(nanos, 0.99) / 1e3, nanos[REQUESTS - 1] / 1e3));
+        assertTrue(percentile(nanos, 0.99) < 200_000_000);
+    }
+
+    @Test
+    void search_millionFilms_shouldStayFast() {
+        Random random = new Random(42);
+        PopularityIndex popularityIndex = new PopularityIndex();
+        FilmSearchIndex filmSearchIndex = new FilmSearchIndex(popularityIndex);
+        long memoryBefore = usedMemory();
+        long startNanos = System.nanoTime();
+
+        filmSearchIndex.rebuild(consumer -> {
+            for (long filmId = 1; filmId <= FILMS_COUNT; filmId++) {
+                consumer.accept(Film
+                        .builder()
+                        .id(filmId)
+                        .name(randomText(random, 1, 4))
+                        .description(randomText(random, 10, 25))
+                        .releaseDate(LocalDate.of(2000, 1, 1))
+                        .duration(100)
+                        .build());
+            }
+        });
+
+        log.info(String.format("search index for %d films (%d words) built in %.1f s, %.0f MB",
+                FILMS_COUNT, filmSearchIndex.getTermsCount(), (System.nanoTime() - startNanos) / 1e9,
+                (usedMemory() - memoryBefore) / 1e6));
+
+        for (long filmId = 1; filmId <= FILMS_COUNT; filmId += 7) {
+            popularityIndex.changeLikeCount(filmId, random.nextInt(100));
+        }
+
+        measure("one frequent word", filmSearchIndex, () -> randomWord(random));
+        measure("one uniform word", filmSearchIndex, () -> WORDS[random.nextInt(WORDS_COUNT)]);
+        measure("two words", filmSearchIndex, () -> randomWord(random) + " " + randomWord(random));
+        measure("three words", filmSearchIndex, () -> randomText(random, 3, 3));
+    }
+}
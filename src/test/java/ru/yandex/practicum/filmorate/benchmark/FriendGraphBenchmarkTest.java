@@ -0,0 +1,54 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.service.index.FriendGraph;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Slf4j
+@Tag("benchmark")
+class FriendGraphBenchmarkTest {
+    private static final int FRIENDS_COUNT = Integer.getInteger("benchmark.friends", 5000);
+    private static final int ITERATIONS = 10_000;
+
+    @Test
+    void getCommonFriendIds_thousandsOfFriends_shouldTakeMicroseconds() {
+        Random random = new Random(42);
+        Map<Long, long[]> friendIds = new HashMap<>();
+
+        for (long userId = 1; userId <= 2; userId++) {
+            long[] ids = new long[FRIENDS_COUNT];
+
+            for (int i = 0; i < FRIENDS_COUNT; i++) {
+                ids[i] = random.nextInt(FRIENDS_COUNT * 4);
+            }
+
+            friendIds.put(userId, ids);
+        }
+
+        FriendGraph friendGraph = new FriendGraph();
+        friendGraph.rebuild(friendIds);
+        long commonFriends = 0;
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            commonFriends += friendGraph.getCommonFriendIds(1, 2).length; //прогрев
+        }
+
+        long startNanos = System.nanoTime();
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            commonFriends += friendGraph.getCommonFriendIds(1, 2).length;
+        }
+
+        double micros = (System.nanoTime() - startNanos) / 1e3 / ITERATIONS;
+        log.info(String.format("common friends of 2 x %d friends: %.1f us", FRIENDS_COUNT, micros));
+        assertTrue(commonFriends > 0);
+        assertTrue(micros < 1000);
+    }
+}
@@ -0,0 +1,91 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.service.index.FriendGraph;
+import ru.yandex.practicum.filmorate.service.index.FriendSuggester;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Slf4j
+@Tag("benchmark")
+class FriendSuggesterBenchmarkTest {
+    private static final int USERS_COUNT = Integer.getInteger("benchmark.users", 100_000);
+    private static final int EDGES_PER_USER = 10;
+    private static final int REQUESTS = 2000;
+
+    private static Map<Long, long[]> createPowerLawGraph(Random random) {
+        long[] edgeEnds = new long[USERS_COUNT * EDGES_PER_USER * 2];
+        int edgeEndsCount = 0;
+        Map<Long, long[]> friendIds = new HashMap<>();
+
+        for (long userId = 1; userId <= USERS_COUNT; userId++) {
+            long[] ids = new long[EDGES_PER_USER];
+
+            for (int i = 0; i < EDGES_PER_USER; i++) {
+                //предпочтительное присоединение: чем больше у пользователя связей, тем чаще его выбирают
+                ids[i] = edgeEndsCount == 0 ? 1 + random.nextInt(USERS_COUNT) : edgeEnds[random.nextInt(edgeEndsCount)];
+                edgeEnds[edgeEndsCount++] = ids[i];
+                edgeEnds[edgeEndsCount++] = userId;
+            }
+
+            friendIds.put(userId, Arrays.stream(ids).distinct().toArray());
+        }
+
+        for (int i = 0; i < edgeEndsCount; i += 2) {
+            friendIds.merge(edgeEnds[i], new long[]{edgeEnds[i + 1]}, (a, b) -> { //обратные связи - источник «звёзд»
+                long[] merged = Arrays.copyOf(a, a.length + 1);
+                merged[a.length] = b[0];
+                return merged;
+            });
+        }
+
+        friendIds.replaceAll((userId, ids) -> Arrays.stream(ids).distinct().toArray());
+        return friendIds;
+    }
+
+    private static long percentile(long[] sortedNanos, double percentile) {
+        return sortedNanos[(int) Math.min(sortedNanos.length - 1, Math.round(sortedNanos.length * percentile))];
+    }
+
+    @Test
+    void suggest_powerLawGraph_shouldStayFastForHeavyUsers() {
+        Random random = new Random(42);
+        FriendGraph friendGraph = new FriendGraph();
+        friendGraph.rebuild(createPowerLawGraph(random));
+        long heaviestUserId = 1;
+
+        for (long userId = 1; userId <= USERS_COUNT; userId++) {
+            if (friendGraph.getFriendIds(userId).length > friendGraph.getFriendIds(heaviestUserId).length) {
+                heaviestUserId = userId;
+            }
+        }
+
+        FriendSuggester friendSuggester = new FriendSuggester(friendGraph);
+        long[] nanos = new long[REQUESTS];
+
+        for (int i = 0; i < REQUESTS; i++) {
+            long userId = i % 10 == 0 ? heaviestUserId : 1 + random.nextInt(USERS_COUNT);
+
+            if (i % 10 == 0) {
+                friendSuggester.onFriendsChanged(heaviestUserId); //без кэша - худший случай
+            }
+
+            long startNanos = System.nanoTime();
+            friendSuggester.suggest(userId, 10);
+            nanos[i] = System.nanoTime() - startNanos;
+        }
+
+        Arrays.sort(nanos);
+        log.info(String.format("suggestions on %d users (max %d friends): p50 %.1f us, p99 %.1f us, max %.1f us",
+                USERS_COUNT, friendGraph.getFriendIds(heaviestUserId).length,
+                percentile(nanos, 0.5) / 1e3, percentile(nanos, 0.99) / 1e3, nanos[REQUESTS - 1] / 1e3));
+        assertTrue(percentile(nanos, 0.99) < 100_000_000);
+    }
+}
@@ -0,0 +1,90 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.filmorate.controller.FilmController;
+import ru.yandex.practicum.filmorate.controller.TestUtils;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@Slf4j
+@Tag("benchmark")
+@SpringBootTest
+@AutoConfigureMockMvc
+class ImportBenchmarkTest {
+    private static final int FILMS_COUNT = Integer.getInteger("benchmark.films", 5000);
+    private final MockMvc mockMvc;
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    ImportBenchmarkTest(MockMvc mockMvc, ObjectMapper objectMapper) {
+        this.mockMvc = mockMvc;
+        this.objectMapper = objectMapper;
+    }
+
+    private List<Film> createFilms() {
+        List<Film> films = new ArrayList<>(FILMS_COUNT);
+
+        for (int i = 0; i < FILMS_COUNT; i++) {
+            films.add(Film
+                    .builder()
+                    .name("Film " + i)
+                    .description("Description " + i)
+                    .releaseDate(LocalDate.of(2000, 1, 1).plusDays(i % 3650))
+                    .duration(90 + i % 60)
+                    .mpa(new Mpa(1 + i % 5, null))
+                    .genres(new LinkedHashSet<>(Arrays.asList(new Genre(1 + i % 6, null))))
+                    .build());
+        }
+
+        return films;
+    }
+
+    private double getRowsPerSecond(long startNanos) {
+        return FILMS_COUNT * 1e9 / (System.nanoTime() - startNanos);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        TestUtils.performDelete(mockMvc, FilmController.BASE_PATH, status().isOk());
+    }
+
+    @Test
+    void addAll_shouldBeFasterThanSingleAdd() throws Exception {
+        List<Film> films = createFilms();
+
+        long startNanos = System.nanoTime();
+        for (Film film : films) {
+            TestUtils.performPost(mockMvc, FilmController.BASE_PATH, objectMapper.writeValueAsString(film), status().isOk());
+        }
+        double singleRowsPerSecond = getRowsPerSecond(startNanos);
+
+        TestUtils.performDelete(mockMvc, FilmController.BASE_PATH, status().isOk());
+
+        startNanos = System.nanoTime();
+        TestUtils.performPost(mockMvc, FilmController.BASE_PATH + "/batch", objectMapper.writeValueAsString(films),
+                status().isOk());
+        double batchRowsPerSecond = getRowsPerSecond(startNanos);
+
+        log.info(String.format("import %d films: single %.0f rows/s, batch %.0f rows/s",
+                FILMS_COUNT, singleRowsPerSecond, batchRowsPerSecond));
+        assertTrue(batchRowsPerSecond > singleRowsPerSecond);
+    }
+}
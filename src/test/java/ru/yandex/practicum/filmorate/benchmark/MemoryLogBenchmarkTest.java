@@ -0,0 +1,150 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.memory.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.memory.InMemoryFriendStorage;
+import ru.yandex.practicum.filmorate.storage.memory.InMemoryLikeStorage;
+import ru.yandex.practicum.filmorate.storage.memory.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.storage.memory.MemoryPersistence;
+import ru.yandex.practicum.filmorate.storage.memory.OpLog;
+import ru.yandex.practicum.filmorate.storage.memory.OpLogProperties;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Slf4j
+@Tag("benchmark")
+class MemoryLogBenchmarkTest {
+    private static final int FILMS_COUNT = 100_000;
+    private static final int USERS_COUNT = Integer.getInteger("benchmark.users", 100_000);
+    private static final int LIKES_PER_USER = 100;
+    private static final int TAIL_LIKES = 100_000;
+    private static final int WRITERS = 8;
+    @TempDir
+    Path dir;
+
+    private static class Storages {
+        private final InMemoryLikeStorage likeStorage;
+        private final InMemoryFilmStorage filmStorage;
+        private final InMemoryUserStorage userStorage;
+        private final MemoryPersistence persistence;
+
+        private Storages(OpLogProperties properties) {
+            OpLog opLog = new OpLog(properties);
+            InMemoryFriendStorage friendStorage = new InMemoryFriendStorage(opLog);
+            likeStorage = new InMemoryLikeStorage(opLog);
+            filmStorage = new InMemoryFilmStorage(likeStorage, null, null, opLog);
+            userStorage = new InMemoryUserStorage(likeStorage, friendStorage, opLog);
+            persistence = new MemoryPersistence(properties, opLog, filmStorage, userStorage, likeStorage,
+                    friendStorage);
+        }
+    }
+
+    private OpLogProperties createProperties() {
+        OpLogProperties properties = new OpLogProperties();
+        properties.setEnabled(true);
+        properties.setDir(dir.toString());
+        properties.setFsync(OpLogProperties.Fsync.ALWAYS);
+        return properties;
+    }
+
+    private static void fill(Storages storages) {
+        List<Film> films = new ArrayList<>(FILMS_COUNT);
+
+        for (long filmId = 1; filmId <= FILMS_COUNT; filmId++) {
+            films.add(Film
+                    .builder()
+                    .id(filmId)
+                    .name("Фильм " + filmId)
+                    .description("Описание фильма " + filmId)
+                    .releaseDate(LocalDate.of(1950 + (int) (filmId % 70), 1, 1))
+                    .duration(120)
+                    .mpa(new Mpa(1 + (int) (filmId % 5), null))
+                    .genres(Set.of(new Genre(1 + (int) (filmId % 6), null)))
+                    .build());
+        }
+
+        storages.filmStorage.addAll(films);
+        Random random = new Random(42);
+
+        for (long userId = 1; userId <= USERS_COUNT; userId++) {
+            storages.userStorage.add(new User(userId, "user" + userId + "@mail.ru", "user" + userId, null,
+                    LocalDate.of(1990, 1, 1)));
+
+            for (int i = 0; i < LIKES_PER_USER; i++) {
+                storages.likeStorage.add(1 + random.nextInt(FILMS_COUNT), userId);
+            }
+        }
+    }
+
+    private static long countLikes(Storages storages) {
+        return storages.likeStorage.getLikeCounts().values().stream().mapToLong(Integer::longValue).sum();
+    }
+
+    private Map<Long, Integer> write() throws Exception {
+        Storages storages = new Storages(createProperties());
+        fill(storages); //журнал ещё не открыт - заполняем без записи, а затем сохраняем снимком
+        storages.persistence.recover();
+        long startNanos = System.nanoTime();
+        storages.persistence.compact();
+        log.info(String.format("snapshot of %d likes written in %d ms", countLikes(storages),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos)));
+
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS);
+        List<Future<?>> writers = new ArrayList<>();
+        startNanos = System.nanoTime();
+
+        for (int writer = 0; writer < WRITERS; writer++) {
+            Random random = new Random(writer);
+            writers.add(executor.submit(() -> {
+                for (int i = 0; i < TAIL_LIKES / WRITERS; i++) {
+                    storages.likeStorage.add(1 + random.nextInt(FILMS_COUNT), 1 + random.nextInt(USERS_COUNT));
+                }
+            }));
+        }
+
+        for (Future<?> writer : writers) {
+            writer.get();
+        }
+
+        executor.shutdown();
+        log.info(String.format("%d likes from %d writers with fsync ALWAYS: %.0f likes/s", TAIL_LIKES, WRITERS,
+                TAIL_LIKES / ((System.nanoTime() - startNanos) / 1e9)));
+        storages.persistence.close();
+        return storages.likeStorage.getLikeCounts();
+    }
+
+    @Test
+    void recover_shouldLoadSnapshotAndTailWithinSeconds() throws Exception {
+        Map<Long, Integer> likeCounts = write(); //вторую копию 10 млн лайков держать незачем
+        System.gc(); //при настоящем перезапуске прежней копии в куче нет
+        Storages recovered = new Storages(createProperties());
+        long startNanos = System.nanoTime();
+        recovered.persistence.recover();
+        long recoveryMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        log.info(String.format("%d likes recovered in %d ms", countLikes(recovered), recoveryMs));
+
+        assertEquals(likeCounts, recovered.likeStorage.getLikeCounts());
+        assertTrue(recoveryMs < 5000);
+        recovered.persistence.close();
+    }
+}
@@ -0,0 +1,83 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.service.index.PrefixIndex;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Slf4j
+@Tag("benchmark")
+class PrefixIndexBenchmarkTest {
+    private static final int ITEMS_COUNT = Integer.getInteger("benchmark.items", 1_000_000);
+    private static final int REQUESTS = 5000;
+    private static final String LETTERS = "абвгдежзиклмнопрстуфхцчшэюяabcdefghijklmnoprstuvwxyz";
+
+    private static String randomTitle(Random random) {
+        StringBuilder title = new StringBuilder();
+        int length = 5 + random.nextInt(20);
+
+        for (int i = 0; i < length; i++) {
+            title.append(i % 7 == 6 ? ' ' : LETTERS.charAt((int) (LETTERS.length() * Math.pow(random.nextDouble(), 2))));
+        }
+
+        return title.toString();
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long percentile(long[] sortedNanos, double percentile) {
+        return sortedNanos[(int) Math.min(sortedNanos.length - 1, Math.round(sortedNanos.length * percentile))];
+    }
+
+    private static long[] measure(String name, PrefixIndex prefixIndex, Random random, int prefixLength) {
+        long[] nanos = new long[REQUESTS];
+
+        for (int i = 0; i < REQUESTS; i++) {
+            String prefix = randomTitle(random).substring(0, prefixLength);
+            long startNanos = System.nanoTime();
+            prefixIndex.lookup(prefix, 10);
+            nanos[i] = System.nanoTime() - startNanos;
+        }
+
+        Arrays.sort(nanos);
+        log.info(String.format("%s, prefix of %d chars: p50 %.1f us, p99 %.1f us, max %.1f us", name, prefixLength,
+                percentile(nanos, 0.5) / 1e3, percentile(nanos, 0.99) / 1e3, nanos[REQUESTS - 1] / 1e3));
+        return nanos;
+    }
+
+    @Test
+    void lookup_millionTitles_shouldTakeUnderMillisecond() {
+        Random random = new Random(42);
+        int[] likeCounts = new int[ITEMS_COUNT + 1];
+        PrefixIndex prefixIndex = new PrefixIndex(itemId -> likeCounts[(int) itemId]);
+        long memoryBefore = usedMemory();
+        long startNanos = System.nanoTime();
+
+        for (int itemId = 1; itemId <= ITEMS_COUNT; itemId++) {
+            prefixIndex.put(itemId, randomTitle(random));
+            likeCounts[itemId] = random.nextInt(1000);
+        }
+
+        log.info(String.format("prefix index for %d titles built in %.1f s, %.0f MB per million entries",
+                ITEMS_COUNT, (System.nanoTime() - startNanos) / 1e9,
+                (usedMemory() - memoryBefore - 4.0 * ITEMS_COUNT) / 1e6 * 1_000_000 / ITEMS_COUNT));
+
+        for (int prefixLength = 1; prefixLength <= 5; prefixLength += 2) {
+            measure("cold", prefixIndex, random, prefixLength);
+            ForkJoinPool.commonPool().awaitQuiescence(1, TimeUnit.MINUTES); //фоновый пересчёт списков коротких префиксов
+            long[] nanos = measure("warm", prefixIndex, random, prefixLength);
+            assertTrue(percentile(nanos, 0.99) < 1_000_000);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.LikeStorage;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+import ru.yandex.practicum.filmorate.storage.impl.FilmStorageImpl;
+import ru.yandex.practicum.filmorate.storage.impl.GenreStorageImpl;
+import ru.yandex.practicum.filmorate.storage.impl.LikeStorageImpl;
+import ru.yandex.practicum.filmorate.storage.impl.MpaStorageImpl;
+import ru.yandex.practicum.filmorate.storage.impl.UserStorageImpl;
+import ru.yandex.practicum.filmorate.storage.impl.WriteBehindProperties;
+import ru.yandex.practicum.filmorate.storage.memory.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.memory.InMemoryFriendStorage;
+import ru.yandex.practicum.filmorate.storage.memory.InMemoryLikeStorage;
+import ru.yandex.practicum.filmorate.storage.memory.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.storage.memory.OpLog;
+import ru.yandex.practicum.filmorate.storage.memory.OpLogProperties;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.IntConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Slf4j
+@Tag("benchmark")
+class StorageBenchmarkTest {
+    private static final int FILMS_COUNT = Integer.getInteger("benchmark.films", 100_000);
+    private static final int USERS_COUNT = Integer.getInteger("benchmark.users", 10_000);
+    private static final int LIKES_COUNT = 50_000;
+    private static final int REQUESTS = 2000;
+
+    private static DataSource createDataSource() {
+        DataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:storage_benchmark;DB_CLOSE_DELAY=-1", "sa", "");
+        ResourceDatabasePopulator populator = new ResourceDatabasePopulator(
+                new ClassPathResource("schema.sql"), new ClassPathResource("data.sql"));
+        populator.setSqlScriptEncoding(StandardCharsets.UTF_8.name());
+        populator.execute(dataSource);
+        return dataSource;
+    }
+
+    private static List<Film> createFilms(Random random) {
+        List<Film> films = new ArrayList<>(FILMS_COUNT);
+
+        for (long filmId = 1; filmId <= FILMS_COUNT; filmId++) {
+            films.add(Film
+                    .builder()
+                    .id(filmId)
+                    .name("Фильм " + filmId)
+                    .description("Описание фильма " + filmId)
+                    .releaseDate(LocalDate.of(1950 + random.nextInt(70), 1, 1))
+                    .duration(90 + random.nextInt(60))
+                    .mpa(new Mpa(1 + random.nextInt(5), null))
+                    .genres(Set.of(new Genre(1 + random.nextInt(6), null)))
+                    .build());
+        }
+
+        return films;
+    }
+
+    private static List<User> createUsers() {
+        List<User> users = new ArrayList<>(USERS_COUNT);
+
+        for (long userId = 1; userId <= USERS_COUNT; userId++) {
+            users.add(new User(userId, "user" + userId + "@mail.ru", "user" + userId, null,
+                    LocalDate.of(1990, 1, 1)));
+        }
+
+        return users;
+    }
+
+    private static long randomFilmId(Random random) {
+        //степенное распределение: небольшая часть фильмов собирает большинство лайков
+        return 1 + (long) (FILMS_COUNT * Math.pow(random.nextDouble(), 3));
+    }
+
+    private static void fill(FilmStorage filmStorage, UserStorage userStorage, LikeStorage likeStorage) {
+        Random random = new Random(42);
+        List<Film> films = createFilms(random);
+        List<User> users = createUsers();
+        long startNanos = System.nanoTime();
+
+        for (int from = 0; from < films.size(); from += 1000) {
+            filmStorage.addAll(films.subList(from, Math.min(from + 1000, films.size())));
+        }
+
+        for (int from = 0; from < users.size(); from += 1000) {
+            userStorage.addAll(users.subList(from, Math.min(from + 1000, users.size())));
+        }
+
+        Set<Long> likes = new HashSet<>();
+
+        while (likes.size() < LIKES_COUNT) {
+            long filmId = randomFilmId(random);
+            long userId = 1 + random.nextInt(USERS_COUNT / 2); //вторая половина пользователей ставит лайки в замерах
+
+            if (likes.add(filmId * USERS_COUNT + userId)) {
+                likeStorage.add(filmId, userId);
+            }
+        }
+
+        log.info(String.format("%s: %d films, %d users, %d likes loaded in %.1f s",
+                filmStorage.getClass().getSimpleName(), FILMS_COUNT, USERS_COUNT, LIKES_COUNT,
+                (System.nanoTime() - startNanos) / 1e9));
+    }
+
+    private static long percentile(long[] sortedNanos, double percentile) {
+        return sortedNanos[(int) Math.min(sortedNanos.length - 1, Math.round(sortedNanos.length * percentile))];
+    }
+
+    private static long[] measure(String name, IntConsumer request) {
+        long[] nanos = new long[REQUESTS];
+
+        for (int i = 0; i < REQUESTS; i++) {
+            long startNanos = System.nanoTime();
+            request.accept(i);
+            nanos[i] = System.nanoTime() - startNanos;
+        }
+
+        Arrays.sort(nanos);
+        log.info(String.format("%s: p50 %.1f us, p99 %.1f us, max %.1f us", name,
+                percentile(nanos, 0.5) / 1e3, percentile(nanos, 0.99) / 1e3, nanos[REQUESTS - 1] / 1e3));
+        return nanos;
+    }
+
+    private static long[][] run(String backend, FilmStorage filmStorage, LikeStorage likeStorage) {
+        Random random = new Random(7);
+        long[] getNanos = measure(backend + " get", i -> filmStorage.get(1 + random.nextInt(FILMS_COUNT)));
+        measure(backend + " get 10 by ids", i -> {
+            List<Long> filmIds = new ArrayList<>(10);
+
+            for (int n = 0; n < 10; n++) {
+                filmIds.add(1L + random.nextInt(FILMS_COUNT));
+            }
+
+            filmStorage.getByIds(filmIds);
+        });
+        long[] popularNanos = measure(backend + " popular by genre",
+                i -> filmStorage.getPopularFilms(10, 1 + random.nextInt(6), null));
+        long[] popularByYearNanos = measure(backend + " popular by genre and year",
+                i -> filmStorage.getPopularFilms(10, 1 + random.nextInt(6), 1950 + random.nextInt(70)));
+        measure(backend + " like and unlike", i -> {
+            long filmId = randomFilmId(random);
+            long userId = USERS_COUNT / 2 + 1 + i; //у этих пользователей лайков нет
+            likeStorage.add(filmId, userId);
+            likeStorage.delete(filmId, userId);
+        });
+        return new long[][]{getNanos, popularNanos, popularByYearNanos};
+    }
+
+    @Test
+    void storages_shouldReturnSameResultsAndInMemoryShouldBeFaster() {
+        DataSource dataSource = createDataSource();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        GenreStorageImpl genreStorage = new GenreStorageImpl(jdbcTemplate);
+        MpaStorageImpl mpaStorage = new MpaStorageImpl(jdbcTemplate);
+
+        FilmStorage jdbcFilmStorage = new FilmStorageImpl(jdbcTemplate);
+        LikeStorage jdbcLikeStorage = new LikeStorageImpl(jdbcTemplate, transactionTemplate, new WriteBehindProperties());
+        fill(jdbcFilmStorage, new UserStorageImpl(jdbcTemplate), jdbcLikeStorage);
+
+        OpLog opLog = new OpLog(new OpLogProperties()); //журнал не открыт - изменения не пишутся на диск
+        InMemoryLikeStorage memoryLikeStorage = new InMemoryLikeStorage(opLog);
+        InMemoryFilmStorage memoryFilmStorage = new InMemoryFilmStorage(memoryLikeStorage, genreStorage, mpaStorage, opLog);
+        memoryFilmStorage.loadReferences();
+        fill(memoryFilmStorage, new InMemoryUserStorage(memoryLikeStorage, new InMemoryFriendStorage(opLog), opLog),
+                memoryLikeStorage);
+
+        for (int genreId = 1; genreId <= 6; genreId++) {
+            assertEquals(jdbcFilmStorage.getPopularFilms(10, genreId, null),
+                    memoryFilmStorage.getPopularFilms(10, genreId, null));
+            assertEquals(jdbcFilmStorage.getPopularFilms(10, genreId, 1999),
+                    memoryFilmStorage.getPopularFilms(10, genreId, 1999));
+        }
+
+        assertEquals(jdbcLikeStorage.getLikeCounts(), memoryLikeStorage.getLikeCounts());
+
+        run("jdbc (прогрев)", jdbcFilmStorage, jdbcLikeStorage);
+        long[][] jdbcNanos = run("jdbc", jdbcFilmStorage, jdbcLikeStorage);
+        run("memory (прогрев)", memoryFilmStorage, memoryLikeStorage);
+        long[][] memoryNanos = run("memory", memoryFilmStorage, memoryLikeStorage);
+
+        for (int i = 0; i < jdbcNanos.length; i++) {
+            assertTrue(percentile(memoryNanos[i], 0.5) < percentile(jdbcNanos[i], 0.5));
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//реплика - отдельная пустая БД, в которую ничего не реплицируется: всё, что с неё прочитано, устарело
+@SpringBootTest(properties = {
+        "filmorate.read-replica.enabled=true",
+        "filmorate.read-replica.urls=jdbc:h2:mem:lagging-replica;DB_CLOSE_DELAY=-1;INIT=RUNSCRIPT FROM 'classpath:schema.sql'"
+})
+@AutoConfigureMockMvc
+class FilmControllerLaggingReplicaTest {
+    private final MockMvc mockMvc;
+    private final ObjectMapper objectMapper;
+    private final String path = FilmController.BASE_PATH;
+    private final Film testFilm = Film
+            .builder()
+            .id(666)
+            .name("The Matrix")
+            .description("Wake up, Neo...")
+            .releaseDate(LocalDate.of(1999, 3, 24))
+            .duration(136)
+            .mpa(new Mpa(4, "R"))
+            .genres(new LinkedHashSet<>(Arrays.asList(new Genre(1, "Комедия"), new Genre(6, "Боевик"))))
+            .build();
+
+    @Autowired
+    public FilmControllerLaggingReplicaTest(MockMvc mockMvc, ObjectMapper objectMapper) {
+        this.mockMvc = mockMvc;
+        this.objectMapper = objectMapper;
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        TestUtils.performDelete(mockMvc, path, status().isOk());
+    }
+
+    private MvcResult get(long filmId) throws Exception {
+        return TestUtils.performGet(mockMvc, path + "/" + filmId, status().isOk());
+    }
+
+    private Film getFilm(MvcResult result) throws Exception {
+        return objectMapper.readValue(result.getResponse().getContentAsString(), Film.class);
+    }
+
+    @Test
+    void add_update_get_shouldReturnFilmAndETagFromPrimary() throws Exception {
+        TestUtils.performPost(mockMvc, path, objectMapper.writeValueAsString(testFilm), status().isOk());
+        MvcResult result = get(testFilm.getId()); //кэш заполняется из основной БД, а не с пустой реплики
+        assertEquals(testFilm.toString(), getFilm(result).toString()); //equals сравнивает только id
+        String eTag = result.getResponse().getHeader(HttpHeaders.ETAG);
+        TestUtils.performGet(mockMvc, path + "/" + testFilm.getId(), eTag, status().isNotModified());
+
+        Film updatedFilm = testFilm.withName("The Matrix Reloaded");
+        TestUtils.performPut(mockMvc, path, objectMapper.writeValueAsString(updatedFilm), status().isOk());
+        result = get(testFilm.getId());
+        assertEquals(updatedFilm.getName(), getFilm(result).getName());
+        String updatedETag = result.getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotEquals(eTag, updatedETag); //версия из той же записи кэша, что и тело
+        TestUtils.performGet(mockMvc, path + "/" + testFilm.getId(), eTag, status().isOk());
+        TestUtils.performGet(mockMvc, path + "/" + testFilm.getId(), updatedETag, status().isNotModified());
+
+        String responseText = TestUtils.performGet(mockMvc, path, status().isOk())
+                .getResponse()
+                .getContentAsString();
+        assertEquals("[]", responseText); //некэшируемые чтения по-прежнему идут на отстающую реплику
+    }
+
+    @Test
+    void add_getPopularFilms_shouldCacheFilmsFromPrimary() throws Exception {
+        TestUtils.performPost(mockMvc, path, objectMapper.writeValueAsString(testFilm), status().isOk());
+        String responseText = TestUtils.performGet(mockMvc, path + "/popular", status().isOk())
+                .getResponse()
+                .getContentAsString();
+        assertEquals(List.of(testFilm), Arrays.asList(objectMapper.readValue(responseText, Film[].class)));
+    }
+}
@@ -0,0 +1,19 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.filmorate.service.FilmService;
+
+@SpringBootTest
+@ActiveProfiles("memory")
+@AutoConfigureMockMvc
+class FilmControllerMemoryTest extends FilmControllerTest {
+    @Autowired
+    public FilmControllerMemoryTest(MockMvc mockMvc, ObjectMapper objectMapper, FilmService filmService) {
+        super(mockMvc, objectMapper, filmService);
+    }
+}
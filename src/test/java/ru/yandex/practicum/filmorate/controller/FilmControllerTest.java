@@ -8,11 +8,14 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.filmorate.model.BatchItemResult;
+import ru.yandex.practicum.filmorate.model.CacheStats;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.Mpa;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.model.validation.ReleaseDateValidator;
+import ru.yandex.practicum.filmorate.service.FilmService;
 
 import java.time.LocalDate;
 import java.util.Arrays;
@@ -20,6 +23,8 @@ import java.util.LinkedHashSet;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
@@ -27,9 +32,10 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 class FilmControllerTest extends ItemControllerTest<Film> {
     private final Film testFilm;
     private final User testUser;
+    private final FilmService filmService;
 
     @Autowired
-    public FilmControllerTest(MockMvc mockMvc, ObjectMapper objectMapper) {
+    public FilmControllerTest(MockMvc mockMvc, ObjectMapper objectMapper, FilmService filmService) {
         super(mockMvc,
                 FilmController.BASE_PATH,
                 objectMapper,
@@ -46,6 +52,7 @@ class FilmControllerTest extends ItemControllerTest<Film> {
                 Film.class);
 
         this.testFilm = this.testItem;
+        this.filmService = filmService;
         this.testUser = User
                 .builder()
                 .id(777)
@@ -72,6 +79,32 @@ class FilmControllerTest extends ItemControllerTest<Film> {
         TestUtils.performPost(mockMvc, path, objectMapper.writeValueAsString(filmToAdd), status().isBadRequest());
     }
 
+    @Test
+    void addAll_oneFilmIsInvalid_shouldReturn200AndAddOthers() throws Exception {
+        Film invalidFilm = testFilm.withId(testFilm.getId() + 1).withName("");
+        Film filmWithUnknownMpa = testFilm.withId(testFilm.getId() + 2).withMpa(new Mpa(-1, null));
+        String jsonToSend = objectMapper.writeValueAsString(Arrays.asList(testFilm, invalidFilm, filmWithUnknownMpa));
+        String responseText = TestUtils.performPost(mockMvc, path + "/batch", jsonToSend, status().isOk())
+                .getResponse()
+                .getContentAsString();
+        List<BatchItemResult> results = objectMapper.readValue(responseText, new TypeReference<>() {
+        });
+
+        assertEquals(BatchItemResult.added(0, testFilm.getId()), results.get(0));
+        assertTrue(results.get(1).getError().startsWith("name"));
+        assertTrue(results.get(2).getError().contains("MPA"));
+        assertEquals(List.of(testFilm), filmService.getPopularFilms(10));
+    }
+
+    @Test
+    void add_mpaOrGenreNotFound_shouldReturn404() throws Exception {
+        Film filmWithUnknownMpa = testFilm.withMpa(new Mpa(100, null));
+        Film filmWithUnknownGenre = testFilm.withGenres(new LinkedHashSet<>(Arrays.asList(new Genre(100, null))));
+        TestUtils.performPost(mockMvc, path, objectMapper.writeValueAsString(filmWithUnknownMpa), status().isNotFound());
+        TestUtils.performPost(mockMvc, path, objectMapper.writeValueAsString(filmWithUnknownGenre), status().isNotFound());
+        TestUtils.performGet(mockMvc, path + "/" + testFilm.getId(), status().isNotFound());
+    }
+
     @Test
     void add_descriptionIs200Chars_shouldReturn200() throws Exception {
         Film filmToAdd = testFilm.withDescription(
@@ -240,4 +273,219 @@ class FilmControllerTest extends ItemControllerTest<Film> {
         TestUtils.performGet(mockMvc, path + "/popular?count=0", status().isBadRequest());
         TestUtils.performGet(mockMvc, path + "/popular?count=-1", status().isBadRequest());
     }
-}
\ No newline at end of file
+
+    @Test
+    void getPopularFilms_byGenreAndYear_shouldReturn200AndFilteredFilms() throws Exception {
+        long userId0 = testUser.getId();
+        long filmId0 = testFilm.getId();
+        long filmId1 = filmId0 + 1;
+        Film film1 = testFilm.withId(filmId1).withReleaseDate(LocalDate.of(2003, 5, 15));
+        TestUtils.performPost(mockMvc, UserController.BASE_PATH, objectMapper.writeValueAsString(testUser), status().isOk());
+        TestUtils.performPost(mockMvc, path, objectMapper.writeValueAsString(testFilm), status().isOk());
+        TestUtils.performPost(mockMvc, path, objectMapper.writeValueAsString(film1), status().isOk());
+        TestUtils.performPut(mockMvc, path + "/" + filmId1 + "/like/" + userId0, "", status().isOk());
+        int genreId = testFilm.getGenres().iterator().next().getId();
+        String responseText = TestUtils.performGet(mockMvc, path + "/popular?genreId=" + genreId, status().isOk())
+                .getResponse()
+                .getContentAsString();
+        assertEquals(List.of(film1, testFilm), objectMapper.readValue(responseText, typeOfList));
+
+        responseText = TestUtils.performGet(mockMvc, path + "/popular?genreId=" + genreId + "&year=1999", status().isOk())
+                .getResponse()
+                .getContentAsString();
+        assertEquals(List.of(testFilm), objectMapper.readValue(responseText, typeOfList));
+        TestUtils.performGet(mockMvc, path + "/popular?genreId=100", status().isNotFound());
+    }
+
+    @Test
+    void addLike_deleteAllUsers_getPopularFilmsByGenre_shouldReturn200AndIgnoreDeletedLikes() throws Exception {
+        long filmId1 = testFilm.getId() + 1;
+        Film film1 = testFilm.withId(filmId1);
+        TestUtils.performPost(mockMvc, UserController.BASE_PATH, objectMapper.writeValueAsString(testUser), status().isOk());
+        TestUtils.performPost(mockMvc, path, objectMapper.writeValueAsString(testFilm), status().isOk());
+        TestUtils.performPost(mockMvc, path, objectMapper.writeValueAsString(film1), status().isOk());
+        TestUtils.performPut(mockMvc, path + "/" + filmId1 + "/like/" + testUser.getId(), "", status().isOk());
+        String popularByGenrePath = path + "/popular?genreId=" + testFilm.getGenres().iterator().next().getId();
+        String responseText = TestUtils.performGet(mockMvc, popularByGenrePath, status().isOk())
+                .getResponse()
+                .getContentAsString();
+        assertEquals(List.of(film1, testFilm), objectMapper.readValue(responseText, typeOfList));
+
+        TestUtils.performDelete(mockMvc, UserController.BASE_PATH, status().isOk()); //лайки удаляются каскадно
+        responseText = TestUtils.performGet(mockMvc, popularByGenrePath, status().isOk())
+                .getResponse()
+                .getContentAsString();
+        assertEquals(List.of(testFilm, film1), objectMapper.readValue(responseText, typeOfList));
+    }
+
+    @Test
+    void getPopularFilms_yearBeforeFirstFilm_shouldReturn400() throws Exception {
+        TestUtils.performGet(mockMvc, path + "/popular?year=1800", status().isBadRequest());
+        TestUtils.performGet(mockMvc, path + "/popular?genreId=1&year=1800", status().isBadRequest());
+    }
+
+    @Test
+    void add_update_searchFilms_shouldReturn200AndMatchingFilms() throws Exception {
+        Film film1 = testFilm.withId(testFilm.getId() + 1).withName("The Matrix Reloaded").withDescription("Free your mind");
+        TestUtils.performPost(mockMvc, path, objectMapper.writeValueAsString(testFilm), status().isOk());
+        TestUtils.performPost(mockMvc, path, objectMapper.writeValueAsString(film1), status().isOk());
+        String responseText = TestUtils.performGet(mockMvc, path + "/search?q=MATRIX", status().isOk())
+                .getResponse()
+                .getContentAsString();
+        assertEquals(List.of(testFilm, film1), objectMapper.readValue(responseText, typeOfList));
+
+        TestUtils.performPut(mockMvc, path, objectMapper.writeValueAsString(film1.withName("Reloaded")), status().isOk());
+        responseText = TestUtils.performGet(mockMvc, path + "/search?q=matrix&limit=5", status().isOk())
+                .getResponse()
+                .getContentAsString();
+        assertEquals(List.of(testFilm), objectMapper.readValue(responseText, typeOfList));
+        TestUtils.performGet(mockMvc, path + "/search?q=", status().isBadRequest());
+    }
+
+    @Test
+    void addLike_autocomplete_shouldReturn200AndFilmsByPopularity() throws Exception {
+        Film film1 = testFilm.withId(testFilm.getId() + 1).withName("The Matrix Reloaded");
+        Film film2 = testFilm.withId(testFilm.getId() + 2).withName("Матрица");
+        TestUtils.performPost(mockMvc, UserController.BASE_PATH, objectMapper.writeValueAsString(testUser), status().isOk());
+        TestUtils.performPost(mockMvc, path, objectMapper.writeValueAsString(testFilm), status().isOk());
+        TestUtils.performPost(mockMvc, path, objectMapper.writeValueAsString(film1), status().isOk());
+        TestUtils.performPost(mockMvc, path, objectMapper.writeValueAsString(film2), status().isOk());
+        TestUtils.performPut(mockMvc, path + "/" + film1.getId() + "/like/" + testUser.getId(), "", status().isOk());
+        String responseText = TestUtils.performGet(mockMvc, path + "/autocomplete?prefix=the m", status().isOk())
+                .getResponse()
+                .getContentAsString();
+        assertEquals(List.of(film1, testFilm), objectMapper.readValue(responseText, typeOfList));
+
+        responseText = TestUtils.performGet(mockMvc, path + "/autocomplete?prefix=МАТ&limit=1", status().isOk())
+                .getResponse()
+                .getContentAsString();
+        assertEquals(List.of(film2), objectMapper.readValue(responseText, typeOfList));
+        TestUtils.performGet(mockMvc, path + "/autocomplete?prefix=", status().isBadRequest());
+    }
+
+    @Test
+    void addLike_deleteLike_getPopularFilms_shouldReturn200AndKeepPopularityIndexConsistent() throws Exception {
+        long userId0 = testUser.getId();
+        long userId1 = userId0 + 1;
+        long filmId0 = testFilm.getId();
+        long filmId1 = filmId0 + 1;
+        Film film1 = testFilm.withId(filmId1);
+        TestUtils.performPost(mockMvc, UserController.BASE_PATH, objectMapper.writeValueAsString(testUser), status().isOk());
+        TestUtils.performPost(mockMvc, UserController.BASE_PATH, objectMapper.writeValueAsString(testUser.withId(userId1)), status().isOk());
+        TestUtils.performPost(mockMvc, path, objectMapper.writeValueAsString(testFilm), status().isOk());
+        TestUtils.performPost(mockMvc, path, objectMapper.writeValueAsString(film1), status().isOk());
+        TestUtils.performPut(mockMvc, path + "/" + filmId1 + "/like/" + userId0, "", status().isOk());
+        TestUtils.performPut(mockMvc, path + "/" + filmId1 + "/like/" + userId1, "", status().isOk());
+        TestUtils.performPut(mockMvc, path + "/" + filmId0 + "/like/" + userId0, "", status().isOk());
+        TestUtils.performDelete(mockMvc, path + "/" + filmId1 + "/like/" + userId0, status().isOk());
+        TestUtils.performDelete(mockMvc, path + "/" + filmId1 + "/like/" + userId1, status().isOk());
+        String responseText = TestUtils.performGet(mockMvc, path + "/popular?count=2", status().isOk())
+                .getResponse()
+                .getContentAsString();
+        List<Film> actualPopularFilms = objectMapper.readValue(responseText, typeOfList);
+        assertEquals(Arrays.asList(testFilm, film1), actualPopularFilms);
+        assertTrue(filmService.checkPopularityIndex().isEmpty());
+
+        TestUtils.performDelete(mockMvc, UserController.BASE_PATH, status().isOk());
+        assertTrue(filmService.checkPopularityIndex().isEmpty());
+    }
+
+    @Test
+    void addLikeTwice_deleteMissingLike_shouldReturn200AndCountLikeOnce() throws Exception {
+        long userId = testUser.getId();
+        long filmId0 = testFilm.getId();
+        long filmId1 = filmId0 + 1;
+        Film film1 = testFilm.withId(filmId1);
+        TestUtils.performPost(mockMvc, UserController.BASE_PATH, objectMapper.writeValueAsString(testUser), status().isOk());
+        TestUtils.performPost(mockMvc, path, objectMapper.writeValueAsString(testFilm), status().isOk());
+        TestUtils.performPost(mockMvc, path, objectMapper.writeValueAsString(film1), status().isOk());
+        TestUtils.performPut(mockMvc, path + "/" + filmId1 + "/like/" + userId, "", status().isOk());
+        TestUtils.performPut(mockMvc, path + "/" + filmId1 + "/like/" + userId, "", status().isOk());
+        TestUtils.performDelete(mockMvc, path + "/" + filmId0 + "/like/" + userId, status().isOk());
+        TestUtils.performDelete(mockMvc, path + "/" + filmId0 + "/like/" + userId, status().isOk());
+        assertTrue(filmService.checkPopularityIndex().isEmpty()); //счётчики в индексе совпадают с БД
+
+        TestUtils.performDelete(mockMvc, path + "/" + filmId1 + "/like/" + userId, status().isOk());
+        String responseText = TestUtils.performGet(mockMvc, path + "/popular?count=2", status().isOk())
+                .getResponse()
+                .getContentAsString();
+        List<Film> actualPopularFilms = objectMapper.readValue(responseText, typeOfList);
+        assertEquals(Arrays.asList(testFilm, film1), actualPopularFilms); //у обоих фильмов снова 0 лайков
+        assertTrue(filmService.checkPopularityIndex().isEmpty());
+    }
+
+    @Test
+    void getPopularFilms_addLike_update_shouldReturn200AndInvalidateCachedFilms() throws Exception {
+        long filmId0 = testFilm.getId();
+        long filmId1 = filmId0 + 1;
+        Film film1 = testFilm.withId(filmId1);
+        Film updatedFilm0 = testFilm.withName("The Matrix Reloaded");
+        TestUtils.performPost(mockMvc, UserController.BASE_PATH, objectMapper.writeValueAsString(testUser), status().isOk());
+        TestUtils.performPost(mockMvc, path, objectMapper.writeValueAsString(testFilm), status().isOk());
+        TestUtils.performPost(mockMvc, path, objectMapper.writeValueAsString(film1), status().isOk());
+        assertEquals(List.of(testFilm, film1), getPopularFilms(2));
+        CacheStats statsBefore = filmService.getCacheStats();
+        assertEquals(List.of(testFilm, film1), getPopularFilms(2));
+        assertEquals(statsBefore.getHits() + 1, filmService.getCacheStats().getHits());
+
+        TestUtils.performPut(mockMvc, path + "/" + filmId1 + "/like/" + testUser.getId(), "", status().isOk());
+        assertEquals(List.of(film1, testFilm), getPopularFilms(2));
+
+        TestUtils.performGet(mockMvc, path + "/" + filmId0, status().isOk());
+        TestUtils.performPut(mockMvc, path, objectMapper.writeValueAsString(updatedFilm0), status().isOk());
+        String responseText = TestUtils.performGet(mockMvc, path + "/" + filmId0, status().isOk())
+                .getResponse()
+                .getContentAsString();
+        assertEquals(updatedFilm0.getName(), objectMapper.readValue(responseText, Film.class).getName());
+        assertEquals(updatedFilm0.getName(), getPopularFilms(2).get(1).getName());
+
+        responseText = TestUtils.performGet(mockMvc, path + "/cache", status().isOk())
+                .getResponse()
+                .getContentAsString();
+        assertTrue(objectMapper.readValue(responseText, CacheStats.class).getInvalidations() > 0);
+    }
+
+    private List<Film> getPopularFilms(int count) throws Exception {
+        String responseText = TestUtils.performGet(mockMvc, path + "/popular?count=" + count, status().isOk())
+                .getResponse()
+                .getContentAsString();
+        return objectMapper.readValue(responseText, typeOfList);
+    }
+
+    @Test
+    void addLike_getSimilarFilms_getRecommendedFilms_shouldReturn200AndFilmsByCoLikes() throws Exception {
+        long userId0 = testUser.getId();
+        long userId1 = userId0 + 1;
+        long filmId0 = testFilm.getId();
+        Film film1 = testFilm.withId(filmId0 + 1);
+        Film film2 = testFilm.withId(filmId0 + 2);
+        TestUtils.performPost(mockMvc, UserController.BASE_PATH, objectMapper.writeValueAsString(testUser), status().isOk());
+        TestUtils.performPost(mockMvc, UserController.BASE_PATH, objectMapper.writeValueAsString(testUser.withId(userId1)), status().isOk());
+
+        for (Film film : Arrays.asList(testFilm, film1, film2)) {
+            TestUtils.performPost(mockMvc, path, objectMapper.writeValueAsString(film), status().isOk());
+        }
+
+        TestUtils.performPut(mockMvc, path + "/" + filmId0 + "/like/" + userId0, "", status().isOk());
+        TestUtils.performPut(mockMvc, path + "/" + film1.getId() + "/like/" + userId0, "", status().isOk());
+        TestUtils.performPut(mockMvc, path + "/" + film2.getId() + "/like/" + userId0, "", status().isOk());
+        TestUtils.performPut(mockMvc, path + "/" + filmId0 + "/like/" + userId1, "", status().isOk());
+        TestUtils.performPut(mockMvc, path + "/" + film1.getId() + "/like/" + userId1, "", status().isOk());
+        List<Film> similarFilms = objectMapper.readValue(
+                TestUtils.performGet(mockMvc, path + "/" + filmId0 + "/similar", status().isOk())
+                        .getResponse()
+                        .getContentAsString(),
+                typeOfList
+        );
+        List<Film> recommendedFilms = objectMapper.readValue(
+                TestUtils.performGet(mockMvc, UserController.BASE_PATH + "/" + userId1 + "/recommendations", status().isOk())
+                        .getResponse()
+                        .getContentAsString(),
+                typeOfList
+        );
+
+        assertEquals(Arrays.asList(film1, film2), similarFilms); //film1 лайкнули оба пользователя, film2 - один
+        assertEquals(List.of(film2), recommendedFilms);
+        TestUtils.performGet(mockMvc, UserController.BASE_PATH + "/-1/recommendations", status().isNotFound());
+    }
+}
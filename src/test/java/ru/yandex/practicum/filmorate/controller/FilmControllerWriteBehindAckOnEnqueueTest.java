@@ -0,0 +1,21 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.filmorate.service.FilmService;
+
+@SpringBootTest(properties = {
+        "filmorate.write-behind.enabled=true",
+        "filmorate.write-behind.durability=ACK_ON_ENQUEUE"
+})
+@AutoConfigureMockMvc
+class FilmControllerWriteBehindAckOnEnqueueTest extends FilmControllerTest {
+    @Autowired
+    public FilmControllerWriteBehindAckOnEnqueueTest(MockMvc mockMvc, ObjectMapper objectMapper,
+                                                     FilmService filmService) {
+        super(mockMvc, objectMapper, filmService);
+    }
+}
@@ -0,0 +1,17 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.filmorate.service.FilmService;
+
+@SpringBootTest(properties = "filmorate.write-behind.enabled=true")
+@AutoConfigureMockMvc
+class FilmControllerWriteBehindTest extends FilmControllerTest {
+    @Autowired
+    public FilmControllerWriteBehindTest(MockMvc mockMvc, ObjectMapper objectMapper, FilmService filmService) {
+        super(mockMvc, objectMapper, filmService);
+    }
+}
@@ -4,17 +4,26 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import ru.yandex.practicum.filmorate.model.BatchItemResult;
+import ru.yandex.practicum.filmorate.model.ExistenceIndexStats;
 import ru.yandex.practicum.filmorate.model.Identifiable;
 import ru.yandex.practicum.filmorate.service.exception.ItemAlreadyExistsException;
 import ru.yandex.practicum.filmorate.service.exception.ItemNotFoundException;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 public abstract class ItemControllerTest<T extends Identifiable<T>> {
@@ -69,6 +78,46 @@ public abstract class ItemControllerTest<T extends Identifiable<T>> {
         assertEquals(testItem, createdItem);
     }
 
+    @Test
+    void add_get_update_ifNoneMatch_shouldReturn304UntilItemChanges() throws Exception {
+        TestUtils.performPost(mockMvc, path, objectMapper.writeValueAsString(testItem), status().isOk());
+        String itemPath = path + "/" + testItem.getId();
+        String eTag = TestUtils.performGet(mockMvc, itemPath, status().isOk())
+                .getResponse()
+                .getHeader(HttpHeaders.ETAG);
+        assertNotNull(eTag);
+
+        MvcResult notModified = TestUtils.performGet(mockMvc, itemPath, eTag, status().isNotModified());
+        assertEquals("", notModified.getResponse().getContentAsString());
+        assertEquals(eTag, notModified.getResponse().getHeader(HttpHeaders.ETAG));
+
+        TestUtils.performPut(mockMvc, path, objectMapper.writeValueAsString(testItem), status().isOk());
+        MvcResult modified = TestUtils.performGet(mockMvc, itemPath, eTag, status().isOk());
+        assertNotEquals(eTag, modified.getResponse().getHeader(HttpHeaders.ETAG));
+        assertEquals(testItem, objectMapper.readValue(modified.getResponse().getContentAsString(), testItemClass));
+    }
+
+    private ExistenceIndexStats getExistenceIndexStats() throws Exception {
+        String responseText = TestUtils.performGet(mockMvc, path + "/existence-index", status().isOk())
+                .getResponse()
+                .getContentAsString();
+        return objectMapper.readValue(responseText, ExistenceIndexStats.class);
+    }
+
+    @Test
+    void add_get_getExistenceIndexStats_shouldReturn200AndCountHitsAndFallbacks() throws Exception {
+        TestUtils.performPost(mockMvc, path, objectMapper.writeValueAsString(testItem), status().isOk());
+        ExistenceIndexStats statsBefore = getExistenceIndexStats();
+        TestUtils.performGet(mockMvc, path + "/" + testItem.getId(), status().isOk());
+        TestUtils.performGet(mockMvc, path + "/" + (testItem.getId() + 1), status().isNotFound());
+        ExistenceIndexStats statsAfter = getExistenceIndexStats();
+
+        assertTrue(statsAfter.getHits() > statsBefore.getHits());
+        assertEquals(statsBefore.getFallbacks() + 1, statsAfter.getFallbacks()); //отсутствующий id проверен по БД
+        assertEquals(statsBefore.getFallbackMatches(), statsAfter.getFallbackMatches());
+        assertTrue(statsAfter.getHitRate() > 0);
+    }
+
     @Test
     void add_getAll_shouldReturn200AndListOfAllItems() throws Exception {
         T itemToAdd = testItem.withId(testItem.getId() + 1);
@@ -96,6 +145,99 @@ public abstract class ItemControllerTest<T extends Identifiable<T>> {
         assertTrue(createdItems.isEmpty());
     }
 
+    @Test
+    void add_getAllWithLimit_shouldReturn200AndPagesWithCursor() throws Exception {
+        T itemToAdd1 = testItem.withId(testItem.getId() + 1);
+        T itemToAdd2 = testItem.withId(testItem.getId() + 2);
+        TestUtils.performPost(mockMvc, path, objectMapper.writeValueAsString(testItem), status().isOk());
+        TestUtils.performPost(mockMvc, path, objectMapper.writeValueAsString(itemToAdd1), status().isOk());
+        TestUtils.performPost(mockMvc, path, objectMapper.writeValueAsString(itemToAdd2), status().isOk());
+
+        MvcResult firstPage = TestUtils.performGet(mockMvc, path + "?limit=2", status().isOk());
+        List<T> firstPageItems = objectMapper.readValue(firstPage.getResponse().getContentAsString(), typeOfList);
+        String cursor = firstPage.getResponse().getHeader(ItemController.NEXT_CURSOR_HEADER);
+        assertEquals(Arrays.asList(testItem, itemToAdd1), firstPageItems);
+
+        MvcResult lastPage = TestUtils.performGet(mockMvc, path + "?limit=2&after=" + cursor, status().isOk());
+        List<T> lastPageItems = objectMapper.readValue(lastPage.getResponse().getContentAsString(), typeOfList);
+        assertEquals(Arrays.asList(itemToAdd2), lastPageItems);
+        assertNull(lastPage.getResponse().getHeader(ItemController.NEXT_CURSOR_HEADER));
+    }
+
+    @Test
+    void getAll_limitIsZeroOrCursorIsInvalid_shouldReturn400() throws Exception {
+        TestUtils.performGet(mockMvc, path + "?limit=0", status().isBadRequest());
+        TestUtils.performGet(mockMvc, path + "?limit=2&after=not-a-cursor", status().isBadRequest());
+    }
+
+    @Test
+    void add_export_shouldReturn200AndOneItemPerLine() throws Exception {
+        T itemToAdd = testItem.withId(testItem.getId() + 1);
+        List<T> itemsToAdd = Arrays.asList(testItem, itemToAdd);
+        TestUtils.performPost(mockMvc, path, objectMapper.writeValueAsString(testItem), status().isOk());
+        TestUtils.performPost(mockMvc, path, objectMapper.writeValueAsString(itemToAdd), status().isOk());
+        String responseText = TestUtils.performGetAsync(mockMvc, path + "/export", status().isOk())
+                .getResponse()
+                .getContentAsString();
+        List<T> exportedItems = new ArrayList<>();
+
+        for (String line : responseText.split("\n")) {
+            exportedItems.add(objectMapper.readValue(line, testItemClass));
+        }
+
+        assertEquals(itemsToAdd, exportedItems);
+    }
+
+    @Test
+    void addAll_shouldReturn200AndResultPerItem() throws Exception {
+        T itemWithoutId = testItem.withId(0);
+        String jsonToSend = objectMapper.writeValueAsString(Arrays.asList(testItem, itemWithoutId, testItem));
+        String responseText = TestUtils.performPost(mockMvc, path + "/batch", jsonToSend, status().isOk())
+                .getResponse()
+                .getContentAsString();
+        List<BatchItemResult> results = objectMapper.readValue(responseText, new TypeReference<>() {
+        });
+
+        assertEquals(3, results.size());
+        assertEquals(BatchItemResult.added(0, testItem.getId()), results.get(0));
+        assertNull(results.get(1).getError());
+        assertEquals(testItem.getId(), results.get(2).getId());
+        assertNotNull(results.get(2).getError()); //повтор id внутри пачки
+        TestUtils.performGet(mockMvc, path + "/" + results.get(1).getId(), status().isOk());
+    }
+
+    @Test
+    void addAll_ndjson_shouldReturn200AndAddAllItems() throws Exception {
+        T itemToAdd = testItem.withId(testItem.getId() + 1);
+        String ndjsonToSend = objectMapper.writeValueAsString(testItem) + "\n" + objectMapper.writeValueAsString(itemToAdd);
+        mockMvc
+                .perform(post(path + "/batch").contentType("application/x-ndjson").content(ndjsonToSend))
+                .andExpect(status().isOk());
+        String responseText = TestUtils.performGet(mockMvc, path, status().isOk())
+                .getResponse()
+                .getContentAsString();
+        List<T> createdItems = objectMapper.readValue(responseText, typeOfList);
+        createdItems.sort(Comparator.comparingLong(T::getId));
+        assertEquals(Arrays.asList(testItem, itemToAdd), createdItems);
+    }
+
+    @Test
+    void patch_sameFields_shouldReturn200AndNotModify() throws Exception {
+        TestUtils.performPost(mockMvc, path, objectMapper.writeValueAsString(testItem), status().isOk());
+        MvcResult emptyPatch = TestUtils.performPatch(mockMvc, path + "/" + testItem.getId(), "{}", status().isOk());
+        MvcResult fullPatch = TestUtils.performPatch(mockMvc, path + "/" + testItem.getId(),
+                objectMapper.writeValueAsString(testItem), status().isOk());
+
+        assertEquals("false", emptyPatch.getResponse().getHeader(ItemController.ITEM_MODIFIED_HEADER));
+        assertEquals("false", fullPatch.getResponse().getHeader(ItemController.ITEM_MODIFIED_HEADER));
+        assertEquals(testItem, objectMapper.readValue(fullPatch.getResponse().getContentAsString(), testItemClass));
+    }
+
+    @Test
+    void patch_idNotFound_shouldReturn404() throws Exception {
+        TestUtils.performPatch(mockMvc, path + "/-1", "{}", status().isNotFound());
+    }
+
     @Test
     void update_idIsMissing_shouldReturn404() throws Exception {
         T itemToUpdate = testItem.withId(0);
@@ -6,6 +6,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.test.web.servlet.MockMvc;
 import ru.yandex.practicum.filmorate.model.Mpa;
 
@@ -14,6 +15,7 @@ import java.util.LinkedHashSet;
 import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
@@ -62,4 +64,20 @@ class MpaControllerTest {
         Set<Mpa> retrievedMpa = objectMapper.readValue(responseText, typeOfSet);
         assertEquals(mpaSet, retrievedMpa);
     }
-}
\ No newline at end of file
+
+    @Test
+    void get_getAll_ifNoneMatch_shouldReturn304() throws Exception {
+        String eTag = TestUtils.performGet(mockMvc, path, status().isOk())
+                .getResponse()
+                .getHeader(HttpHeaders.ETAG);
+        assertNotNull(eTag);
+        assertEquals(eTag, TestUtils.performGet(mockMvc, path + "/1", status().isOk())
+                .getResponse()
+                .getHeader(HttpHeaders.ETAG));
+
+        TestUtils.performGet(mockMvc, path, eTag, status().isNotModified());
+        TestUtils.performGet(mockMvc, path + "/1", eTag, status().isNotModified());
+        TestUtils.performGet(mockMvc, path, "\"outdated\"", status().isOk());
+        TestUtils.performGet(mockMvc, path + "/-1", eTag, status().isNotFound());
+    }
+}
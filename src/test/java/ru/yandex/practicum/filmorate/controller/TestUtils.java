@@ -1,14 +1,18 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.ResultMatcher;
 
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 
 public class TestUtils {
     public static MvcResult performPost(MockMvc mockMvc, String Path, String jsonToSend, ResultMatcher expectedStatus) throws Exception {
@@ -29,6 +33,25 @@ public class TestUtils {
                 .andReturn();
     }
 
+    public static MvcResult performGet(MockMvc mockMvc, String Path, String eTag, ResultMatcher expectedStatus) throws Exception {
+        return mockMvc
+                .perform(get(Path).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(expectedStatus)
+                .andReturn();
+    }
+
+    public static MvcResult performGetAsync(MockMvc mockMvc, String Path, ResultMatcher expectedStatus) throws Exception {
+        MvcResult asyncResult = mockMvc
+                .perform(get(Path))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        return mockMvc
+                .perform(asyncDispatch(asyncResult))
+                .andExpect(expectedStatus)
+                .andReturn();
+    }
+
     public static MvcResult performPut(MockMvc mockMvc, String Path, String jsonToSend, ResultMatcher expectedStatus) throws Exception {
         return mockMvc
                 .perform(
@@ -40,6 +63,17 @@ public class TestUtils {
                 .andReturn();
     }
 
+    public static MvcResult performPatch(MockMvc mockMvc, String Path, String jsonToSend, ResultMatcher expectedStatus) throws Exception {
+        return mockMvc
+                .perform(
+                        patch(Path)
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(jsonToSend)
+                )
+                .andExpect(expectedStatus)
+                .andReturn();
+    }
+
     public static MvcResult performDelete(MockMvc mockMvc, String Path, ResultMatcher expectedStatus) throws Exception {
         return mockMvc
                 .perform(delete(Path))
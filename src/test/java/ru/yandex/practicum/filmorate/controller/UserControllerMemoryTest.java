@@ -0,0 +1,18 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+@SpringBootTest
+@ActiveProfiles("memory")
+@AutoConfigureMockMvc
+class UserControllerMemoryTest extends UserControllerTest {
+    @Autowired
+    public UserControllerMemoryTest(MockMvc mockMvc, ObjectMapper objectMapper) {
+        super(mockMvc, objectMapper);
+    }
+}
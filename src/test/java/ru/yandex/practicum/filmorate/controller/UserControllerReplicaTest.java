@@ -0,0 +1,19 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+@SpringBootTest(properties = {
+        "filmorate.read-replica.enabled=true",
+        "filmorate.read-replica.urls=${spring.datasource.url}" //реплика - второй пул к той же БД, всегда в синхроне
+})
+@AutoConfigureMockMvc
+class UserControllerReplicaTest extends UserControllerTest {
+    @Autowired
+    public UserControllerReplicaTest(MockMvc mockMvc, ObjectMapper objectMapper) {
+        super(mockMvc, objectMapper);
+    }
+}
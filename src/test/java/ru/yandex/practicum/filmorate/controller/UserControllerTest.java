@@ -7,6 +7,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.time.LocalDate;
@@ -14,6 +15,7 @@ import java.util.Arrays;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static ru.yandex.practicum.filmorate.controller.UserController.BASE_PATH;
 
@@ -52,6 +54,28 @@ class UserControllerTest extends ItemControllerTest<User> {
         assertEquals(userToAdd.getLogin(), createdUser.getName());
     }
 
+    @Test
+    void patch_email_shouldReturn200AndKeepOtherFields() throws Exception {
+        TestUtils.performPost(mockMvc, path, objectMapper.writeValueAsString(testUser), status().isOk());
+        MvcResult result = TestUtils.performPatch(mockMvc, path + "/" + testUser.getId(),
+                "{\"email\": \"neo@zion.org\"}", status().isOk());
+        User patchedUser = objectMapper.readValue(
+                TestUtils.performGet(mockMvc, path + "/" + testUser.getId(), status().isOk())
+                        .getResponse()
+                        .getContentAsString(),
+                testItemClass
+        );
+
+        assertEquals("true", result.getResponse().getHeader(ItemController.ITEM_MODIFIED_HEADER));
+        assertTrue(patchedUser.hasSameFields(testUser.withEmail("neo@zion.org")));
+    }
+
+    @Test
+    void patch_invalidEmail_shouldReturn400() throws Exception {
+        TestUtils.performPost(mockMvc, path, objectMapper.writeValueAsString(testUser), status().isOk());
+        TestUtils.performPatch(mockMvc, path + "/" + testUser.getId(), "{\"email\": \"neo\"}", status().isBadRequest());
+    }
+
     @Test
     void add_birthdayIsCurrentDate_shouldReturn200() throws Exception {
         User userToAdd = testUser.withBirthday(LocalDate.now());
@@ -174,4 +198,48 @@ class UserControllerTest extends ItemControllerTest<User> {
         List<User> actualCommonFriends = objectMapper.readValue(responseText, typeOfList);
         assertEquals(expectedCommonFriends, actualCommonFriends);
     }
-}
\ No newline at end of file
+
+    @Test
+    void addFriend_update_autocomplete_shouldReturn200AndUsersByFriendCount() throws Exception {
+        User user1 = testUser.withId(testUser.getId() + 1).withLogin("Neon");
+        User user2 = testUser.withId(testUser.getId() + 2).withLogin("Morpheus");
+        TestUtils.performPost(mockMvc, path, objectMapper.writeValueAsString(testUser), status().isOk());
+        TestUtils.performPost(mockMvc, path, objectMapper.writeValueAsString(user1), status().isOk());
+        TestUtils.performPost(mockMvc, path, objectMapper.writeValueAsString(user2), status().isOk());
+        TestUtils.performPut(mockMvc, path + "/" + user1.getId() + "/friends/" + user2.getId(), "", status().isOk());
+        String responseText = TestUtils.performGet(mockMvc, path + "/autocomplete?prefix=NE", status().isOk())
+                .getResponse()
+                .getContentAsString();
+        assertEquals(List.of(user1, testUser), objectMapper.readValue(responseText, typeOfList));
+
+        TestUtils.performPut(mockMvc, path, objectMapper.writeValueAsString(user1.withLogin("Trinity")), status().isOk());
+        responseText = TestUtils.performGet(mockMvc, path + "/autocomplete?prefix=ne", status().isOk())
+                .getResponse()
+                .getContentAsString();
+        assertEquals(List.of(testUser), objectMapper.readValue(responseText, typeOfList));
+    }
+
+    @Test
+    void addFriend_getFriendSuggestions_shouldReturn200AndNonFriendsByMutualFriends() throws Exception {
+        long testUserId = testUser.getId();
+
+        for (long userId = testUserId; userId <= testUserId + 4; userId++) {
+            TestUtils.performPost(mockMvc, path, objectMapper.writeValueAsString(testUser.withId(userId)), status().isOk());
+        }
+
+        TestUtils.performPut(mockMvc, path + "/" + testUserId + "/friends/" + (testUserId + 1), "", status().isOk());
+        TestUtils.performPut(mockMvc, path + "/" + testUserId + "/friends/" + (testUserId + 2), "", status().isOk());
+        TestUtils.performPut(mockMvc, path + "/" + (testUserId + 1) + "/friends/" + (testUserId + 2), "", status().isOk());
+        TestUtils.performPut(mockMvc, path + "/" + (testUserId + 1) + "/friends/" + (testUserId + 3), "", status().isOk());
+        TestUtils.performPut(mockMvc, path + "/" + (testUserId + 1) + "/friends/" + (testUserId + 4), "", status().isOk());
+        TestUtils.performPut(mockMvc, path + "/" + (testUserId + 2) + "/friends/" + (testUserId + 4), "", status().isOk());
+        TestUtils.performPut(mockMvc, path + "/" + (testUserId + 2) + "/friends/" + testUserId, "", status().isOk());
+        String responseText = TestUtils.performGet(mockMvc, path + "/" + testUserId + "/friends/suggestions?limit=5",
+                        status().isOk())
+                .getResponse()
+                .getContentAsString();
+        List<User> suggestions = objectMapper.readValue(responseText, typeOfList);
+        assertEquals(Arrays.asList(testUser.withId(testUserId + 4), testUser.withId(testUserId + 3)), suggestions);
+        TestUtils.performGet(mockMvc, path + "/" + testUserId + "/friends/suggestions?limit=0", status().isBadRequest());
+    }
+}
@@ -0,0 +1,19 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+@SpringBootTest(properties = {
+        "filmorate.write-behind.enabled=true",
+        "filmorate.write-behind.durability=ACK_ON_ENQUEUE"
+})
+@AutoConfigureMockMvc
+class UserControllerWriteBehindAckOnEnqueueTest extends UserControllerTest {
+    @Autowired
+    public UserControllerWriteBehindAckOnEnqueueTest(MockMvc mockMvc, ObjectMapper objectMapper) {
+        super(mockMvc, objectMapper);
+    }
+}
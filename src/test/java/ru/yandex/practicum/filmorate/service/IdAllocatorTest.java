@@ -0,0 +1,66 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IdAllocatorTest {
+    private static final int BLOCK_SIZE = 100;
+    private final AtomicLong sequence = new AtomicLong(1 - BLOCK_SIZE); //как последовательность с INCREMENT BY 100
+    private final AtomicInteger reservedBlocks = new AtomicInteger();
+
+    private IdAllocator createAllocator() {
+        return new IdAllocator(() -> {
+            reservedBlocks.incrementAndGet();
+            return sequence.addAndGet(BLOCK_SIZE);
+        }, () -> BLOCK_SIZE);
+    }
+
+    @Test
+    void nextId_shouldReserveOneBlockPerBlockSizeIds() {
+        IdAllocator idAllocator = createAllocator();
+
+        for (long expectedId = 1; expectedId <= 250; expectedId++) {
+            assertEquals(expectedId, idAllocator.nextId());
+        }
+
+        assertEquals(3, reservedBlocks.get());
+    }
+
+    @Test
+    void nextId_severalInstancesAndThreads_shouldReturnUniqueIds() throws Exception {
+        List<IdAllocator> idAllocators = List.of(createAllocator(), createAllocator()); //два экземпляра приложения
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int i = 0; i < 8; i++) {
+            IdAllocator idAllocator = idAllocators.get(i % 2);
+            futures.add(executor.submit(() -> {
+                for (int j = 0; j < 10_000; j++) {
+                    assertTrue(ids.add(idAllocator.nextId()));
+                }
+            }));
+        }
+
+        for (Future<?> future : futures) {
+            future.get();
+        }
+
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+        assertEquals(80_000, ids.size());
+    }
+}
@@ -0,0 +1,146 @@
+package ru.yandex.practicum.filmorate.service.cache;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+import ru.yandex.practicum.filmorate.model.CacheStats;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class FilmCacheTest {
+    private final Map<Long, Integer> likeCounts = new HashMap<>();
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private static Film film(long filmId) {
+        return Film
+                .builder()
+                .id(filmId)
+                .name("Фильм " + filmId)
+                .description("Описание")
+                .releaseDate(LocalDate.of(1999, 3, 24))
+                .duration(136)
+                .mpa(new Mpa(1, "G"))
+                .build();
+    }
+
+    private static FilmCache cache(long maxBytes) {
+        FilmCacheProperties properties = new FilmCacheProperties();
+        properties.setMaxMemory(DataSize.ofBytes(maxBytes));
+        return new FilmCache(properties);
+    }
+
+    private Film getFilm(FilmCache filmCache, long filmId) {
+        return filmCache.getFilm(filmId, () -> {
+            loads.incrementAndGet();
+            return new FilmCache.VersionedFilm(film(filmId), 1);
+        });
+    }
+
+    private List<Film> getPopularFilms(FilmCache filmCache, List<Film> films) {
+        return filmCache.getPopularFilms(films.size(), () -> {
+            loads.incrementAndGet();
+            return films;
+        }, filmId -> likeCounts.getOrDefault(filmId, 0));
+    }
+
+    @Test
+    void getFilm_shouldLoadOnceAndEvictLeastRecentlyUsed() {
+        long filmWeight = FilmCache.ENTRY_OVERHEAD + FilmCache.weigh(film(1));
+        FilmCache filmCache = cache(2 * filmWeight);
+
+        Film film = getFilm(filmCache, 1);
+        assertSame(film, getFilm(filmCache, 1));
+        getFilm(filmCache, 2);
+        getFilm(filmCache, 1); //2 становится самым давним
+        getFilm(filmCache, 3);
+        getFilm(filmCache, 1);
+        assertEquals(3, loads.get());
+        getFilm(filmCache, 2);
+        assertEquals(4, loads.get());
+
+        CacheStats stats = filmCache.getStats();
+        assertEquals(3, stats.getHits());
+        assertEquals(4, stats.getMisses());
+        assertEquals(2, stats.getEvictions());
+        assertEquals(2, stats.getSize());
+        assertEquals(2 * filmWeight, stats.getWeight());
+    }
+
+    @Test
+    void getFilm_invalidatedAfterEviction_shouldSkipRemovedEntryAndKeepWeight() {
+        long filmWeight = FilmCache.ENTRY_OVERHEAD + FilmCache.weigh(film(1));
+        FilmCache filmCache = cache(2 * filmWeight);
+
+        getFilm(filmCache, 1);
+        getFilm(filmCache, 2);
+        getFilm(filmCache, 3); //вытесняет 1, в очереди на вытеснение остаются 2 и 3
+        filmCache.filmUpdated(2);
+        getFilm(filmCache, 4);
+        getFilm(filmCache, 5); //2 уже удалён - вытесняется 3
+        getFilm(filmCache, 4);
+        getFilm(filmCache, 5);
+        assertEquals(5, loads.get());
+
+        CacheStats stats = filmCache.getStats();
+        assertEquals(2, stats.getEvictions());
+        assertEquals(1, stats.getInvalidations());
+        assertEquals(2, stats.getSize());
+        assertEquals(2 * filmWeight, stats.getWeight());
+    }
+
+    @Test
+    void likeCountChanged_shouldInvalidateOnlyAffectedPopularLists() {
+        FilmCache filmCache = cache(DataSize.ofMegabytes(1).toBytes());
+        likeCounts.put(1L, 5);
+        likeCounts.put(2L, 3);
+        likeCounts.put(3L, 1);
+        List<Film> top1 = List.of(film(1));
+        List<Film> top2 = List.of(film(1), film(2));
+        getPopularFilms(filmCache, top1);
+        getPopularFilms(filmCache, top2);
+        getFilm(filmCache, 3);
+
+        filmCache.likeCountChanged(3, 2); //не входит ни в один список
+        getPopularFilms(filmCache, top1);
+        getPopularFilms(filmCache, top2);
+        assertEquals(3, loads.get());
+
+        filmCache.likeCountChanged(3, 3); //догнал последний фильм второго списка
+        getPopularFilms(filmCache, top1);
+        getPopularFilms(filmCache, top2);
+        getFilm(filmCache, 3);
+        assertEquals(4, loads.get());
+
+        filmCache.likeCountChanged(2, 2);
+        getPopularFilms(filmCache, top1);
+        filmCache.filmUpdated(1);
+        getPopularFilms(filmCache, top1);
+        getFilm(filmCache, 3);
+        assertEquals(5, loads.get());
+        assertEquals(3, filmCache.getStats().getInvalidations());
+    }
+
+    @Test
+    void getFilm_invalidatedWhileLoading_shouldNotCacheStaleFilm() {
+        FilmCache filmCache = cache(DataSize.ofMegabytes(1).toBytes());
+
+        filmCache.getFilm(1, () -> {
+            filmCache.filmUpdated(1); //обновление завершилось, пока читали прежнюю версию
+            return new FilmCache.VersionedFilm(film(1), 1);
+        });
+        getFilm(filmCache, 1);
+        assertEquals(1, loads.get());
+
+        filmCache.clear();
+        getFilm(filmCache, 1);
+        assertEquals(2, loads.get());
+    }
+}
@@ -0,0 +1,112 @@
+package ru.yandex.practicum.filmorate.service.cache;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.service.exception.LoadTimeoutException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SingleFlightTest {
+    private static final int CALLERS = 8;
+    private final ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+
+    private static void awaitWaiting(SingleFlight<?, ?> singleFlight, int waiting) throws InterruptedException {
+        while (singleFlight.getCollapsed() < waiting) {
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    void load_concurrentCallers_shouldShareOneLoad() throws Exception {
+        SingleFlight<Long, String> singleFlight = new SingleFlight<>(10_000);
+        CountDownLatch isLoading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Future<String>> results = new ArrayList<>();
+
+        results.add(executor.submit(() -> singleFlight.load(1L, () -> {
+            isLoading.countDown();
+            awaitQuietly(release);
+            return "The Matrix";
+        })));
+        assertTrue(isLoading.await(10, TimeUnit.SECONDS));
+
+        for (int i = 1; i < CALLERS; i++) {
+            results.add(executor.submit(() -> singleFlight.load(1L, () -> "повторная загрузка")));
+        }
+
+        awaitWaiting(singleFlight, CALLERS - 1);
+        release.countDown();
+
+        for (Future<String> result : results) {
+            assertEquals("The Matrix", result.get(10, TimeUnit.SECONDS));
+        }
+
+        assertEquals(1, singleFlight.getLoads());
+        assertEquals(CALLERS - 1, singleFlight.getCollapsed());
+        assertEquals("повторная загрузка", singleFlight.load(1L, () -> "повторная загрузка")); //загрузка завершена
+        executor.shutdown();
+    }
+
+    @Test
+    void load_loaderFails_shouldPropagateErrorToAllCallers() throws Exception {
+        SingleFlight<Long, String> singleFlight = new SingleFlight<>(10_000);
+        CountDownLatch isLoading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        IllegalStateException error = new IllegalStateException("БД недоступна");
+
+        Future<String> leader = executor.submit(() -> singleFlight.load(1L, () -> {
+            isLoading.countDown();
+            awaitQuietly(release);
+            throw error;
+        }));
+        assertTrue(isLoading.await(10, TimeUnit.SECONDS));
+        Future<String> follower = executor.submit(() -> singleFlight.load(1L, () -> "не вызывается"));
+        awaitWaiting(singleFlight, 1);
+        release.countDown();
+
+        assertSame(error, assertThrows(ExecutionException.class, () -> leader.get(10, TimeUnit.SECONDS)).getCause());
+        assertSame(error, assertThrows(ExecutionException.class, () -> follower.get(10, TimeUnit.SECONDS)).getCause());
+        executor.shutdown();
+    }
+
+    @Test
+    void load_loadIsTooSlow_shouldThrowTimeoutToFollowers() throws Exception {
+        SingleFlight<Long, String> singleFlight = new SingleFlight<>(10);
+        CountDownLatch isLoading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<String> leader = executor.submit(() -> singleFlight.load(1L, () -> {
+            isLoading.countDown();
+            awaitQuietly(release);
+            return "The Matrix";
+        }));
+        assertTrue(isLoading.await(10, TimeUnit.SECONDS));
+
+        assertThrows(LoadTimeoutException.class, () -> singleFlight.load(1L, () -> "не вызывается"));
+        assertEquals(1, singleFlight.getTimeouts());
+        singleFlight.forget(1L);
+        assertEquals("The Matrix Reloaded", singleFlight.load(1L, () -> "The Matrix Reloaded")); //новая загрузка
+        release.countDown();
+        assertEquals("The Matrix", leader.get(10, TimeUnit.SECONDS));
+        executor.shutdown();
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
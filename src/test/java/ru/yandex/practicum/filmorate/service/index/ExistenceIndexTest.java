@@ -0,0 +1,92 @@
+package ru.yandex.practicum.filmorate.service.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExistenceIndexTest {
+    private final Set<Long> storedIds = Set.of(1L, 70_000L, 1L << 40); //то, что лежит в БД
+    private final ExistenceIndex existenceIndex = new ExistenceIndex(storedIds::contains);
+
+    @Test
+    void isExists_addedIds_shouldNotFallBack() {
+        storedIds.forEach(existenceIndex::add);
+
+        for (long id : storedIds) {
+            assertTrue(existenceIndex.isExists(id));
+        }
+
+        assertEquals(3, existenceIndex.getHits());
+        assertEquals(0, existenceIndex.getFallbacks());
+        assertEquals(1.0, existenceIndex.getHitRate());
+    }
+
+    @Test
+    void isExists_unknownIds_shouldFallBackAndRememberFound() {
+        assertTrue(existenceIndex.isExists(70_000L));
+        assertTrue(existenceIndex.isExists(70_000L));
+        assertFalse(existenceIndex.isExists(70_001L));
+        assertFalse(existenceIndex.isExists(-1L));
+
+        assertEquals(1, existenceIndex.getHits());
+        assertEquals(3, existenceIndex.getFallbacks());
+        assertEquals(1, existenceIndex.getFallbackMatches());
+    }
+
+    @Test
+    void add_sparseIds_shouldKeepSmallPagesAndSwitchToBitmapWhenDense() {
+        ExistenceIndex index = new ExistenceIndex(id -> false);
+
+        for (long i = 1; i <= 100_000; i++) {
+            index.add(i * 1_000_003L); //каждый id - на своей странице
+        }
+
+        assertEquals(100_000 * Character.BYTES, index.getPageBytes()); //с битовыми картами было бы около 800 МБ
+        assertTrue(index.isExists(500 * 1_000_003L));
+        assertFalse(index.isExists(500 * 1_000_003L + 1));
+
+        ExistenceIndex denseIndex = new ExistenceIndex(id -> false);
+
+        for (long id = 1; id <= ExistenceIndex.SPARSE_LIMIT + 1; id++) {
+            denseIndex.add(id);
+        }
+
+        assertEquals(ExistenceIndex.BITMAP_BYTES, denseIndex.getPageBytes());
+
+        for (long id = 1; id <= ExistenceIndex.SPARSE_LIMIT + 1; id++) {
+            assertTrue(denseIndex.isExists(id));
+        }
+
+        assertFalse(denseIndex.isExists(ExistenceIndex.SPARSE_LIMIT + 2));
+        assertEquals(ExistenceIndex.SPARSE_LIMIT + 1, denseIndex.getHits());
+    }
+
+    @Test
+    void isExists_clearedDuringFallback_shouldSkipStaleIdAndKeepNewOnes() {
+        ExistenceIndex[] index = new ExistenceIndex[1];
+        index[0] = new ExistenceIndex(id -> {
+            index[0].clear(); //пока читали БД, все элементы удалили и добавили новый
+            index[0].add(5);
+            return true;
+        });
+
+        assertTrue(index[0].isExists(7));
+        assertEquals(Character.BYTES, index[0].getPageBytes()); //в индексе только 5
+        assertTrue(index[0].isExists(5));
+        assertEquals(1, index[0].getHits());
+    }
+
+    @Test
+    void clear_shouldForgetAllIds() {
+        storedIds.forEach(existenceIndex::add);
+        existenceIndex.clear();
+        existenceIndex.isExists(1L);
+
+        assertEquals(0, existenceIndex.getHits());
+        assertEquals(1, existenceIndex.getFallbacks());
+    }
+}
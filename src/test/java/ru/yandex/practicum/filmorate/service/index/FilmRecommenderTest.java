@@ -0,0 +1,70 @@
+package ru.yandex.practicum.filmorate.service.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class FilmRecommenderTest {
+    private final FilmRecommender filmRecommender = new FilmRecommender();
+
+    @Test
+    void getSimilarFilmIds_shouldRankByCosineOfLikes() throws Exception {
+        filmRecommender.rebuild(Map.of(
+                1L, new long[]{10, 20, 30},
+                2L, new long[]{10, 20},
+                3L, new long[]{30, 40},
+                4L, new long[]{40},
+                5L, new long[]{30, 40}
+        )).get();
+
+        assertArrayEquals(new long[]{20, 30}, filmRecommender.getSimilarFilmIds(10, 5));
+        assertArrayEquals(new long[]{40, 10, 20}, filmRecommender.getSimilarFilmIds(30, 5));
+        assertArrayEquals(new long[]{30}, filmRecommender.getRecommendedFilmIds(2, 5));
+    }
+
+    @Test
+    void addLike_deleteLike_shouldUpdateSimilarFilms() {
+        filmRecommender.addLike(10, 1);
+        filmRecommender.addLike(20, 1);
+        assertArrayEquals(new long[]{20}, filmRecommender.getSimilarFilmIds(10, 5));
+
+        filmRecommender.deleteLike(20, 1);
+        assertArrayEquals(new long[0], filmRecommender.getSimilarFilmIds(10, 5));
+    }
+
+    @Test
+    void addLike_shouldInvalidateNeighboursWithStaleScores() {
+        filmRecommender.addLike(20, 1);
+        filmRecommender.addLike(10, 1);
+        filmRecommender.addLike(20, 5);
+        filmRecommender.addLike(30, 5);
+        filmRecommender.addLike(30, 6);
+        assertArrayEquals(new long[]{20}, filmRecommender.getSimilarFilmIds(10, 5));
+        assertArrayEquals(new long[]{10, 30}, filmRecommender.getSimilarFilmIds(20, 5)); //1/sqrt(2) > 1/sqrt(4)
+
+        filmRecommender.addLike(10, 8); //пользователи без других лайков - общие лайки фильма 20 не меняются
+        filmRecommender.addLike(10, 9);
+        assertArrayEquals(new long[]{30, 10}, filmRecommender.getSimilarFilmIds(20, 5)); //1/sqrt(6) < 1/sqrt(4)
+    }
+
+    @Test
+    void getRecommendedFilmIds_sampledLikes_shouldScaleCoLikesToAllLikers() throws Exception {
+        Map<Long, long[]> likes = new HashMap<>();
+        likes.put(1L, new long[]{60, 70}); //пользователь 1 лайкнул фильмы 60 и 70
+        likes.put(2L, new long[]{70, 80}); //фильм 80 похож на 70: косинус 1/sqrt(2)
+        //фильм 50 лайкнули все остальные лайкнувшие фильм 60 - и каждый из них ещё сотни фильмов
+        long[] heavyUserFilmIds = LongStream.concat(LongStream.of(50, 60), LongStream.range(1000, 1300)).toArray();
+
+        for (long userId = 100; userId < 500; userId++) {
+            likes.put(userId, heavyUserFilmIds);
+        }
+
+        filmRecommender.rebuild(likes).get();
+        //косинус 60 и 50 почти 1, хотя по выборке видна лишь треть лайкнувших и половина их лайков
+        assertArrayEquals(new long[]{50}, filmRecommender.getRecommendedFilmIds(1, 1));
+    }
+}
@@ -0,0 +1,63 @@
+package ru.yandex.practicum.filmorate.service.index;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FilmSearchIndexTest {
+    private final PopularityIndex popularityIndex = new PopularityIndex();
+    private final FilmSearchIndex filmSearchIndex = new FilmSearchIndex(popularityIndex);
+
+    private static Film film(long filmId, String name, String description) {
+        return Film
+                .builder()
+                .id(filmId)
+                .name(name)
+                .description(description)
+                .releaseDate(LocalDate.of(1999, 3, 24))
+                .duration(136)
+                .build();
+    }
+
+    @Test
+    void tokenize_shouldCaseFoldRussianAndEnglish() {
+        assertEquals(List.of("ирония", "судьбы", "или", "с", "легким", "паром", "1975"),
+                FilmSearchIndex.tokenize("«Ирония судьбы, или С лёгким паром!» (1975)"));
+        assertEquals(List.of("the", "matrix", "reloaded"), FilmSearchIndex.tokenize("The MATRIX: Reloaded"));
+    }
+
+    @Test
+    void search_shouldRankByRelevanceThenPopularity() {
+        filmSearchIndex.put(film(1, "Ёлки", "Новогодняя комедия"));
+        filmSearchIndex.put(film(2, "Новогодний корпоратив", "Ёлки, мандарины и комедия положений"));
+        filmSearchIndex.put(film(3, "Ёлки 2", "Комедия"));
+        popularityIndex.changeLikeCount(3, 5);
+
+        assertArrayEquals(new long[]{3, 1, 2}, filmSearchIndex.search("елки", 10)); //название весомее описания
+        assertArrayEquals(new long[]{3, 1, 2}, filmSearchIndex.search("ЁЛКИ комедия", 10));
+        assertArrayEquals(new long[]{3}, filmSearchIndex.search("елки 2", 10));
+        assertArrayEquals(new long[]{3}, filmSearchIndex.search("елки", 1));
+        assertArrayEquals(new long[0], filmSearchIndex.search("елки матрица", 10));
+        assertArrayEquals(new long[0], filmSearchIndex.search(" ,! ", 10));
+    }
+
+    @Test
+    void put_rebuild_shouldReplaceOldTermsAndKeepConcurrentChanges() {
+        filmSearchIndex.put(film(1, "The Matrix", "Wake up, Neo..."));
+        filmSearchIndex.put(film(1, "The Matrix Reloaded", null));
+        assertArrayEquals(new long[0], filmSearchIndex.search("neo", 10));
+        assertArrayEquals(new long[]{1}, filmSearchIndex.search("reloaded", 10));
+
+        filmSearchIndex.rebuild(consumer -> {
+            consumer.accept(film(2, "The Matrix Revolutions", null));
+            filmSearchIndex.put(film(3, "The Animatrix", null)); //добавлен во время перестроения
+        });
+        assertArrayEquals(new long[]{2}, filmSearchIndex.search("matrix", 10));
+        assertArrayEquals(new long[]{3}, filmSearchIndex.search("animatrix", 10));
+    }
+}
@@ -0,0 +1,34 @@
+package ru.yandex.practicum.filmorate.service.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FriendGraphTest {
+    private final FriendGraph friendGraph = new FriendGraph();
+
+    @Test
+    void addFriend_deleteFriend_shouldKeepIdsSorted() {
+        friendGraph.addFriend(1, 5);
+        friendGraph.addFriend(1, 2);
+        friendGraph.addFriend(1, 9);
+        friendGraph.addFriend(1, 2);
+        friendGraph.deleteFriend(1, 9);
+
+        assertArrayEquals(new long[]{2, 5}, friendGraph.getFriendIds(1));
+        assertTrue(friendGraph.isFriend(1, 5));
+        assertFalse(friendGraph.isFriend(5, 1)); //дружба односторонняя
+    }
+
+    @Test
+    void getCommonFriendIds_shouldReturnIntersection() {
+        friendGraph.rebuild(Map.of(1L, new long[]{7, 3, 5, 10}, 2L, new long[]{1, 3, 10, 11}));
+
+        assertArrayEquals(new long[]{3, 10}, friendGraph.getCommonFriendIds(1, 2));
+        assertArrayEquals(new long[0], friendGraph.getCommonFriendIds(1, 3));
+    }
+}
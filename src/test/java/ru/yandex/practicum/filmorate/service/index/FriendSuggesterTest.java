@@ -0,0 +1,46 @@
+package ru.yandex.practicum.filmorate.service.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class FriendSuggesterTest {
+    private final FriendGraph friendGraph = new FriendGraph();
+    private final FriendSuggester friendSuggester = new FriendSuggester(friendGraph);
+
+    private void addFriend(long userId, long friendId) {
+        friendGraph.addFriend(userId, friendId);
+        friendSuggester.onFriendsChanged(userId); //как в UserService
+    }
+
+    private void deleteFriend(long userId, long friendId) {
+        friendGraph.deleteFriend(userId, friendId);
+        friendSuggester.onFriendsChanged(userId);
+    }
+
+    @Test
+    void onFriendsChanged_shouldInvalidateCachedSuggestionsOfHeavyUser() {
+        long[] heavyUserFriendIds = LongStream.range(100, 100 + FriendSuggester.HEAVY_USER_FRIENDS + 1).toArray();
+        friendGraph.rebuild(Map.of(
+                1L, heavyUserFriendIds,
+                100L, new long[]{5000},
+                101L, new long[]{5000, 5001}
+        ));
+        long[] suggestions = friendSuggester.suggest(1, 10);
+        assertArrayEquals(new long[]{5000, 5001}, suggestions);
+        assertSame(suggestions, friendSuggester.suggest(1, 10)); //список пользователя с сотнями друзей закэширован
+
+        addFriend(9000, 5001); //9000 не в друзьях - второй шаг обхода не меняется
+        assertSame(suggestions, friendSuggester.suggest(1, 10));
+
+        addFriend(100, 5002); //связь в двух шагах: у друга появился новый друг
+        assertArrayEquals(new long[]{5000, 5001, 5002}, friendSuggester.suggest(1, 10));
+
+        deleteFriend(1, 101); //связь в одном шаге: сам пользователь удалил друга
+        assertArrayEquals(new long[]{5000, 5002}, friendSuggester.suggest(1, 10));
+    }
+}
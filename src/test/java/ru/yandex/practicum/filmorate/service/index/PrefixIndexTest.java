@@ -0,0 +1,92 @@
+package ru.yandex.practicum.filmorate.service.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PrefixIndexTest {
+    private final Map<Long, Integer> ranks = new ConcurrentHashMap<>();
+    private final PrefixIndex prefixIndex = new PrefixIndex(itemId -> ranks.getOrDefault(itemId, 0));
+
+    @Test
+    void lookup_shouldRankByScoreThenAlphabetically() {
+        prefixIndex.put(1, "Ёлки");
+        prefixIndex.put(2, "Ёлки 2");
+        prefixIndex.put(3, "Елизавета");
+        prefixIndex.put(4, "Экипаж");
+        ranks.put(2L, 10);
+
+        assertArrayEquals(new long[]{2, 3, 1}, prefixIndex.lookup("ел", 10));
+        assertArrayEquals(new long[]{2, 1}, prefixIndex.lookup(" ЁЛК", 10));
+        assertArrayEquals(new long[]{2}, prefixIndex.lookup("е", 1));
+        assertArrayEquals(new long[0], prefixIndex.lookup("ёлки 3", 10));
+        assertArrayEquals(new long[0], prefixIndex.lookup(" ", 10));
+    }
+
+    @Test
+    void put_rebuild_shouldMoveChangedItemsAndKeepConcurrentChanges() {
+        prefixIndex.put(1, "Neo");
+        prefixIndex.put(1, "Trinity");
+        assertArrayEquals(new long[0], prefixIndex.lookup("neo", 10));
+        assertArrayEquals(new long[]{1}, prefixIndex.lookup("tri", 10));
+
+        prefixIndex.rebuild(consumer -> {
+            prefixIndex.put(2, "Morpheus"); //изменён во время перестроения
+            consumer.accept("Agent Smith", 2);
+            consumer.accept("Trinity", 1);
+        });
+        assertArrayEquals(new long[]{2}, prefixIndex.lookup("mor", 10));
+        assertArrayEquals(new long[0], prefixIndex.lookup("agent", 10));
+        assertEquals(2, prefixIndex.size());
+    }
+
+    @Test
+    void clear_duringRebuild_shouldDropRowsScannedBeforeClear() {
+        prefixIndex.rebuild(consumer -> {
+            consumer.accept("Trinity", 1);
+            prefixIndex.clear(); //все элементы удалены, пока строки ещё читаются
+            consumer.accept("Agent Smith", 2);
+            prefixIndex.put(3, "Cypher"); //добавлен через сервис после очистки
+        });
+        assertArrayEquals(new long[0], prefixIndex.lookup("tri", 10));
+        assertArrayEquals(new long[0], prefixIndex.lookup("agent", 10));
+        assertArrayEquals(new long[]{3}, prefixIndex.lookup("cy", 10));
+        assertEquals(1, prefixIndex.size());
+    }
+
+    @Test
+    void clear_concurrentPuts_shouldNotLeaveEntriesWithoutKeys() throws InterruptedException {
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 20000; i++) {
+                prefixIndex.put(i % 10, "item " + i % 10);
+            }
+        });
+        writer.start();
+
+        while (writer.isAlive()) {
+            prefixIndex.clear();
+        }
+
+        writer.join();
+        assertEquals(prefixIndex.size(), prefixIndex.lookup("item", 20).length); //подсказка есть только у хранимых
+    }
+
+    @Test
+    void lookup_tooManyMatches_shouldAnswerFromFirstEntriesAndRefreshInBackground() {
+        for (long itemId = 1; itemId <= PrefixIndex.MAX_SCANNED + 1; itemId++) {
+            prefixIndex.put(itemId, String.format("film %05d", itemId));
+        }
+
+        ranks.put(PrefixIndex.MAX_SCANNED + 1L, 10); //лучший по рейтингу - последний по алфавиту
+        assertArrayEquals(new long[]{1}, prefixIndex.lookup("film", 1));
+
+        ForkJoinPool.commonPool().awaitQuiescence(1, TimeUnit.MINUTES);
+        assertArrayEquals(new long[]{PrefixIndex.MAX_SCANNED + 1, 1}, prefixIndex.lookup("film", 2));
+    }
+}
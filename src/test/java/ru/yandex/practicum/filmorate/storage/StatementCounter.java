@@ -0,0 +1,80 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class StatementCounter implements BeanPostProcessor {
+    private final List<String> statements = new CopyOnWriteArrayList<>();
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof DataSource)) {
+            return bean;
+        }
+
+        return new DelegatingDataSource((DataSource) bean) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                return wrap(Connection.class, super.getConnection());
+            }
+
+            @Override
+            public Connection getConnection(String username, String password) throws SQLException {
+                return wrap(Connection.class, super.getConnection(username, password));
+            }
+        };
+    }
+
+    public void reset() {
+        statements.clear();
+    }
+
+    public int getCount() {
+        return statements.size();
+    }
+
+    public List<String> getStatements() {
+        return new ArrayList<>(statements);
+    }
+
+    private <T> T wrap(Class<T> type, T target) {
+        return type.cast(Proxy.newProxyInstance(
+                getClass().getClassLoader(),
+                new Class<?>[]{type},
+                (proxy, method, args) -> {
+                    if (isStatementExecution(method) && args != null && args[0] instanceof String) {
+                        statements.add((String) args[0]); //у PreparedStatement запрос передаётся при создании
+                    }
+
+                    Object result = invoke(method, target, args);
+                    return result instanceof Statement && "createStatement".equals(method.getName())
+                            ? wrap(Statement.class, (Statement) result)
+                            : result;
+                }
+        ));
+    }
+
+    private static boolean isStatementExecution(Method method) {
+        String name = method.getName();
+        return name.startsWith("prepare") || name.startsWith("execute") || name.equals("addBatch");
+    }
+
+    private static Object invoke(Method method, Object target, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package ru.yandex.practicum.filmorate.storage.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EdgeWriteBehindTest {
+    private final Set<List<Long>> storedEdges = ConcurrentHashMap.newKeySet(); //содержимое "БД"
+    private final List<EdgeOperation> written = Collections.synchronizedList(new ArrayList<>());
+    private final CountDownLatch release = new CountDownLatch(1);
+    private volatile boolean isFailing;
+
+    private EdgeWriteBehind createWriteBehind(WriteBehindProperties.Durability durability) {
+        WriteBehindProperties properties = new WriteBehindProperties();
+        properties.setEnabled(true);
+        properties.setDurability(durability);
+        return new EdgeWriteBehind("test", properties, this::write,
+                (fromId, toId) -> storedEdges.contains(List.of(fromId, toId)));
+    }
+
+    private int[] write(List<EdgeOperation> operations) {
+        try {
+            release.await(); //пока не отпустим, операции остаются в буфере
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (isFailing) {
+            throw new IllegalStateException("БД недоступна");
+        }
+
+        int[] updateCounts = new int[operations.size()];
+
+        for (int i = 0; i < operations.size(); i++) {
+            EdgeOperation operation = operations.get(i);
+            List<Long> edge = List.of(operation.getFromId(), operation.getToId());
+            boolean isChanged = operation.isAdd() ? storedEdges.add(edge) : storedEdges.remove(edge);
+            updateCounts[i] = isChanged ? 1 : 0;
+            written.add(operation);
+        }
+
+        return updateCounts;
+    }
+
+    @Test
+    void write_ackOnEnqueue_shouldDecideByPendingOperations() {
+        EdgeWriteBehind writeBehind = createWriteBehind(WriteBehindProperties.Durability.ACK_ON_ENQUEUE);
+        assertTrue(writeBehind.write(new EdgeOperation(true, 1, 2)));
+        assertFalse(writeBehind.write(new EdgeOperation(true, 1, 2))); //лайк ещё в буфере, повторный ничего не меняет
+        assertTrue(writeBehind.write(new EdgeOperation(false, 1, 2)));
+        assertFalse(writeBehind.write(new EdgeOperation(false, 1, 2)));
+        assertFalse(writeBehind.write(new EdgeOperation(false, 1, 3))); //такого ребра нет ни в буфере, ни в БД
+        assertTrue(writeBehind.write(new EdgeOperation(true, 1, 2)));
+
+        release.countDown();
+        writeBehind.flush();
+        assertEquals(List.of(new EdgeOperation(true, 1, 2), new EdgeOperation(false, 1, 2),
+                new EdgeOperation(true, 1, 2)), written); //в буфер попали только меняющие операции
+        assertEquals(Set.of(List.of(1L, 2L)), storedEdges);
+        writeBehind.close();
+    }
+
+    @Test
+    void write_ackOnEnqueue_shouldDecideByStoredEdgesAfterFlush() {
+        storedEdges.add(List.of(1L, 2L));
+        release.countDown();
+        EdgeWriteBehind writeBehind = createWriteBehind(WriteBehindProperties.Durability.ACK_ON_ENQUEUE);
+        assertFalse(writeBehind.write(new EdgeOperation(true, 1, 2)));
+        assertTrue(writeBehind.write(new EdgeOperation(false, 1, 2)));
+        writeBehind.flush();
+        assertFalse(writeBehind.write(new EdgeOperation(false, 1, 2))); //ребро уже удалено из БД
+        assertTrue(writeBehind.write(new EdgeOperation(true, 1, 2)));
+        writeBehind.close();
+        assertEquals(Set.of(List.of(1L, 2L)), storedEdges);
+    }
+
+    @Test
+    void write_ackOnEnqueue_failedFlush_shouldReportLostEdge() throws InterruptedException {
+        EdgeWriteBehind writeBehind = createWriteBehind(WriteBehindProperties.Durability.ACK_ON_ENQUEUE);
+        List<List<Long>> lostEdges = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch reported = new CountDownLatch(1);
+        writeBehind.setLostWriteListener((fromId, toId) -> {
+            lostEdges.add(List.of(fromId, toId));
+            reported.countDown();
+        });
+        assertTrue(writeBehind.write(new EdgeOperation(true, 1, 2)));
+        assertTrue(writeBehind.isStored(1, 2)); //подтверждённый лайк виден до записи
+
+        isFailing = true;
+        release.countDown();
+        assertTrue(reported.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of(List.of(1L, 2L)), lostEdges);
+        assertFalse(writeBehind.isStored(1, 2)); //после потери решает БД - по ней слушатель и чинит индексы
+        writeBehind.close();
+    }
+
+    @Test
+    void write_ackAfterFlush_shouldReturnWriteResult() {
+        release.countDown();
+        EdgeWriteBehind writeBehind = createWriteBehind(WriteBehindProperties.Durability.ACK_AFTER_FLUSH);
+        assertTrue(writeBehind.write(new EdgeOperation(true, 1, 2)));
+        assertFalse(writeBehind.write(new EdgeOperation(true, 1, 2)));
+        assertTrue(writeBehind.write(new EdgeOperation(false, 1, 2)));
+        writeBehind.close();
+    }
+}
@@ -0,0 +1,283 @@
+package ru.yandex.practicum.filmorate.storage.impl;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.LikeStorage;
+import ru.yandex.practicum.filmorate.storage.StatementCounter;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@Import(StatementCounter.class)
+class FilmStorageImplTest {
+    private final FilmStorage filmStorage;
+    private final UserStorage userStorage;
+    private final LikeStorage likeStorage;
+    private final JdbcTemplate jdbcTemplate;
+    private final StatementCounter statementCounter;
+    private final Film testFilm;
+    private final User testUser;
+
+    @Autowired
+    FilmStorageImplTest(FilmStorage filmStorage, UserStorage userStorage, LikeStorage likeStorage,
+                        JdbcTemplate jdbcTemplate, StatementCounter statementCounter) {
+        this.filmStorage = filmStorage;
+        this.userStorage = userStorage;
+        this.likeStorage = likeStorage;
+        this.jdbcTemplate = jdbcTemplate;
+        this.statementCounter = statementCounter;
+        this.testFilm = Film
+                .builder()
+                .id(666)
+                .name("The Matrix")
+                .description("Wake up, Neo...")
+                .releaseDate(LocalDate.of(1999, 3, 24))
+                .duration(136)
+                .mpa(new Mpa(4, "R"))
+                .genres(new LinkedHashSet<>(Arrays.asList(new Genre(1, "Комедия"), new Genre(6, "Боевик"))))
+                .build();
+        this.testUser = User
+                .builder()
+                .id(777)
+                .email("TAnderson@metacortex.com")
+                .login("Neo")
+                .name("Thomas Anderson")
+                .birthday(LocalDate.of(1962, 3, 11))
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        userStorage.deleteAll();
+        filmStorage.deleteAll();
+    }
+
+    private List<Long> getPopularFilmIds(int count) {
+        return filmStorage.getPopularFilms(count)
+                .stream()
+                .map(Film::getId)
+                .collect(Collectors.toList());
+    }
+
+    private void addFilms(int count) {
+        for (int i = 0; i < count; i++) {
+            filmStorage.add(testFilm.withId(testFilm.getId() + i));
+        }
+    }
+
+    @Test
+    void getAll_shouldRunSameStatementsCountForAnyNumberOfFilms() {
+        addFilms(1);
+        statementCounter.reset();
+        filmStorage.getAll();
+        int statementsForOneFilm = statementCounter.getCount();
+
+        filmStorage.deleteAll();
+        addFilms(20);
+        statementCounter.reset();
+        Collection<Film> films = filmStorage.getAll();
+        assertEquals(2, statementsForOneFilm);
+        assertEquals(statementsForOneFilm, statementCounter.getCount());
+        assertEquals(20, films.size());
+        films.forEach(film -> assertEquals(testFilm.getGenres(), film.getGenres()));
+    }
+
+    @Test
+    void getPopularFilms_shouldRunSameStatementsCountForAnyNumberOfFilms() {
+        addFilms(20);
+        statementCounter.reset();
+        filmStorage.getPopularFilms(1);
+        int statementsForOneFilm = statementCounter.getCount();
+
+        statementCounter.reset();
+        List<Film> films = filmStorage.getPopularFilms(20);
+        assertEquals(2, statementsForOneFilm);
+        assertEquals(statementsForOneFilm, statementCounter.getCount());
+        assertEquals(20, films.size());
+        films.forEach(film -> assertEquals(testFilm.getGenres(), film.getGenres()));
+    }
+
+    @Test
+    void add_idAlreadyExists_shouldThrowDuplicateKeyAndKeepFilm() {
+        addFilms(1);
+        Film filmWithSameId = testFilm.withName("The Matrix Reloaded").withGenres(null);
+        statementCounter.reset();
+        assertThrows(DuplicateKeyException.class, () -> filmStorage.add(filmWithSameId));
+        assertEquals(1, statementCounter.getCount());
+        assertEquals(testFilm.getName(), filmStorage.get(testFilm.getId()).getName());
+        assertEquals(testFilm.getGenres(), filmStorage.get(testFilm.getId()).getGenres());
+    }
+
+    @Test
+    void update_idNotFound_shouldReturnEmptyAfterOneStatement() {
+        statementCounter.reset();
+        assertEquals(Optional.empty(), filmStorage.update(testFilm));
+        assertEquals(1, statementCounter.getCount());
+    }
+
+    private long countGenreWrites() {
+        return statementCounter
+                .getStatements()
+                .stream()
+                .filter(sql -> sql.startsWith("INSERT INTO film_genres") || sql.startsWith("DELETE FROM film_genres"))
+                .count();
+    }
+
+    @Test
+    void update_genresNotChanged_shouldNotWriteGenres() {
+        addFilms(1);
+        statementCounter.reset();
+        filmStorage.update(testFilm.withName("The Matrix Reloaded"));
+        assertEquals(2, statementCounter.getCount());
+        assertEquals(0, countGenreWrites());
+        assertEquals(testFilm.getGenres(), filmStorage.get(testFilm.getId()).getGenres());
+    }
+
+    @Test
+    void update_oneGenreReplaced_shouldDeleteAndInsertOnlyDifference() {
+        addFilms(1);
+        Film updatedFilm = testFilm.withGenres(new LinkedHashSet<>(Arrays.asList(new Genre(1, "Комедия"),
+                new Genre(4, "Триллер"))));
+        statementCounter.reset();
+        filmStorage.update(updatedFilm);
+        assertEquals(4, statementCounter.getCount());
+        assertEquals(2, countGenreWrites());
+        assertEquals(updatedFilm.getGenres(), filmStorage.get(testFilm.getId()).getGenres());
+    }
+
+    @Test
+    void get_shouldReturnFilmWithGenres() {
+        addFilms(1);
+        statementCounter.reset();
+        Film film = filmStorage.get(testFilm.getId());
+        assertEquals(2, statementCounter.getCount());
+        assertEquals(testFilm.getGenres(), film.getGenres());
+    }
+
+    @Test
+    void getPopularFilms_shouldReadFilmsByLikeCountIndex() {
+        String plan = jdbcTemplate.queryForObject("EXPLAIN " + FilmStorageImpl.POPULAR_FILMS_SQL, String.class, 10);
+        assertTrue(plan.contains("FILMS_LIKE_COUNT_IDX"), plan);
+    }
+
+    private String explain(String sql, Object... args) {
+        return jdbcTemplate.queryForObject("EXPLAIN " + sql, String.class, args);
+    }
+
+    @Test
+    void getPopularFilms_filtered_shouldReadFilmsByCompositeIndexes() {
+        String plan = explain(FilmStorageImpl.POPULAR_FILMS_BY_YEAR_SQL, 1999, 10);
+        assertTrue(plan.contains("FILMS_RELEASE_YEAR_IDX"), plan);
+        assertTrue(plan.contains("index sorted"), plan);
+
+        plan = explain(FilmStorageImpl.POPULAR_FILMS_BY_GENRE_SQL, 1, 10);
+        assertTrue(plan.contains("FILM_GENRES_POPULAR_IDX"), plan);
+        assertTrue(plan.contains("index sorted"), plan);
+
+        plan = explain(FilmStorageImpl.POPULAR_FILMS_BY_GENRE_AND_YEAR_SQL, 1, 1999, 10);
+        assertTrue(plan.contains("FILM_GENRES_YEAR_POPULAR_IDX"), plan);
+        assertTrue(plan.contains("index sorted"), plan);
+    }
+
+    private List<Long> getPopularFilmIds(int count, Integer genreId, Integer year) {
+        return filmStorage.getPopularFilms(count, genreId, year)
+                .stream()
+                .map(Film::getId)
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    void getPopularFilms_filtered_shouldFollowLikesGenresAndReleaseYear() {
+        long filmId0 = testFilm.getId();
+        long filmId1 = filmId0 + 1;
+        long filmId2 = filmId0 + 2;
+        long userId0 = testUser.getId();
+        long userId1 = userId0 + 1;
+        Set<Genre> comedyAndThriller = new LinkedHashSet<>(Arrays.asList(new Genre(1, "Комедия"), new Genre(4, "Триллер")));
+        Film film1 = testFilm
+                .withId(filmId1)
+                .withReleaseDate(LocalDate.of(2003, 5, 15))
+                .withGenres(new LinkedHashSet<>(Arrays.asList(new Genre(1, "Комедия"))));
+        filmStorage.add(testFilm);
+        filmStorage.add(film1);
+        filmStorage.add(testFilm.withId(filmId2).withGenres(new LinkedHashSet<>(Arrays.asList(new Genre(6, "Боевик")))));
+        userStorage.add(testUser);
+        userStorage.add(testUser.withId(userId1));
+        likeStorage.add(filmId1, userId0);
+        likeStorage.add(filmId1, userId1);
+        likeStorage.add(filmId2, userId0);
+        assertEquals(List.of(filmId1, filmId0), getPopularFilmIds(10, 1, null));
+        assertEquals(List.of(filmId2, filmId0), getPopularFilmIds(10, 6, null));
+        assertEquals(List.of(filmId2, filmId0), getPopularFilmIds(10, null, 1999));
+        assertEquals(List.of(filmId2), getPopularFilmIds(1, 6, 1999));
+        assertEquals(List.of(filmId1), getPopularFilmIds(10, 1, 2003));
+
+        filmStorage.update(testFilm.withReleaseDate(LocalDate.of(2003, 3, 24)).withGenres(comedyAndThriller));
+        assertEquals(List.of(filmId1, filmId0), getPopularFilmIds(10, 1, 2003));
+        assertEquals(List.of(filmId0), getPopularFilmIds(10, 4, null));
+
+        filmStorage.update(film1.withGenres(comedyAndThriller)); //новый жанр получает текущий счётчик лайков
+        assertEquals(List.of(filmId1, filmId0), getPopularFilmIds(10, 4, null));
+
+        likeStorage.delete(filmId1, userId0);
+        likeStorage.delete(filmId1, userId1);
+        likeStorage.add(filmId0, userId0);
+        assertEquals(List.of(filmId0, filmId1), getPopularFilmIds(10, 4, 2003));
+    }
+
+    @Test
+    void addLike_deleteLike_shouldKeepLikeCountsInPopularOrder() {
+        long filmId0 = testFilm.getId();
+        long filmId1 = filmId0 + 1;
+        long userId0 = testUser.getId();
+        long userId1 = userId0 + 1;
+        addFilms(2);
+        userStorage.add(testUser);
+        userStorage.add(testUser.withId(userId1));
+        likeStorage.add(filmId1, userId0);
+        likeStorage.add(filmId1, userId1);
+        likeStorage.add(filmId0, userId0);
+        assertEquals(List.of(filmId1, filmId0), getPopularFilmIds(2));
+
+        likeStorage.delete(filmId1, userId0);
+        likeStorage.delete(filmId1, userId1);
+        likeStorage.delete(filmId1, userId1); //повторное удаление не должно менять счётчик
+        assertEquals(List.of(filmId0, filmId1), getPopularFilmIds(2));
+    }
+
+    @Test
+    void reconcileLikeCounts_shouldRestoreCountsFromLikes() {
+        long filmId0 = testFilm.getId();
+        long filmId1 = filmId0 + 1;
+        addFilms(2);
+        userStorage.add(testUser);
+        likeStorage.add(filmId1, testUser.getId());
+        jdbcTemplate.update("UPDATE films SET like_count = 100 WHERE film_id = ?", filmId0); //счётчик разошёлся с likes
+        assertEquals(List.of(filmId0, filmId1), getPopularFilmIds(2));
+
+        assertEquals(1, likeStorage.reconcileLikeCounts());
+        assertEquals(List.of(filmId1, filmId0), getPopularFilmIds(2));
+    }
+}
@@ -0,0 +1,91 @@
+package ru.yandex.practicum.filmorate.storage.impl;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.TransientDataAccessResourceException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WriteBehindQueueTest {
+    private final List<Integer> written = Collections.synchronizedList(new ArrayList<>());
+
+    private static WriteBehindProperties createProperties(int capacity, int batchSize, long flushIntervalMs) {
+        WriteBehindProperties properties = new WriteBehindProperties();
+        properties.setEnabled(true);
+        properties.setCapacity(capacity);
+        properties.setBatchSize(batchSize);
+        properties.setFlushIntervalMs(flushIntervalMs);
+        properties.setEnqueueTimeoutMs(50);
+        return properties;
+    }
+
+    private int[] write(List<Integer> operations) {
+        written.addAll(operations);
+        return operations.stream().mapToInt(operation -> operation > 0 ? 1 : 0).toArray();
+    }
+
+    @Test
+    void write_shouldReturnUpdateCountAfterFlush() {
+        WriteBehindQueue<Integer> queue = new WriteBehindQueue<>("test", createProperties(10, 10, 10), this::write);
+        assertEquals(1, queue.write(5));
+        assertEquals(0, queue.write(-5));
+        assertEquals(List.of(5, -5), written);
+        queue.close();
+    }
+
+    @Test
+    void submit_bufferFull_shouldFailAfterTimeout() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        WriteBehindQueue<Integer> queue = new WriteBehindQueue<>("test", createProperties(1, 1, 10), operations -> {
+            writing.countDown();
+
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            return write(operations);
+        });
+
+        CompletableFuture<Integer> first = queue.submit(1);
+        assertTrue(writing.await(5, TimeUnit.SECONDS)); //первая операция уже пишется и буфер не занимает
+        CompletableFuture<Integer> second = queue.submit(2);
+        assertThrows(TransientDataAccessResourceException.class, () -> queue.submit(3));
+
+        release.countDown();
+        assertEquals(1, first.get(5, TimeUnit.SECONDS));
+        assertEquals(1, second.get(5, TimeUnit.SECONDS));
+        assertEquals(List.of(1, 2), written);
+        queue.close();
+    }
+
+    @Test
+    void close_shouldFlushPendingWritesAndRejectNewOnes() throws Exception {
+        WriteBehindQueue<Integer> queue = new WriteBehindQueue<>("test", createProperties(100, 100, 1000), this::write);
+        List<CompletableFuture<Integer>> results = new ArrayList<>();
+
+        for (int i = 1; i <= 10; i++) {
+            results.add(queue.submit(i)); //пакет закрылся бы только через секунду
+        }
+
+        queue.close();
+
+        for (CompletableFuture<Integer> result : results) {
+            assertTrue(result.isDone());
+            assertEquals(1, result.get());
+        }
+
+        assertEquals(List.of(1, 2, 3, 4, 5, 6, 7, 8, 9, 10), written);
+        assertThrows(IllegalStateException.class, () -> queue.write(11));
+    }
+}
@@ -0,0 +1,282 @@
+package ru.yandex.practicum.filmorate.storage.memory;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DuplicateKeyException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class MemoryPersistenceTest {
+    private static final Path DEV_FULL = Path.of("/dev/full");
+    @TempDir
+    Path dir;
+
+    private static class Storages {
+        private final InMemoryLikeStorage likeStorage;
+        private final InMemoryFriendStorage friendStorage;
+        private final InMemoryFilmStorage filmStorage;
+        private final InMemoryUserStorage userStorage;
+        private final MemoryPersistence persistence;
+
+        private Storages(Path dir) throws IOException {
+            this(dir, OpLog::new);
+        }
+
+        private Storages(Path dir, Function<OpLogProperties, OpLog> opLogFactory) throws IOException {
+            OpLogProperties properties = new OpLogProperties();
+            properties.setEnabled(true);
+            properties.setDir(dir.toString());
+            OpLog opLog = opLogFactory.apply(properties);
+            likeStorage = new InMemoryLikeStorage(opLog);
+            friendStorage = new InMemoryFriendStorage(opLog);
+            filmStorage = new InMemoryFilmStorage(likeStorage, null, null, opLog); //справочники не нужны
+            userStorage = new InMemoryUserStorage(likeStorage, friendStorage, opLog);
+            persistence = new MemoryPersistence(properties, opLog, filmStorage, userStorage, likeStorage,
+                    friendStorage);
+            persistence.recover();
+        }
+    }
+
+    //журнал, который после переключения пишет новые сегменты в /dev/full - как диск без места
+    private static class FailingOpLog extends OpLog {
+        private volatile boolean isFailing;
+
+        private FailingOpLog(OpLogProperties properties) {
+            super(properties);
+        }
+
+        @Override
+        FileChannel openSegment(long segment) throws IOException {
+            return isFailing ? FileChannel.open(DEV_FULL, StandardOpenOption.WRITE) : super.openSegment(segment);
+        }
+    }
+
+    private static Film film(long filmId, int year) {
+        return Film
+                .builder()
+                .id(filmId)
+                .name("Фильм " + filmId)
+                .description(filmId % 2 == 0 ? null : "Описание")
+                .releaseDate(LocalDate.of(year, 3, 24))
+                .duration(136)
+                .mpa(new Mpa(1, null))
+                .genres(Set.of(new Genre((int) filmId % 6 + 1, null)))
+                .build();
+    }
+
+    private static User user(long userId) {
+        return new User(userId, "user" + userId + "@mail.ru", "user" + userId, userId == 1 ? null : "Имя",
+                LocalDate.of(1990, 1, 1));
+    }
+
+    private static void fill(Storages storages, long fromId, long toId) {
+        List<Film> films = new ArrayList<>();
+
+        for (long id = fromId; id <= toId; id++) {
+            films.add(film(id, 1990 + (int) id % 5));
+            storages.userStorage.add(user(id));
+        }
+
+        storages.filmStorage.addAll(films);
+
+        for (long id = fromId; id <= toId; id++) {
+            storages.likeStorage.add(id, id);
+            storages.likeStorage.add(fromId, id);
+            storages.friendStorage.add(id, fromId);
+        }
+    }
+
+    private static void assertSameState(Storages expected, Storages actual) {
+        assertSameItems(expected.filmStorage.getAll(), actual.filmStorage.getAll());
+        assertSameItems(expected.userStorage.getAll(), actual.userStorage.getAll());
+
+        for (Film film : expected.filmStorage.getAll()) {
+            assertEquals(expected.filmStorage.getVersion(film.getId()), actual.filmStorage.getVersion(film.getId()));
+        }
+
+        assertEquals(expected.likeStorage.getLikeCounts(), actual.likeStorage.getLikeCounts());
+        assertSameEdges(expected.likeStorage.getLikedFilmIds(), actual.likeStorage.getLikedFilmIds());
+        assertSameEdges(expected.friendStorage.getFriendIds(), actual.friendStorage.getFriendIds());
+        assertEquals(expected.filmStorage.getPopularFilms(10, 2, 1992),
+                actual.filmStorage.getPopularFilms(10, 2, 1992));
+        assertEquals(expected.filmStorage.getPopularFilms(10, 2, null),
+                actual.filmStorage.getPopularFilms(10, 2, null));
+    }
+
+    private static <T> void assertSameItems(Collection<T> expected, Collection<T> actual) {
+        assertEquals(expected.toString(), actual.toString()); //toString - по всем полям, equals - только по id
+    }
+
+    private static void assertSameEdges(Map<Long, long[]> expected, Map<Long, long[]> actual) {
+        assertEquals(expected.keySet(), actual.keySet());
+        expected.forEach((id, ids) -> assertArrayEquals(ids, actual.get(id)));
+    }
+
+    @Test
+    void recover_shouldReplayLog() throws IOException {
+        Storages storages = new Storages(dir);
+        fill(storages, 1, 50);
+        storages.filmStorage.update(film(3, 1992).withName("The Matrix"));
+        storages.likeStorage.delete(1, 7);
+        storages.friendStorage.delete(8, 1);
+        assertThrows(DuplicateKeyException.class,
+                () -> storages.filmStorage.addAll(List.of(film(51, 2000), film(1, 2000))));
+        storages.persistence.close();
+
+        Storages recovered = new Storages(dir);
+        assertSameState(storages, recovered);
+        assertTrue(recovered.filmStorage.isExists(3));
+        assertFalse(recovered.filmStorage.isExists(51)); //пачка отменена целиком
+        assertTrue(recovered.filmStorage.reserveIdBlock() > 50); //новые id не пересекутся с записанными
+        recovered.persistence.close();
+    }
+
+    @Test
+    void recover_shouldLoadSnapshotAndReplayTail() throws IOException {
+        Storages storages = new Storages(dir);
+        fill(storages, 1, 50);
+        storages.persistence.compact();
+        storages.userStorage.deleteAll();
+        fill(storages, 101, 120);
+        storages.filmStorage.update(film(101, 1992).withDescription("После снимка"));
+        storages.persistence.close();
+
+        assertEquals(List.of(1L), OpLog.listSegments(dir)); //сегмент 0 целиком в снимке
+        Storages recovered = new Storages(dir);
+        assertSameState(storages, recovered);
+        recovered.persistence.close();
+    }
+
+    @Test
+    void recover_shouldIgnoreTornRecordAndContinueInNewSegment() throws IOException {
+        Storages storages = new Storages(dir);
+        fill(storages, 1, 10);
+        storages.persistence.close();
+
+        try (FileChannel channel = FileChannel.open(OpLog.getSegmentPath(dir, 0), StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0, 0, 0, 40, OpLog.LIKE_ADD, 0, 0})); //запись оборвалась
+        }
+
+        Storages recovered = new Storages(dir);
+        assertSameState(storages, recovered);
+        recovered.likeStorage.add(5, 1);
+        recovered.persistence.close();
+
+        assertFalse(Files.exists(OpLog.getSegmentPath(dir, 0))); //после восстановления сегмент поглотил снимок
+        Storages recoveredAgain = new Storages(dir);
+        assertSameState(recovered, recoveredAgain);
+        recoveredAgain.persistence.close();
+    }
+
+    @Test
+    void add_update_deleteLastEdge_shouldReturnStoredItemsAndDropEmptyEdges() throws IOException {
+        Storages storages = new Storages(dir);
+        Film film = film(1, 1999).withGenres(Set.of(new Genre(3, null), new Genre(1, null)));
+        Film added = storages.filmStorage.add(film);
+        assertSame(storages.filmStorage.get(1), added); //жанры уже упорядочены, как после выборки
+        Film updated = storages.filmStorage.update(film.withName("Другой")).orElseThrow();
+        assertSame(storages.filmStorage.get(1), updated);
+
+        storages.userStorage.add(user(1));
+        storages.userStorage.add(user(2));
+        assertTrue(storages.likeStorage.add(1, 1));
+        assertTrue(storages.friendStorage.add(1, 2));
+        assertTrue(storages.likeStorage.delete(1, 1));
+        assertTrue(storages.friendStorage.delete(1, 2));
+        assertFalse(storages.likeStorage.delete(1, 1));
+        assertFalse(storages.friendStorage.delete(1, 2));
+        assertEquals(Map.of(), storages.friendStorage.getFriendIds()); //пустые массивы не хранятся
+        storages.persistence.close();
+    }
+
+    private static List<Long> getPopularFilmIds(Storages storages, int genreId) {
+        return storages.filmStorage
+                .getPopularFilms(10, genreId, null)
+                .stream()
+                .map(Film::getId)
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    void getPopularFilmsByGenre_shouldFollowLikesAndGenreChanges() throws IOException {
+        Storages storages = new Storages(dir);
+        storages.filmStorage.add(film(1, 1999).withGenres(Set.of(new Genre(1, null))));
+        storages.filmStorage.add(film(2, 1999).withGenres(Set.of(new Genre(1, null), new Genre(2, null))));
+        storages.filmStorage.add(film(3, 2003).withGenres(Set.of(new Genre(2, null))));
+        storages.userStorage.add(user(1));
+        storages.userStorage.add(user(2));
+        storages.likeStorage.add(2, 1);
+        storages.likeStorage.add(2, 2);
+        storages.likeStorage.add(3, 1);
+        assertEquals(List.of(2L, 1L), getPopularFilmIds(storages, 1));
+        assertEquals(List.of(2L, 3L), getPopularFilmIds(storages, 2));
+
+        storages.filmStorage.update(film(3, 2003).withGenres(Set.of(new Genre(1, null)))); //лайк переходит с фильмом
+        assertEquals(List.of(2L, 3L, 1L), getPopularFilmIds(storages, 1));
+        assertEquals(List.of(2L), getPopularFilmIds(storages, 2));
+
+        storages.likeStorage.delete(2, 1);
+        storages.likeStorage.delete(2, 2);
+        assertEquals(List.of(3L, 1L, 2L), getPopularFilmIds(storages, 1));
+        assertEquals(List.of(), getPopularFilmIds(storages, 3));
+        storages.persistence.close();
+    }
+
+    @Test
+    void writeFailure_shouldNotApplyChanges() throws IOException {
+        assumeTrue(Files.isWritable(DEV_FULL));
+        FailingOpLog[] opLog = new FailingOpLog[1];
+        Storages storages = new Storages(dir, properties -> opLog[0] = new FailingOpLog(properties));
+        fill(storages, 1, 10);
+        Storages expected = new Storages(dir.resolve("expected"));
+        fill(expected, 1, 10);
+
+        opLog[0].isFailing = true;
+        storages.persistence.compact(); //следующий сегмент уже не записать
+        assertThrows(DataAccessResourceFailureException.class, () -> storages.likeStorage.add(2, 1));
+        assertSameState(expected, storages); //лайк не записан в журнал - его нет и в памяти
+        assertThrows(DataAccessResourceFailureException.class,
+                () -> storages.filmStorage.update(film(3, 1992).withName("The Matrix")));
+        assertThrows(DataAccessResourceFailureException.class, storages.userStorage::deleteAll);
+        assertSameState(expected, storages);
+        storages.persistence.close();
+        expected.persistence.close();
+
+        Storages recovered = new Storages(dir);
+        assertSameState(expected, recovered);
+        recovered.persistence.close();
+    }
+
+    @Test
+    void recover_dirInUse_shouldFail() throws IOException {
+        Storages storages = new Storages(dir);
+        assertThrows(IllegalStateException.class, () -> new Storages(dir));
+        storages.persistence.close();
+    }
+}
@@ -0,0 +1,111 @@
+package ru.yandex.practicum.filmorate.storage.replica;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ReplicaRoutingDataSourceTest {
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate readOnlyTemplate;
+
+    //у каждой БД своё содержимое - по ответу видно, куда ушёл запрос
+    private static DataSource createDatabase(String name) {
+        DataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS node (node_name VARCHAR(20))");
+        jdbcTemplate.update("DELETE FROM node");
+        jdbcTemplate.update("INSERT INTO node VALUES (?)", name);
+        return dataSource;
+    }
+
+    private void createRouting(int replicasCount, boolean isStickyAfterWrite) {
+        List<DataSource> replicas = new ArrayList<>();
+
+        for (int i = 0; i < replicasCount; i++) {
+            replicas.add(createDatabase("replica" + i));
+        }
+
+        DataSource dataSource = new LazyConnectionDataSourceProxy(
+                new ReplicaRoutingDataSource(createDatabase("primary"), replicas, isStickyAfterWrite));
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        readOnlyTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        readOnlyTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_SUPPORTS);
+        readOnlyTemplate.setReadOnly(true);
+    }
+
+    private String getNode() {
+        return jdbcTemplate.queryForObject("SELECT node_name FROM node", String.class);
+    }
+
+    private String getNodeReadOnly() {
+        return readOnlyTemplate.execute(status -> getNode());
+    }
+
+    private void write() {
+        jdbcTemplate.update("UPDATE node SET node_name = node_name");
+    }
+
+    private static void startRequest() {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+    }
+
+    @AfterEach
+    void resetRequest() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void getConnection_shouldRouteReadOnlyToReplica() {
+        createRouting(1, true);
+        assertEquals("replica0", getNodeReadOnly());
+        assertEquals("primary", getNode()); //вне readOnly - основная БД
+        assertEquals("replica0", getNodeReadOnly()); //вне HTTP-запроса записи не закрепляют основную БД
+    }
+
+    @Test
+    void getConnection_afterWriteInRequest_shouldReadFromPrimary() {
+        createRouting(1, true);
+        startRequest();
+        assertEquals("replica0", getNodeReadOnly());
+        write();
+        assertEquals("primary", getNodeReadOnly());
+
+        startRequest(); //следующий запрос снова читает с реплики
+        assertEquals("replica0", getNodeReadOnly());
+    }
+
+    @Test
+    void getConnection_afterWriteInRequestNotSticky_shouldReadFromReplica() {
+        createRouting(1, false);
+        startRequest();
+        write();
+        assertEquals("replica0", getNodeReadOnly());
+    }
+
+    @Test
+    void getConnection_severalReplicas_shouldBalanceRequestsAndKeepReplicaWithinRequest() {
+        createRouting(2, true);
+        assertEquals("replica0", getNodeReadOnly());
+        assertEquals("replica1", getNodeReadOnly());
+        assertEquals("replica0", getNodeReadOnly());
+
+        startRequest();
+        String replica = getNodeReadOnly();
+        assertEquals(replica, getNodeReadOnly());
+        assertEquals(replica, getNodeReadOnly());
+    }
+}